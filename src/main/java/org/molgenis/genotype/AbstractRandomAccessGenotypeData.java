@@ -1,7 +1,13 @@
 package org.molgenis.genotype;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.molgenis.genotype.variant.GeneticVariant;
 
@@ -39,6 +45,40 @@ public abstract class AbstractRandomAccessGenotypeData extends AbstractGenotypeD
 
 	}
 
+	/**
+	 * Scans all variants, data types with an ID index should override this
+	 */
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		return getVariantsByIds(Collections.singleton(variantId)).get(variantId);
+	}
+
+	/**
+	 * Scans the variants until all IDs are found, data types with an ID index
+	 * should override this
+	 */
+	@Override
+	public Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds)
+	{
+		Set<String> remainingIds = new HashSet<String>(variantIds);
+		Map<String, GeneticVariant> variants = new HashMap<String, GeneticVariant>(remainingIds.size() * 2);
+
+		for (Iterator<GeneticVariant> it = iterator(); it.hasNext() && !remainingIds.isEmpty();)
+		{
+			GeneticVariant variant = it.next();
+			for (String id : variant.getAllIds())
+			{
+				if (remainingIds.remove(id))
+				{
+					variants.put(id, variant);
+				}
+			}
+		}
+
+		return variants;
+	}
+
 	@Override
 	public Iterator<GeneticVariant> iterator()
 	{
@@ -1,6 +1,8 @@
 package org.molgenis.genotype;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 import org.molgenis.genotype.util.Utils;
@@ -35,5 +37,28 @@ public abstract class IndexedGenotypeData extends AbstractRandomAccessGenotypeDa
 		return getIndex().createQuery().executeQuery(seqName);
 	}
 
+	/**
+	 * Uses the variant ID index if available
+	 */
+	@Override
+	public Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds)
+	{
+		VariantIdIndex variantIdIndex = getVariantIdIndex();
+		if (variantIdIndex == null)
+		{
+			return super.getVariantsByIds(variantIds);
+		}
+		return variantIdIndex.getVariantsByIds(variantIds);
+	}
+
 	protected abstract GenotypeDataIndex getIndex();
+
+	/**
+	 * @return the variant ID index or null to scan all variants when looking
+	 *         up IDs
+	 */
+	protected VariantIdIndex getVariantIdIndex()
+	{
+		return null;
+	}
 }
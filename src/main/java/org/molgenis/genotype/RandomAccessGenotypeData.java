@@ -1,6 +1,8 @@
 package org.molgenis.genotype;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.molgenis.genotype.variant.GeneticVariant;
 
@@ -55,4 +57,21 @@ public interface RandomAccessGenotypeData extends GenotypeData
 	 */
 	Iterable<GeneticVariant> getSequenceGeneticVariants(String seqName);
 
+	/**
+	 * Get a variant by one of its IDs, for example a rs number
+	 * 
+	 * @param variantId
+	 * @return the first variant with this ID or null if not found
+	 */
+	GeneticVariant getVariantById(String variantId);
+
+	/**
+	 * Get the variants of multiple IDs
+	 * 
+	 * @param variantIds
+	 * @return the first variant of each ID, IDs that are not found are not in
+	 *         the map
+	 */
+	Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds);
+
 }
@@ -0,0 +1,57 @@
+package org.molgenis.genotype;
+
+/**
+ * A region on a sequence, used to query multiple regions at once
+ */
+public class Region
+{
+	private final String sequenceName;
+	private final int startPos;
+	private final int stopPos;
+
+	/**
+	 * 
+	 * @param sequenceName
+	 * @param startPos
+	 *            , exclusive
+	 * @param stopPos
+	 *            , inclusive
+	 */
+	public Region(String sequenceName, int startPos, int stopPos)
+	{
+		if (sequenceName == null) throw new IllegalArgumentException("SequenceName is null");
+		if (startPos < 0) throw new IllegalArgumentException("StartPos must be bigger then 0");
+		if (stopPos <= startPos) throw new IllegalArgumentException("StopPos must be bigger then startPos ");
+
+		this.sequenceName = sequenceName;
+		this.startPos = startPos;
+		this.stopPos = stopPos;
+	}
+
+	public String getSequenceName()
+	{
+		return sequenceName;
+	}
+
+	/**
+	 * @return startPos, exclusive
+	 */
+	public int getStartPos()
+	{
+		return startPos;
+	}
+
+	/**
+	 * @return stopPos, inclusive
+	 */
+	public int getStopPos()
+	{
+		return stopPos;
+	}
+
+	@Override
+	public String toString()
+	{
+		return sequenceName + ":" + startPos + "-" + stopPos;
+	}
+}
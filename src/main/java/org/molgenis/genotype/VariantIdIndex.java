@@ -0,0 +1,21 @@
+package org.molgenis.genotype;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Index to find variants by their IDs without scanning all variants
+ */
+public interface VariantIdIndex
+{
+	/**
+	 * Get the variants of multiple IDs
+	 * 
+	 * @param variantIds
+	 * @return the first variant of each ID, IDs that are not found are not in
+	 *         the map
+	 */
+	Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds);
+}
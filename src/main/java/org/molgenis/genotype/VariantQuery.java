@@ -1,6 +1,7 @@
 package org.molgenis.genotype;
 
 import java.io.IOException;
+import java.util.Collection;
 
 public interface VariantQuery
 {
@@ -37,4 +38,14 @@ public interface VariantQuery
 	 */
 	VariantQueryResult executeQuery(String sequence, int startPos);
 
+	/**
+	 * Get the variants in multiple regions. The regions are sorted and the
+	 * index is read once for all regions, variants are returned in the order
+	 * of the data file and only once if regions overlap.
+	 * 
+	 * @param regions
+	 * @return
+	 */
+	VariantQueryResult executeQuery(Collection<Region> regions);
+
 }
@@ -5,6 +5,7 @@ import java.util.List;
 
 import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.variant.CalledDosageCalculator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.SampleVariantUniqueIdProvider;
 import org.molgenis.genotype.variant.SampleVariantsProvider;
@@ -93,6 +94,13 @@ public class HapsEntrySampleVariantsProvider implements SampleVariantsProvider
 		return 0;
 	}
 
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		return CalledDosageCalculator.calculateCalledDosage(variant.getVariantAlleles(), variant.getRefAllele(),
+				getSampleVariants(variant));
+	}
+
 	@Override
 	public int getSampleVariantProviderUniqueId()
 	{
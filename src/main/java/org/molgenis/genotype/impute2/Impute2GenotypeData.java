@@ -16,11 +16,14 @@ import org.molgenis.genotype.GenotypeDataIndex;
 import org.molgenis.genotype.IndexedGenotypeData;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.VariantIdIndex;
 import org.molgenis.genotype.SimpleSequence;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.SampleAnnotation;
 import org.molgenis.genotype.annotation.SampleAnnotation.SampleAnnotationType;
 import org.molgenis.genotype.tabix.TabixIndex;
+import org.molgenis.genotype.tabix.TabixIndexCreator;
+import org.molgenis.genotype.tabix.TabixVariantIdIndex;
 import org.molgenis.genotype.util.Utils;
 import org.molgenis.io.csv.CsvReader;
 import org.molgenis.util.tuple.Tuple;
@@ -28,7 +31,8 @@ import org.molgenis.util.tuple.Tuple;
 /**
  * GenotypeData for haps/sample files see http://www.shapeit.fr/
  * 
- * First run <code>index-haps.sh yourfile.haps<code> to create the tabix index file
+ * First run <code>index-haps.sh yourfile.haps<code> to create the bgzip file, the tabix index file is created if it
+ * does not exist
  * 
  * The two character string 'NA' is treated as missing when encountered in the sample file
  * 
@@ -37,7 +41,10 @@ import org.molgenis.util.tuple.Tuple;
  */
 public class Impute2GenotypeData extends IndexedGenotypeData
 {
-	private GenotypeDataIndex index;
+	// zero based index of the ID column
+	private static final int HAPS_ID_COLUMN = 1;
+	private TabixIndex index;
+	private TabixVariantIdIndex variantIdIndex = null;
 	private File sampleFile;
 	private Map<String, SampleAnnotation> sampleAnnotations = new LinkedHashMap<String, SampleAnnotation>();
 
@@ -52,8 +59,13 @@ public class Impute2GenotypeData extends IndexedGenotypeData
 				+ bzipHapsFile.getAbsolutePath());
 
 		if (tabixIndexFile == null) throw new IllegalArgumentException("tabixIndexFile is null");
-		if (!tabixIndexFile.isFile()) throw new FileNotFoundException("tabixIndexFile file not found at "
-				+ tabixIndexFile.getAbsolutePath());
+		if (!tabixIndexFile.exists())
+		{
+			TabixIndexCreator indexCreator = TabixIndexCreator.createHapsIndexCreator();
+			indexCreator.setThreads(Runtime.getRuntime().availableProcessors());
+			indexCreator.createIndex(bzipHapsFile, tabixIndexFile);
+			LOG.info("Created tabix index");
+		}
 		if (!tabixIndexFile.canRead()) throw new IOException("tabixIndexFile file not found at "
 				+ tabixIndexFile.getAbsolutePath());
 
@@ -153,6 +165,31 @@ public class Impute2GenotypeData extends IndexedGenotypeData
 		return index;
 	}
 
+	/**
+	 * Use an index on the variant IDs for lookups by ID, the index is created
+	 * if the file does not exist
+	 *
+	 * @param variantIdIndexFile
+	 * @throws IOException
+	 */
+	public void useVariantIdIndex(File variantIdIndexFile) throws IOException
+	{
+		if (variantIdIndexFile.exists())
+		{
+			variantIdIndex = TabixVariantIdIndex.load(variantIdIndexFile, index);
+		}
+		else
+		{
+			variantIdIndex = TabixVariantIdIndex.create(index, HAPS_ID_COLUMN, variantIdIndexFile);
+		}
+	}
+
+	@Override
+	protected VariantIdIndex getVariantIdIndex()
+	{
+		return variantIdIndex;
+	}
+
 	@Override
 	protected Map<String, Annotation> getVariantAnnotationsMap()
 	{
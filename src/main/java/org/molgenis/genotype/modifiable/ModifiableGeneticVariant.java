@@ -11,6 +11,7 @@ import org.molgenis.genotype.util.LdCalculator;
 import org.molgenis.genotype.util.LdCalculatorException;
 import org.molgenis.genotype.util.MafResult;
 import org.molgenis.genotype.variant.AbstractGeneticVariant;
+import org.molgenis.genotype.variant.CalledDosageCalculator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.MafCalculator;
 import org.molgenis.genotype.variant.SampleVariantsProvider;
@@ -200,37 +201,7 @@ public class ModifiableGeneticVariant extends AbstractGeneticVariant
 	@Override
 	public byte[] getSampleCalledDosage()
 	{
-		// TODO duplicate from read only variant. Should be provided by sample
-		// genotype provider
-
-		Allele dosageRef = getRefAllele() == null ? getVariantAlleles().get(0) : getRefAllele();
-
-		List<Alleles> sampleVariants = getSampleVariants();
-
-		byte[] dosages = new byte[getSampleVariants().size()];
-
-		for (int i = 0; i < dosages.length; ++i)
-		{
-			Alleles sampleVariant = sampleVariants.get(i);
-			boolean missing = false;
-			byte dosage = 0;
-
-			for (Allele allele : sampleVariant)
-			{
-				if (allele == null)
-				{
-					missing = true;
-				}
-				else if (allele == dosageRef)
-				{
-					++dosage;
-				}
-			}
-
-			dosages[i] = missing ? -1 : dosage;
-		}
-
-		return dosages;
+		return CalledDosageCalculator.calculateCalledDosage(getVariantAlleles(), getRefAllele(), getSampleVariants());
 	}
 
 	@Override
@@ -1,10 +1,14 @@
 package org.molgenis.genotype.modifiable;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
@@ -75,6 +79,40 @@ public class ModifiableGenotypeDataInMemory implements ModifiableGenotypeData
 		return getModifiableSnpVariantByPos(seqName, startPos);
 	}
 
+	/**
+	 * Scans the modifiable variants so updated IDs are found
+	 */
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		return getVariantsByIds(Collections.singleton(variantId)).get(variantId);
+	}
+
+	/**
+	 * Scans the modifiable variants until all IDs are found so updated IDs are
+	 * found
+	 */
+	@Override
+	public Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds)
+	{
+		Set<String> remainingIds = new HashSet<String>(variantIds);
+		Map<String, GeneticVariant> variants = new HashMap<String, GeneticVariant>(remainingIds.size() * 2);
+
+		for (Iterator<GeneticVariant> it = iterator(); it.hasNext() && !remainingIds.isEmpty();)
+		{
+			GeneticVariant variant = it.next();
+			for (String id : variant.getAllIds())
+			{
+				if (remainingIds.remove(id))
+				{
+					variants.put(id, variant);
+				}
+			}
+		}
+
+		return variants;
+	}
+
 	@Override
 	public Iterable<GeneticVariant> getSequenceGeneticVariants(String seqName)
 	{
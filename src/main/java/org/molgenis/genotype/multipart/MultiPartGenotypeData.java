@@ -5,10 +5,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -208,6 +210,35 @@ public class MultiPartGenotypeData implements RandomAccessGenotypeData
 		}
 	}
 
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		return getVariantsByIds(Collections.singleton(variantId)).get(variantId);
+	}
+
+	/**
+	 * Queries the parts until all IDs are found
+	 */
+	@Override
+	public Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds)
+	{
+		Set<String> remainingIds = new HashSet<String>(variantIds);
+		Map<String, GeneticVariant> variants = new HashMap<String, GeneticVariant>(remainingIds.size() * 2);
+
+		for (RandomAccessGenotypeData genotypeData : genotypeDataCollection)
+		{
+			if (remainingIds.isEmpty())
+			{
+				break;
+			}
+			Map<String, GeneticVariant> partVariants = genotypeData.getVariantsByIds(remainingIds);
+			variants.putAll(partVariants);
+			remainingIds.removeAll(partVariants.keySet());
+		}
+
+		return variants;
+	}
+
 	@Override
 	public List<SampleAnnotation> getSampleAnnotations()
 	{
@@ -50,9 +50,6 @@ public class BedBimFamGenotypeData extends AbstractRandomAccessGenotypeData
 
 		this.reader = new BedBimFamReader(bedFile, bimFile, famFile);
 
-		reader.setIndividuals();
-		reader.setSnps();
-
 		sampleAnnotations = PlinkSampleAnnotations.getSampleAnnotations();
 	}
 
@@ -102,8 +99,7 @@ public class BedBimFamGenotypeData extends AbstractRandomAccessGenotypeData
 	@Override
 	public List<GeneticVariant> getVariantsByPos(String seqName, int startPos)
 	{
-		int index = this.reader.getSnpIndexByPosition(seqName, startPos);
-		return this.reader.loadVariantsForIndex(index);
+		return this.reader.loadVariantsForPosition(seqName, startPos);
 	}
 
 	@Override
@@ -115,7 +111,7 @@ public class BedBimFamGenotypeData extends AbstractRandomAccessGenotypeData
 	
 	        @Override
 	        public boolean hasNext() {
-	            return currentIndex < reader.getBimEntries().size();
+	            return currentIndex < reader.getBimStore().getNrOfSnps();
 	        }
 	
 	        @Override
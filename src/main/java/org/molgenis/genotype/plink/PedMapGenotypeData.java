@@ -28,6 +28,7 @@ import org.molgenis.genotype.plink.datatypes.PedEntry;
 import org.molgenis.genotype.plink.drivers.PedFileDriver;
 import org.molgenis.genotype.plink.readers.MapFileReader;
 import org.molgenis.genotype.util.GeneticVariantTreeSet;
+import org.molgenis.genotype.variant.CalledDosageCalculator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
 import org.molgenis.genotype.variant.SampleVariantUniqueIdProvider;
@@ -295,6 +296,13 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 		return phasing;
 	}
 
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		return CalledDosageCalculator.calculateCalledDosage(variant.getVariantAlleles(), variant.getRefAllele(),
+				getSampleVariants(variant));
+	}
+
 	@Override
 	public int getSampleVariantProviderUniqueId()
 	{
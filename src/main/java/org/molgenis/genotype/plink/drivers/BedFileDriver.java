@@ -1,22 +1,60 @@
 package org.molgenis.genotype.plink.drivers;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 /**
  * Driver to query BED (binary Plink genotype) files. See:
  * http://pngu.mgh.harvard.edu/~purcell/plink/binary.shtml
  * 
  * PLEASE NOTE THAT:
- * this driver at the moment works ONLY on SNP-major mode files!
+ * SNPs can only be read from SNP-major mode files, individual-major mode
+ * files can be transposed to a SNP-major file using createSnpMajor
  * 
  */
 public class BedFileDriver
 {
+	/**
+	 * Genotype codes as stored in the BED file
+	 */
+	public static final byte HOMOZYGOTE_FIRST = 0;
+	public static final byte MISSING = 1;
+	public static final byte HETEROZYGOTE = 2;
+	public static final byte HOMOZYGOTE_SECOND = 3;
+
+	// the 4 genotype codes of every byte value, the first individual is in the
+	// lowest 2 bits
+	private static final byte[] GENOTYPE_CODES = createLookupTable(new byte[]
+	{ HOMOZYGOTE_FIRST, MISSING, HETEROZYGOTE, HOMOZYGOTE_SECOND });
+	// dosage of the first allele, -1 for missing
+	private static final byte[] DOSAGES = createLookupTable(new byte[]
+	{ 2, -1, 1, 0 });
+	// bit pairs of the genotype codes with the bits in reading order
+	private static final String[] BIT_PAIRS = new String[]
+	{ "00", "10", "01", "11" };
+
+	// default maximum size of a mapped part of the file
+	private static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+	// SNP-major rows that are transposed at once
+	private static final int TRANSPOSE_BUFFER_SIZE = 16 * 1024 * 1024;
+	// a tile of 4096 SNPs and 256 individuals is read into 256kb, small enough
+	// for the L2 cache
+	private static final int TRANSPOSE_TILE_SNPS = 4096;
+	private static final int TRANSPOSE_TILE_INDIVIDUALS = 256;
+
 	private int mode;
 	private long nrOfElements;
 	private File bedFile;
+	private long fileLength;
+	// the file mapped in segments of segmentSize bytes
+	private final long segmentSize;
+	private MappedByteBuffer[] segments;
 
 	/**
 	 * Get the mode: mode 1 = SNP-major, mode 0 = individual-major
@@ -48,6 +86,21 @@ public class BedFileDriver
 	 */
 	public BedFileDriver(File bedFile) throws Exception
 	{
+		this(bedFile, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param bedFile
+	 * @param segmentSize
+	 *            maximum size of a mapped part of the file
+	 * @throws Exception
+	 */
+	BedFileDriver(File bedFile, long segmentSize) throws Exception
+	{
+		if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) throw new IllegalArgumentException(
+				"SegmentSize must be bigger then 0 and fit in an int");
+		this.segmentSize = segmentSize;
+
 		RandomAccessFile raf = new RandomAccessFile(bedFile, "r");
 		try
 		{
@@ -74,7 +127,6 @@ public class BedFileDriver
 			else if (bmode == 0) // assumed... bit code 00000000
 			{
 				// System.out.println("mode 0: individual-major");
-				throw new Exception("BED file individual-major mode not yet supported!");
 			}
 			else
 			{
@@ -83,6 +135,17 @@ public class BedFileDriver
 
 			this.mode = bmode;
 			this.nrOfElements = (raf.length() - 3) * 4;
+			this.fileLength = raf.length();
+
+			// the mapping stays valid after closing the file
+			FileChannel channel = raf.getChannel();
+			segments = new MappedByteBuffer[(int) ((fileLength + segmentSize - 1) / segmentSize)];
+			for (int i = 0; i < segments.length; ++i)
+			{
+				long start = i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, fileLength
+						- start));
+			}
 		}
 		finally
 		{
@@ -145,12 +208,8 @@ public class BedFileDriver
 	public String getElement(long index) throws Exception
 	{
 		// throw new Exception("fixme!");
-		RandomAccessFile raf = new RandomAccessFile(bedFile, "r");
-		raf.seek((index / 4) + 3);
-		String byteString = reverse(bits(raf.readByte()));
-		raf.close();
-		int bitpair = (int) (index % 4) * 2;
-		return byteString.substring(bitpair, bitpair + 2);
+		int b = getBytes((index / 4) + 3, 1).get(0) & 0xFF;
+		return BIT_PAIRS[GENOTYPE_CODES[(b << 2) + (int) (index % 4)]];
 	}
 	
 	/**
@@ -167,69 +226,348 @@ public class BedFileDriver
 	 */
 	public String[] getSNPs(long index, int nrOfIndividualsInFAMfile) throws Exception
 	{
-		//calculate the number of individuals in the byte that is potentially padded
-		int nrOfIndividualsInPaddedByte = nrOfIndividualsInFAMfile % 4;
-		
-		//if nrOfIndividualsInPaddedByte is 0, there are no padding bit pairs (paddingIndividuals = 0)
-		//else, its 4 minus the amount of individuals in the padding byte (1, 2 or 3)
-		int paddingIndividuals = nrOfIndividualsInPaddedByte == 0 ? 0 : 4 - nrOfIndividualsInPaddedByte;
-		
-		//check if we got the numbers right.. we want a multiplication of 4
-		if((nrOfIndividualsInFAMfile + paddingIndividuals) % 4 != 0)
+		byte[] codes = getSnpGenotypeCodes(index, nrOfIndividualsInFAMfile);
+
+		String[] result = new String[nrOfIndividualsInFAMfile];
+		for (int i = 0; i < result.length; ++i)
 		{
-			throw new Exception("nrOfIndividuals + paddingIndividuals) % 4 must be 0");
+			result[i] = BIT_PAIRS[codes[i]];
 		}
-		
-		int bytesPerIndividual = (nrOfIndividualsInFAMfile + paddingIndividuals) / 4;
+		return result;
+	}
 
-		//inclusive: read this byte index
-		//add 3 because of the reserved bytes in plink format
-		long startByte = (index * bytesPerIndividual) + 3;
+	/**
+	 * Get the genotype codes of all individuals for this SNP index in the BIM
+	 * file
+	 * 
+	 * @param index
+	 * @param nrOfIndividualsInFAMfile
+	 * @return the genotype code per individual, see {@link #HOMOZYGOTE_FIRST},
+	 *         {@link #MISSING}, {@link #HETEROZYGOTE} and
+	 *         {@link #HOMOZYGOTE_SECOND}
+	 * @throws IOException
+	 */
+	public byte[] getSnpGenotypeCodes(long index, int nrOfIndividualsInFAMfile) throws IOException
+	{
+		byte[] codes = new byte[nrOfIndividualsInFAMfile];
+		decodeSnp(index, GENOTYPE_CODES, codes);
+		return codes;
+	}
 
-		long stopByte = startByte + bytesPerIndividual;
-		
-		byte[] res = new byte[(int) (stopByte - startByte)];
-		
-		RandomAccessFile raf = new RandomAccessFile(bedFile, "r");
-		raf.seek(startByte);
-		raf.read(res);
-		raf.close();
-		
-		String[] result = new String[nrOfIndividualsInFAMfile];
-		int res_index = 0;
-		
-		for (int i = 0; i < res.length; i++)
+	/**
+	 * Get the dosages of the first allele of all individuals for this SNP
+	 * index in the BIM file
+	 * 
+	 * @param index
+	 * @param nrOfIndividualsInFAMfile
+	 * @return dosage of 0, 1 or 2 per individual, -1 for missing
+	 * @throws IOException
+	 */
+	public byte[] getSnpDosages(long index, int nrOfIndividualsInFAMfile) throws IOException
+	{
+		byte[] dosages = new byte[nrOfIndividualsInFAMfile];
+		decodeSnp(index, DOSAGES, dosages);
+		return dosages;
+	}
+
+	/**
+	 * Get the genotype codes of consecutive SNPs in the BIM file with a single
+	 * read of the file
+	 * 
+	 * @param firstIndex
+	 *            index of the first SNP
+	 * @param nrOfSnps
+	 * @param nrOfIndividualsInFAMfile
+	 * @param codes
+	 *            filled with the genotype code of SNP firstIndex + i for
+	 *            individual j at i * nrOfIndividualsInFAMfile + j, can be
+	 *            reused between calls
+	 * @throws IOException
+	 */
+	public void getSnpBlockGenotypeCodes(long firstIndex, int nrOfSnps, int nrOfIndividualsInFAMfile, byte[] codes)
+			throws IOException
+	{
+		if (codes.length < (long) nrOfSnps * nrOfIndividualsInFAMfile) throw new IllegalArgumentException(
+				"Codes buffer is too small for " + nrOfSnps + " SNPs");
+
+		int bytesPerSnp = (nrOfIndividualsInFAMfile + 3) / 4;
+		if ((long) nrOfSnps * bytesPerSnp > Integer.MAX_VALUE) throw new IllegalArgumentException(
+				"Cannot read " + nrOfSnps + " SNPs at once");
+
+		ByteBuffer bytes = getSnpBytes(firstIndex, nrOfIndividualsInFAMfile, nrOfSnps);
+		for (int snp = 0; snp < nrOfSnps; ++snp)
 		{
-			byte b = res[i];
-			
-			String byteString = reverse(bits(b));
-			
-			int toBit = 8; // normally we take the whole byte
-			if (i == res.length - 1) // except at the end, when we correct for
-										// padding 0's
+			decode(bytes, snp * bytesPerSnp, GENOTYPE_CODES, codes, snp * nrOfIndividualsInFAMfile,
+					nrOfIndividualsInFAMfile);
+		}
+	}
+
+	/**
+	 * Decode the bytes of a SNP using a lookup table with the 4 values of
+	 * every byte value
+	 */
+	private void decodeSnp(long index, byte[] table, byte[] values) throws IOException
+	{
+		decode(getSnpBytes(index, values.length), 0, table, values, 0, values.length);
+	}
+
+	/**
+	 * @param bytes
+	 *            the bytes of the SNP start at bytesOffset
+	 * @param table
+	 * @param values
+	 *            filled with a value per individual starting at valuesOffset
+	 * @param nrOfIndividuals
+	 * @throws IOException
+	 */
+	private static void decode(ByteBuffer bytes, int bytesOffset, byte[] table, byte[] values, int valuesOffset,
+			int nrOfIndividuals) throws IOException
+	{
+		int fullBytes = nrOfIndividuals / 4;
+		int value = valuesOffset;
+		for (int i = 0; i < fullBytes; ++i)
+		{
+			int t = (bytes.get(bytesOffset + i) & 0xFF) << 2;
+			values[value++] = table[t];
+			values[value++] = table[t + 1];
+			values[value++] = table[t + 2];
+			values[value++] = table[t + 3];
+		}
+
+		int remaining = nrOfIndividuals % 4;
+		if (remaining > 0)
+		{
+			int b = bytes.get(bytesOffset + fullBytes) & 0xFF;
+			// the last byte is padded with 0's
+			if (b >>> (remaining * 2) != 0)
 			{
-				// At the end, the string is padded with 0's -> check
-				for (int j = paddingIndividuals * 2; j < 8; j++)
+				throw new IOException("Fatal error: padding 0's not present where expected!");
+			}
+			int t = b << 2;
+			for (int i = 0; i < remaining; ++i)
+			{
+				values[value++] = table[t + i];
+			}
+		}
+	}
+
+	/**
+	 * Get the bytes of this SNP index in the BIM file without copying them
+	 * from the mapped file
+	 * 
+	 * @param index
+	 * @param nrOfIndividualsInFAMfile
+	 * @return read only buffer from position 0 to the end of the SNP, the
+	 *         last byte is padded with 0's
+	 * @throws IOException
+	 */
+	public ByteBuffer getSnpBytes(long index, int nrOfIndividualsInFAMfile) throws IOException
+	{
+		return getSnpBytes(index, nrOfIndividualsInFAMfile, 1);
+	}
+
+	private ByteBuffer getSnpBytes(long firstIndex, int nrOfIndividualsInFAMfile, int nrOfSnps) throws IOException
+	{
+		if (mode != 1)
+		{
+			throw new IllegalStateException("SNPs can only be read from a SNP-major BED file, use createSnpMajor");
+		}
+
+		// every SNP starts at a new byte
+		int bytesPerSnp = (nrOfIndividualsInFAMfile + 3) / 4;
+
+		// add 3 because of the reserved bytes in plink format
+		return getBytes((firstIndex * bytesPerSnp) + 3, nrOfSnps * bytesPerSnp);
+	}
+
+	/**
+	 * Transpose this individual-major file to a SNP-major file. The bytes of a
+	 * tile of individuals and SNPs are copied to an array that fits in the CPU
+	 * cache and scattered from there to the SNP-major rows, the SNP-major file
+	 * is written sequentially.
+	 * 
+	 * @param nrOfIndividualsInFAMfile
+	 * @param nrOfSnpsInBIMfile
+	 * @param snpMajorFile
+	 *            the SNP-major file to write
+	 * @return driver of the SNP-major file
+	 * @throws Exception
+	 */
+	public BedFileDriver createSnpMajor(int nrOfIndividualsInFAMfile, long nrOfSnpsInBIMfile, File snpMajorFile)
+			throws Exception
+	{
+		return createSnpMajor(nrOfIndividualsInFAMfile, nrOfSnpsInBIMfile, snpMajorFile, TRANSPOSE_BUFFER_SIZE,
+				TRANSPOSE_TILE_INDIVIDUALS);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            maximum size of the SNP-major rows that are written at once
+	 * @param tileIndividuals
+	 *            number of individuals in a tile
+	 */
+	BedFileDriver createSnpMajor(int nrOfIndividuals, long nrOfSnps, File snpMajorFile, int bufferSize,
+			int tileIndividuals) throws Exception
+	{
+		if (mode != 0)
+		{
+			throw new IllegalStateException("Only individual-major BED files can be transposed");
+		}
+
+		int bytesPerIndividual = (int) ((nrOfSnps + 3) / 4);
+		int bytesPerSnp = (nrOfIndividuals + 3) / 4;
+		if (fileLength < 3 + (long) nrOfIndividuals * bytesPerIndividual)
+		{
+			throw new IOException("Individual-major BED file " + bedFile.getName() + " is too small for "
+					+ nrOfIndividuals + " individuals and " + nrOfSnps + " SNPs");
+		}
+
+		// the SNPs of the rows in the buffer, a multiple of 4 so every
+		// individual is read from whole bytes
+		int blockSnps = Math.min(TRANSPOSE_TILE_SNPS, bufferSize / Math.max(1, bytesPerSnp) / 4 * 4);
+		blockSnps = (int) Math.min(Math.max(4, blockSnps), (nrOfSnps + 3) / 4 * 4);
+		byte[] snpMajorRows = new byte[blockSnps * bytesPerSnp];
+		// the individual-major bytes of the SNPs of the block for the
+		// individuals of a tile
+		byte[] tile = new byte[tileIndividuals * (blockSnps / 4)];
+
+		// reused for all reads, so reading an individual does not allocate
+		ByteBuffer[] segmentReaders = new ByteBuffer[segments.length];
+		for (int i = 0; i < segments.length; ++i)
+		{
+			segmentReaders[i] = segments[i].duplicate();
+		}
+
+		FileOutputStream out = new FileOutputStream(snpMajorFile);
+		try
+		{
+			out.write(new byte[]
+			{ 108, 27, 1 });
+
+			for (long blockStart = 0; blockStart < nrOfSnps; blockStart += blockSnps)
+			{
+				int snps = (int) Math.min(blockSnps, nrOfSnps - blockStart);
+				int snpBytes = (snps + 3) / 4;
+				Arrays.fill(snpMajorRows, 0, snps * bytesPerSnp, (byte) 0);
+
+				for (int tileStart = 0; tileStart < nrOfIndividuals; tileStart += tileIndividuals)
 				{
-					if (byteString.charAt(j) != '0')
+					int tileSize = Math.min(tileIndividuals, nrOfIndividuals - tileStart);
+					for (int i = 0; i < tileSize; ++i)
 					{
-						throw new IOException("Fatal error: padding 0's not present where expected!");
+						readBytes(segmentReaders, 3 + (long) (tileStart + i) * bytesPerIndividual + blockStart / 4,
+								tile, i * snpBytes, snpBytes);
+					}
+
+					// each tile byte is decoded once into the rows of its 4
+					// SNPs, the rows are written in order of the individuals
+					for (int snpByte = 0; snpByte < snpBytes; ++snpByte)
+					{
+						int firstSnp = snpByte * 4;
+						int lastSnp = Math.min(firstSnp + 4, snps);
+						for (int i = 0; i < tileSize; ++i)
+						{
+							int individual = tileStart + i;
+							int column = individual >> 2;
+							int shift = (individual & 3) * 2;
+							int codes = (tile[i * snpBytes + snpByte] & 0xFF) << 2;
+							for (int snp = firstSnp; snp < lastSnp; ++snp)
+							{
+								snpMajorRows[snp * bytesPerSnp + column] |= GENOTYPE_CODES[codes + (snp & 3)] << shift;
+							}
+						}
 					}
 				}
-				toBit -= (paddingIndividuals * 2);
+
+				out.write(snpMajorRows, 0, snps * bytesPerSnp);
 			}
-			for (int pair = 0; pair < toBit; pair += 2)
+		}
+		finally
+		{
+			out.close();
+		}
+
+		return new BedFileDriver(snpMajorFile, segmentSize);
+	}
+
+	/**
+	 * Copy a part of the file using readers on the segments that are not
+	 * shared with other threads
+	 */
+	private void readBytes(ByteBuffer[] segmentReaders, long start, byte[] bytes, int offset, int length)
+			throws IOException
+	{
+		if (start < 0 || start + length > fileLength)
+		{
+			throw new IOException("Reading beyond the end of " + bedFile.getName());
+		}
+
+		int segment = (int) (start / segmentSize);
+		int segmentOffset = (int) (start % segmentSize);
+		for (int copied = 0; copied < length; ++segment, segmentOffset = 0)
+		{
+			ByteBuffer reader = segmentReaders[segment];
+			reader.position(segmentOffset);
+			int n = Math.min(length - copied, reader.remaining());
+			reader.get(bytes, offset + copied, n);
+			copied += n;
+		}
+	}
+
+	/**
+	 * Get a part of the file, only parts that span two segments are copied
+	 */
+	private ByteBuffer getBytes(long start, int length) throws IOException
+	{
+		if (start < 0 || start + length > fileLength)
+		{
+			throw new IOException("Reading beyond the end of " + bedFile.getName());
+		}
+
+		int segment = (int) (start / segmentSize);
+		int offset = (int) (start % segmentSize);
+		if (offset + length <= segments[segment].capacity())
+		{
+			// duplicate so concurrent reads do not share a position
+			ByteBuffer bytes = segments[segment].duplicate();
+			bytes.position(offset);
+			bytes.limit(offset + length);
+			return bytes.slice();
+		}
+
+		byte[] copy = new byte[length];
+		for (int copied = 0; copied < length; ++segment, offset = 0)
+		{
+			ByteBuffer bytes = segments[segment].duplicate();
+			bytes.position(offset);
+			int n = Math.min(length - copied, bytes.remaining());
+			bytes.get(copy, copied, n);
+			copied += n;
+		}
+		return ByteBuffer.wrap(copy).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Lookup table with the 4 values of every byte value, the value of the
+	 * first individual in the byte is at index byte * 4
+	 * 
+	 * @param codeValues
+	 *            the value of each of the 4 genotype codes
+	 */
+	private static byte[] createLookupTable(byte[] codeValues)
+	{
+		byte[] table = new byte[256 * 4];
+		for (int b = 0; b < 256; ++b)
+		{
+			for (int i = 0; i < 4; ++i)
 			{
-				result[res_index++] = byteString.substring(pair, pair + 2);
+				table[b * 4 + i] = codeValues[(b >>> (i * 2)) & 3];
 			}
 		}
-		return result;
+		return table;
 	}
 
 	/**
-	 * 
-	 * UNIMPLEMENTED
-	 * 
 	 * Get a String[] of elements from the BED file. This function returns the elements in
 	 * their intended order, with bits already reversed, and taking into account the padding
 	 * bits at the end of each sequence of SNPs. (SNP major mode: lists ALL individuals
@@ -241,45 +579,39 @@ public class BedFileDriver
 	 * from / to arguments to match up with your number of individuals (in which case, the
 	 * nrOfIndividuals argument is (to minus from)
 	 * 
+	 * The SNPs spanned by from -> to are read at once, see getSnpBlockGenotypeCodes
+	 * 
 	 * @param from: the starting bitpair, inclusive
 	 * @param to: last bitpair to read, exclusive (e.g. reading first element is 0, 1)
-	 * @param nrOfIndividualsInFAMfile: need to correct in two ways: 1) when to adjust for
-	 * padding when reading SNPs from the bytes and 2) to know the number of padding
-	 * bytes: by taking modulo 4 (4 bitpairs in a byte, 0 padding when the amount of
-	 * individuals is a multiplication of 4, etc)
+	 * @param nrOfIndividualsInFAMfile: the number of elements of a SNP, the
+	 * padding bit pairs at the end of each SNP are skipped
 	 * @return
 	 * @throws Exception 
 	 */
 	public String[] getElements(long from, long to, int nrOfIndividualsInFAMfile) throws Exception
-	{		
-		if(1==1) throw new UnsupportedOperationException("Not yet implemented");
-		
-		//calculate the number of individuals in the byte that is potentially padded
-		int nrOfIndividualsInPaddedByte = nrOfIndividualsInFAMfile % 4;
-		
-		//if nrOfIndividualsInPaddedByte is 0, there are no padding bit pairs (paddingIndividuals = 0)
-		int paddingIndividuals = nrOfIndividualsInPaddedByte == 0 ? 0 : 4 - nrOfIndividualsInPaddedByte;
-		
-		//check if we got the numbers right.. we want a multiplication of 4
-		if((nrOfIndividualsInFAMfile + paddingIndividuals) % 4 != 0)
+	{
+		if (from < 0 || to < from) throw new IllegalArgumentException("Invalid element range " + from + " to " + to);
+		if (nrOfIndividualsInFAMfile <= 0) throw new IllegalArgumentException("nrOfIndividualsInFAMfile must be > 0");
+
+		String[] result = new String[(int) (to - from)];
+		if (result.length == 0)
+		{
+			return result;
+		}
+
+		long firstSnp = from / nrOfIndividualsInFAMfile;
+		int nrOfSnps = (int) ((to - 1) / nrOfIndividualsInFAMfile - firstSnp + 1);
+		byte[] codes = new byte[nrOfSnps * nrOfIndividualsInFAMfile];
+		getSnpBlockGenotypeCodes(firstSnp, nrOfSnps, nrOfIndividualsInFAMfile, codes);
+
+		int offset = (int) (from - firstSnp * nrOfIndividualsInFAMfile);
+		for (int i = 0; i < result.length; ++i)
 		{
-			throw new Exception("nrOfIndividuals + paddingIndividuals) % 4 must be 0");
+			result[i] = BIT_PAIRS[codes[offset + i]];
 		}
-		
-		//calculate the amount of bytes that must be read to get the SNPs set (1 snp for all individuals)
-		int totalBytesToReadPerIndividual = (nrOfIndividualsInFAMfile + paddingIndividuals) / 4;
-		
-		//inclusive: read this byte index
-		long startByte = 0;
-		//exclusive: stop when reaching this index
-		long stopByte = 0;
-		
-		byte[] res = new byte[(int) (stopByte - startByte)];
-		
-		String[] placeholder = new String[0];
-		return placeholder;
+		return result;
 	}
-	
+
 	/**
 	 * Get a String[] of elements from the BED file.
 	 * 
@@ -310,64 +642,30 @@ public class BedFileDriver
 		byte[] res = new byte[(int) (stop - start)];
 		int res_index = 0;
 		String[] result = new String[(int) (to - from)]; // to - from = nr. of individuals
-		RandomAccessFile raf = new RandomAccessFile(bedFile, "r");
-		raf.seek(start);
-		raf.read(res);
-		raf.close();
+		getBytes(start, res.length).get(res);
 
 		for (int i = 0; i < res.length; i++)
 		{
-			byte b = res[i];
-			String byteString = reverse(bits(b));
+			int b = res[i] & 0xFF;
 
-			int toBit = 8; // normally we take the whole byte
+			int toPair = 4; // normally we take the whole byte
 			if (i == res.length - 1) // except at the end, when we correct for
 										// padding 0's
 			{
-				// At the end, the string is padded with 0's -> check
-				for (int j = paddingBitpairs * 2; j < 8; j++)
+				// At the end, the byte is padded with 0's -> check
+				if (b >>> (paddingBitpairs * 2) != 0)
 				{
-					if (byteString.charAt(j) != '0')
-					{
-						throw new IOException("Fatal error: padding 0's not present where expected!");
-					}
+					throw new IOException("Fatal error: padding 0's not present where expected!");
 				}
-				toBit -= (paddingBitpairs * 2);
+				toPair -= paddingBitpairs;
 			}
 
-			for (int pair = 0; pair < toBit; pair += 2)
+			for (int pair = 0; pair < toPair; pair++)
 			{
-				result[res_index++] = byteString.substring(pair, pair + 2);
+				result[res_index++] = BIT_PAIRS[GENOTYPE_CODES[(b << 2) + pair]];
 			}
 		}
 		return result;
 	}
 
-	/**
-	 * Helper function to get the bit values
-	 * 
-	 * @param b
-	 * @return
-	 */
-	private String bits(byte b)
-	{
-		StringBuilder bitsBuilder = new StringBuilder();
-		for (int bit = 7; bit >= 0; --bit)
-		{
-			bitsBuilder.append(((b >>> bit) & 1));
-		}
-		return bitsBuilder.toString();
-	}
-
-	/**
-	 * Helper function to reverse a string
-	 * 
-	 * @param string
-	 * @return
-	 */
-	private String reverse(String string)
-	{
-		return new StringBuffer(string).reverse().toString();
-	}
-
-}
+}
\ No newline at end of file
@@ -1,14 +1,9 @@
 package org.molgenis.genotype.plink.drivers;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.StringTokenizer;
 
 import org.molgenis.genotype.plink.PlinkFileParser;
 import org.molgenis.genotype.plink.datatypes.Biallele;
@@ -24,7 +19,7 @@ import org.molgenis.util.TextFileUtils;
  */
 public class BimFileDriver implements PlinkFileParser
 {
-	private BufferedReader reader;
+	private FieldScanner scanner;
 	private File file;
 	private String separators;
 	private long nrElements;
@@ -68,9 +63,8 @@ public class BimFileDriver implements PlinkFileParser
 		reset();
 
 		List<BimEntry> entryList = new ArrayList<BimEntry>();
-		String line;
-		for (int i = 0; (line = reader.readLine()) != null && i < to; ++i)
-			if (i >= from) entryList.add(parseEntry(line));
+		for (int i = 0; i < to && scanner.nextLine(); ++i)
+			if (i >= from) entryList.add(parseEntry());
 
 		return entryList;
 	}
@@ -86,40 +80,93 @@ public class BimFileDriver implements PlinkFileParser
 		reset();
 
 		List<BimEntry> entryList = new ArrayList<BimEntry>();
-		String line;
-		while ((line = reader.readLine()) != null)
-			entryList.add(parseEntry(line));
+		while (scanner.nextLine())
+			entryList.add(parseEntry());
 
+		nrElements = entryList.size();
 		return entryList;
 	}
 
-	private BimEntry parseEntry(String line) throws IOException
+	/**
+	 * Get all BIM file entries in a compact store, the file is read once
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public BimStore getBimStore() throws IOException
 	{
-		StringTokenizer strTokenizer = new StringTokenizer(line, this.separators);
-		try
-		{
-			String chromosome = strTokenizer.nextToken();
-			String snp = strTokenizer.nextToken();
-			double cM = Double.parseDouble(strTokenizer.nextToken());
-			long bpPos = Long.parseLong(strTokenizer.nextToken());
-			char allelle1 = strTokenizer.nextToken().charAt(0);
-			char allelle2 = strTokenizer.nextToken().charAt(0);
-			return new BimEntry(chromosome, snp, cM, bpPos, Biallele.create(allelle1, allelle2));
-		}
-		catch (NoSuchElementException e)
+		reset();
+
+		BimStore store = new BimStore();
+		byte[] chromosomeBytes = null;
+		String chromosome = null;
+		while (scanner.nextLine())
 		{
-			throw new IOException("error in line: " + line, e);
+			try
+			{
+				// the chromosome of the previous line is reused
+				scanner.requireField();
+				if (!scanner.fieldEquals(chromosomeBytes))
+				{
+					chromosomeBytes = scanner.getFieldBytes();
+					chromosome = scanner.getFieldString();
+				}
+				scanner.requireField();
+				byte[] buffer = scanner.getBuffer();
+				int snpStart = scanner.getFieldStart();
+				int snpLength = scanner.getFieldLength();
+				scanner.requireField(); // cM
+				scanner.requireField();
+				int bpPos = scanner.getFieldInt();
+				scanner.requireField();
+				char allelle1 = scanner.getFieldChar();
+				scanner.requireField();
+				char allelle2 = scanner.getFieldChar();
+				store.add(chromosome, buffer, snpStart, snpLength, bpPos, allelle1, allelle2);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// includes NumberFormatException
+				throw new IOException("error in line: " + scanner.getLine(), e);
+			}
 		}
-		catch (IndexOutOfBoundsException e)
+		store.finish();
+
+		nrElements = store.getNrOfSnps();
+		return store;
+	}
+
+	private BimEntry parseEntry() throws IOException
+	{
+		try
 		{
-			throw new IOException("error in line: " + line, e);
+			scanner.requireField();
+			String chromosome = scanner.getFieldString();
+			scanner.requireField();
+			String snp = scanner.getFieldString();
+			scanner.requireField();
+			double cM = Double.parseDouble(scanner.getFieldString());
+			scanner.requireField();
+			long bpPos = Long.parseLong(scanner.getFieldString());
+			scanner.requireField();
+			char allelle1 = scanner.getFieldChar();
+			scanner.requireField();
+			char allelle2 = scanner.getFieldChar();
+			return new BimEntry(chromosome, snp, cM, bpPos, Biallele.create(allelle1, allelle2));
 		}
 		catch (NumberFormatException e)
 		{
-			throw new IOException("error in line: " + line, e);
+			throw new IOException("error in line: " + scanner.getLine(), e);
 		}
 	}
 
+	/**
+	 * Get the number of entries, counted when not known from reading all
+	 * entries
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
 	public long getNrOfElements() throws IOException
 	{
 		if (nrElements == -1) nrElements = TextFileUtils.getNumberOfNonEmptyLines(file, FILE_ENCODING);
@@ -129,12 +176,12 @@ public class BimFileDriver implements PlinkFileParser
 	@Override
 	public void close() throws IOException
 	{
-		if (this.reader != null) this.reader.close();
+		if (this.scanner != null) this.scanner.close();
 	}
 
 	public void reset() throws IOException
 	{
-		if (this.reader != null) close();
-		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), FILE_ENCODING));
+		if (this.scanner != null) close();
+		this.scanner = new FieldScanner(file, separators);
 	}
 }
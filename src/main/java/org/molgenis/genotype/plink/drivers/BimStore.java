@@ -0,0 +1,360 @@
+package org.molgenis.genotype.plink.drivers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.molgenis.genotype.plink.PlinkFileParser;
+import org.molgenis.genotype.plink.datatypes.Biallele;
+
+/**
+ * Compact store of the SNPs of a BIM file. The SNPs are stored by their index
+ * in the BIM file in primitive arrays and the SNP IDs in an off-heap string
+ * table. Per chromosome the positions are sorted for lookups using binary
+ * search. The cM column is not stored.
+ *
+ * Created by {@link BimFileDriver#getBimStore()}
+ */
+public class BimStore
+{
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int[] EMPTY = new int[0];
+
+	private int nrOfSnps = 0;
+	// per SNP the index in chromosomes
+	private int[] chromosomeIndices = new int[INITIAL_CAPACITY];
+	private int[] positions = new int[INITIAL_CAPACITY];
+	private byte[] alleles1 = new byte[INITIAL_CAPACITY];
+	private byte[] alleles2 = new byte[INITIAL_CAPACITY];
+	// UTF-8 bytes of the IDs, the ID of SNP i is from idOffsets[i] to
+	// idOffsets[i + 1]
+	private ByteBuffer idBytes = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 16);
+	private int[] idOffsets = new int[INITIAL_CAPACITY + 1];
+	// open addressing hash table with SNP index + 1, 0 for empty slots
+	private int[] idHashTable = new int[INITIAL_CAPACITY * 2];
+
+	private final List<String> chromosomes = new ArrayList<String>();
+	private final Map<String, Integer> chromosomeIndexByName = new HashMap<String, Integer>();
+	// per chromosome the positions and the SNP indices sorted by position
+	private int[][] sortedPositions;
+	private int[][] sortedSnpIndices;
+
+	BimStore()
+	{
+	}
+
+	/**
+	 * Add the next SNP of the BIM file
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the SNP ID is not unique or an allele is not a single
+	 *             byte character
+	 */
+	void add(String chromosome, String snp, int bpPos, char allele1, char allele2)
+	{
+		byte[] id = snp.getBytes(PlinkFileParser.FILE_ENCODING);
+		add(chromosome, id, 0, id.length, bpPos, allele1, allele2);
+	}
+
+	/**
+	 * Add the next SNP of the BIM file
+	 *
+	 * @param id
+	 *            contains the UTF-8 bytes of the SNP ID from idOffset
+	 * @throws IllegalArgumentException
+	 *             if the SNP ID is not unique or an allele is not a single
+	 *             byte character
+	 */
+	void add(String chromosome, byte[] id, int idOffset, int idLength, int bpPos, char allele1, char allele2)
+	{
+		if (allele1 > 0xFF || allele2 > 0xFF) throw new IllegalArgumentException("Unsupported allele for SNP '"
+				+ new String(id, idOffset, idLength, PlinkFileParser.FILE_ENCODING) + "'");
+
+		int slot = findSlot(id, idOffset, idLength);
+		if (idHashTable[slot] != 0) throw new IllegalArgumentException("SNP '"
+				+ new String(id, idOffset, idLength, PlinkFileParser.FILE_ENCODING) + "' is not unique!");
+
+		if (nrOfSnps == positions.length)
+		{
+			int capacity = positions.length * 2;
+			chromosomeIndices = Arrays.copyOf(chromosomeIndices, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			alleles1 = Arrays.copyOf(alleles1, capacity);
+			alleles2 = Arrays.copyOf(alleles2, capacity);
+			idOffsets = Arrays.copyOf(idOffsets, capacity + 1);
+		}
+
+		Integer chromosomeIndex = chromosomeIndexByName.get(chromosome);
+		if (chromosomeIndex == null)
+		{
+			chromosomeIndex = chromosomes.size();
+			chromosomes.add(chromosome);
+			chromosomeIndexByName.put(chromosome, chromosomeIndex);
+		}
+
+		if (idBytes.remaining() < idLength)
+		{
+			long capacity = Math.max(idBytes.capacity() * 2L, (long) idBytes.position() + idLength);
+			if (capacity > Integer.MAX_VALUE) throw new IllegalStateException("SNP IDs do not fit in 2GB");
+			ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+			idBytes.flip();
+			grown.put(idBytes);
+			idBytes = grown;
+		}
+
+		chromosomeIndices[nrOfSnps] = chromosomeIndex;
+		positions[nrOfSnps] = bpPos;
+		alleles1[nrOfSnps] = (byte) allele1;
+		alleles2[nrOfSnps] = (byte) allele2;
+		idBytes.put(id, idOffset, idLength);
+		idOffsets[nrOfSnps + 1] = idBytes.position();
+		idHashTable[slot] = ++nrOfSnps;
+
+		// keep the hash table at most half full
+		if (nrOfSnps * 2 > idHashTable.length)
+		{
+			rehash(idHashTable.length * 2);
+		}
+	}
+
+	/**
+	 * Sort the positions per chromosome, called after all SNPs are added
+	 */
+	void finish()
+	{
+		int[] counts = new int[chromosomes.size()];
+		for (int i = 0; i < nrOfSnps; ++i)
+		{
+			++counts[chromosomeIndices[i]];
+		}
+
+		// position in the upper and the SNP index in the lower 32 bits, so
+		// SNPs at the same position stay in file order
+		long[][] keys = new long[chromosomes.size()][];
+		for (int c = 0; c < keys.length; ++c)
+		{
+			keys[c] = new long[counts[c]];
+			counts[c] = 0;
+		}
+		for (int i = 0; i < nrOfSnps; ++i)
+		{
+			int c = chromosomeIndices[i];
+			keys[c][counts[c]++] = ((long) positions[i] << 32) | i;
+		}
+
+		sortedPositions = new int[keys.length][];
+		sortedSnpIndices = new int[keys.length][];
+		for (int c = 0; c < keys.length; ++c)
+		{
+			long[] chromosomeKeys = keys[c];
+			Arrays.sort(chromosomeKeys);
+			sortedPositions[c] = new int[chromosomeKeys.length];
+			sortedSnpIndices[c] = new int[chromosomeKeys.length];
+			for (int i = 0; i < chromosomeKeys.length; ++i)
+			{
+				sortedPositions[c][i] = (int) (chromosomeKeys[i] >> 32);
+				sortedSnpIndices[c][i] = (int) chromosomeKeys[i];
+			}
+			keys[c] = null;
+		}
+
+		chromosomeIndices = Arrays.copyOf(chromosomeIndices, nrOfSnps);
+		positions = Arrays.copyOf(positions, nrOfSnps);
+		alleles1 = Arrays.copyOf(alleles1, nrOfSnps);
+		alleles2 = Arrays.copyOf(alleles2, nrOfSnps);
+		idOffsets = Arrays.copyOf(idOffsets, nrOfSnps + 1);
+	}
+
+	public int getNrOfSnps()
+	{
+		return nrOfSnps;
+	}
+
+	/**
+	 * @return the chromosomes in the order of their first SNP
+	 */
+	public List<String> getChromosomes()
+	{
+		return Collections.unmodifiableList(chromosomes);
+	}
+
+	public String getChromosome(int index)
+	{
+		return chromosomes.get(chromosomeIndices[checkIndex(index)]);
+	}
+
+	public String getSnp(int index)
+	{
+		checkIndex(index);
+		byte[] id = new byte[idOffsets[index + 1] - idOffsets[index]];
+		ByteBuffer bytes = idBytes.duplicate();
+		bytes.position(idOffsets[index]);
+		bytes.get(id);
+		return new String(id, PlinkFileParser.FILE_ENCODING);
+	}
+
+	public int getBpPos(int index)
+	{
+		return positions[checkIndex(index)];
+	}
+
+	public char getAllele1(int index)
+	{
+		return (char) (alleles1[checkIndex(index)] & 0xFF);
+	}
+
+	public char getAllele2(int index)
+	{
+		return (char) (alleles2[checkIndex(index)] & 0xFF);
+	}
+
+	public Biallele getBiallele(int index)
+	{
+		return Biallele.create(getAllele1(index), getAllele2(index));
+	}
+
+	/**
+	 * @param snp
+	 * @return index of the SNP in the BIM file or -1 if the ID is unknown
+	 */
+	public int getSnpIndex(String snp)
+	{
+		byte[] id = snp.getBytes(PlinkFileParser.FILE_ENCODING);
+		return idHashTable[findSlot(id, 0, id.length)] - 1;
+	}
+
+	/**
+	 * @param chromosome
+	 * @return indices of the SNPs on this chromosome sorted by position, empty
+	 *         if the chromosome is unknown
+	 */
+	public int[] getSnpIndices(String chromosome)
+	{
+		Integer c = chromosomeIndexByName.get(chromosome);
+		return c == null ? EMPTY : sortedSnpIndices[c].clone();
+	}
+
+	/**
+	 * @param chromosome
+	 * @param bpPos
+	 * @return indices of the SNPs at this position in the order of the BIM
+	 *         file, empty if there are none
+	 */
+	public int[] getSnpIndices(String chromosome, int bpPos)
+	{
+		Integer c = chromosomeIndexByName.get(chromosome);
+		if (c == null)
+		{
+			return EMPTY;
+		}
+
+		int[] chromosomePositions = sortedPositions[c];
+		// first SNP at the position
+		int low = 0;
+		int high = chromosomePositions.length;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (chromosomePositions[mid] < bpPos)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		int end = low;
+		while (end < chromosomePositions.length && chromosomePositions[end] == bpPos)
+		{
+			++end;
+		}
+		return Arrays.copyOfRange(sortedSnpIndices[c], low, end);
+	}
+
+	private int checkIndex(int index)
+	{
+		if (index < 0 || index >= nrOfSnps) throw new IndexOutOfBoundsException("SNP index " + index
+				+ " is not in 0 to " + nrOfSnps);
+		return index;
+	}
+
+	/**
+	 * Find the slot of this ID or the empty slot where it should be added
+	 */
+	private int findSlot(byte[] id, int offset, int length)
+	{
+		int mask = idHashTable.length - 1;
+		for (int slot = hash(id, offset, length) & mask;; slot = (slot + 1) & mask)
+		{
+			int snp = idHashTable[slot] - 1;
+			if (snp < 0 || idEquals(snp, id, offset, length))
+			{
+				return slot;
+			}
+		}
+	}
+
+	private boolean idEquals(int snp, byte[] id, int offset, int length)
+	{
+		int snpOffset = idOffsets[snp];
+		if (idOffsets[snp + 1] - snpOffset != length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; ++i)
+		{
+			if (idBytes.get(snpOffset + i) != id[offset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash(int size)
+	{
+		idHashTable = new int[size];
+		int mask = size - 1;
+		byte[] id = new byte[0];
+		for (int snp = 0; snp < nrOfSnps; ++snp)
+		{
+			int length = idOffsets[snp + 1] - idOffsets[snp];
+			if (id.length < length)
+			{
+				id = new byte[length];
+			}
+			for (int i = 0; i < length; ++i)
+			{
+				id[i] = idBytes.get(idOffsets[snp] + i);
+			}
+
+			int slot = hash(id, 0, length) & mask;
+			while (idHashTable[slot] != 0)
+			{
+				slot = (slot + 1) & mask;
+			}
+			idHashTable[slot] = snp + 1;
+		}
+	}
+
+	/**
+	 * 32 bit FNV-1a hash
+	 */
+	private static int hash(byte[] bytes, int offset, int length)
+	{
+		int hash = 0x811c9dc5;
+		for (int i = offset; i < offset + length; ++i)
+		{
+			hash ^= bytes[i] & 0xFF;
+			hash *= 0x01000193;
+		}
+		// spread the upper bits over the masked lower bits
+		return hash ^ (hash >>> 16);
+	}
+}
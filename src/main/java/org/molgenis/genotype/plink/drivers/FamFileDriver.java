@@ -1,14 +1,9 @@
 package org.molgenis.genotype.plink.drivers;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.StringTokenizer;
 
 import org.molgenis.genotype.plink.PlinkFileParser;
 import org.molgenis.genotype.plink.datatypes.FamEntry;
@@ -23,7 +18,7 @@ import org.molgenis.util.TextFileUtils;
  */
 public class FamFileDriver implements PlinkFileParser
 {
-	private BufferedReader reader;
+	private FieldScanner scanner;
 	private File file;
 	private String separators;
 	private long nrElements;
@@ -64,10 +59,10 @@ public class FamFileDriver implements PlinkFileParser
 		reset();
 
 		List<FamEntry> entryList = new ArrayList<FamEntry>();
-		String line;
-		while ((line = reader.readLine()) != null)
-			entryList.add(parseEntry(line));
+		while (scanner.nextLine())
+			entryList.add(parseEntry());
 
+		nrElements = entryList.size();
 		return entryList;
 	}
 
@@ -86,40 +81,43 @@ public class FamFileDriver implements PlinkFileParser
 		reset();
 
 		List<FamEntry> entryList = new ArrayList<FamEntry>();
-		String line;
-		for (int i = 0; (line = reader.readLine()) != null && i < to; ++i)
-			if (i >= from) entryList.add(parseEntry(line));
+		for (int i = 0; i < to && scanner.nextLine(); ++i)
+			if (i >= from) entryList.add(parseEntry());
 
 		return entryList;
 	}
 
-	private FamEntry parseEntry(String line) throws IOException
+	private FamEntry parseEntry() throws IOException
 	{
-		StringTokenizer strTokenizer = new StringTokenizer(line, this.separators);
 		try
 		{
-			String family = strTokenizer.nextToken();
-			String individual = strTokenizer.nextToken();
-			String father = strTokenizer.nextToken();
-			String mother = strTokenizer.nextToken();
-			byte sex = Byte.parseByte(strTokenizer.nextToken());
-			double phenotype = Double.parseDouble(strTokenizer.nextToken());
+			scanner.requireField();
+			String family = scanner.getFieldString();
+			scanner.requireField();
+			String individual = scanner.getFieldString();
+			scanner.requireField();
+			String father = scanner.getFieldString();
+			scanner.requireField();
+			String mother = scanner.getFieldString();
+			scanner.requireField();
+			byte sex = Byte.parseByte(scanner.getFieldString());
+			scanner.requireField();
+			double phenotype = Double.parseDouble(scanner.getFieldString());
 			return new FamEntry(family, individual, father, mother, sex, phenotype);
 		}
-		catch (NoSuchElementException e)
-		{
-			throw new IOException("error in line: " + line, e);
-		}
-		catch (IndexOutOfBoundsException e)
-		{
-			throw new IOException("error in line: " + line, e);
-		}
 		catch (NumberFormatException e)
 		{
-			throw new IOException("error in line: " + line, e);
+			throw new IOException("error in line: " + scanner.getLine(), e);
 		}
 	}
 
+	/**
+	 * Get the number of entries, counted when not known from reading all
+	 * entries
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
 	public long getNrOfElements() throws IOException
 	{
 		if (nrElements == -1) nrElements = TextFileUtils.getNumberOfNonEmptyLines(file, FILE_ENCODING);
@@ -129,12 +127,12 @@ public class FamFileDriver implements PlinkFileParser
 	@Override
 	public void close() throws IOException
 	{
-		if (this.reader != null) this.reader.close();
+		if (this.scanner != null) this.scanner.close();
 	}
 
 	public void reset() throws IOException
 	{
-		if (this.reader != null) close();
-		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), FILE_ENCODING));
+		if (this.scanner != null) close();
+		this.scanner = new FieldScanner(file, separators);
 	}
 }
@@ -0,0 +1,286 @@
+package org.molgenis.genotype.plink.drivers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.molgenis.genotype.plink.PlinkFileParser;
+
+/**
+ * Reads the separated fields of the lines of a text file from a byte buffer,
+ * no String is created for a line or a field unless requested. Lines without
+ * fields are skipped.
+ */
+class FieldScanner implements Closeable
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream in;
+	private final boolean[] separators = new boolean[256];
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferEnd = 0;
+	private boolean eof = false;
+
+	private int nextLineStart = 0;
+	private int lineStart = 0;
+	private int lineEnd = 0;
+	// start of the unread part of the line
+	private int position = 0;
+	private int fieldStart = 0;
+	private int fieldEnd = 0;
+
+	/**
+	 * @param file
+	 * @param separators
+	 *            ASCII characters that separate the fields
+	 * @throws IOException
+	 */
+	FieldScanner(File file, String separators) throws IOException
+	{
+		for (int i = 0; i < separators.length(); ++i)
+		{
+			char separator = separators.charAt(i);
+			if (separator >= 0x80) throw new IllegalArgumentException("Only ASCII field separators are supported");
+			this.separators[separator] = true;
+		}
+		this.separators['\n'] = true;
+		this.separators['\r'] = true;
+		this.in = new FileInputStream(file);
+	}
+
+	/**
+	 * Move to the next line with at least one field
+	 *
+	 * @return false at the end of the file
+	 * @throws IOException
+	 */
+	boolean nextLine() throws IOException
+	{
+		for (;;)
+		{
+			int searchFrom = nextLineStart;
+			int newline;
+			while ((newline = indexOfNewline(searchFrom)) < 0 && !eof)
+			{
+				int searched = bufferEnd - nextLineStart;
+				fill();
+				searchFrom = nextLineStart + searched;
+			}
+
+			if (newline < 0)
+			{
+				// last line without a line separator
+				if (nextLineStart == bufferEnd)
+				{
+					return false;
+				}
+				newline = bufferEnd;
+			}
+
+			lineStart = nextLineStart;
+			lineEnd = newline;
+			nextLineStart = Math.min(newline + 1, bufferEnd);
+			position = lineStart;
+
+			int p = lineStart;
+			while (p < lineEnd && isSeparator(buffer[p]))
+			{
+				++p;
+			}
+			if (p < lineEnd)
+			{
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Move to the next field of the current line
+	 *
+	 * @return false if there are no more fields on the line
+	 */
+	boolean nextField()
+	{
+		int p = position;
+		while (p < lineEnd && isSeparator(buffer[p]))
+		{
+			++p;
+		}
+		if (p == lineEnd)
+		{
+			position = p;
+			return false;
+		}
+
+		fieldStart = p;
+		while (p < lineEnd && !isSeparator(buffer[p]))
+		{
+			++p;
+		}
+		fieldEnd = p;
+		position = p;
+		return true;
+	}
+
+	/**
+	 * Move to the next field of the current line
+	 *
+	 * @throws IOException
+	 *             if there are no more fields on the line
+	 */
+	void requireField() throws IOException
+	{
+		if (!nextField())
+		{
+			throw new IOException("error in line: " + getLine());
+		}
+	}
+
+	byte[] getBuffer()
+	{
+		return buffer;
+	}
+
+	int getFieldStart()
+	{
+		return fieldStart;
+	}
+
+	int getFieldLength()
+	{
+		return fieldEnd - fieldStart;
+	}
+
+	boolean fieldEquals(byte[] bytes)
+	{
+		if (bytes == null || bytes.length != fieldEnd - fieldStart)
+		{
+			return false;
+		}
+		for (int i = 0; i < bytes.length; ++i)
+		{
+			if (buffer[fieldStart + i] != bytes[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	byte[] getFieldBytes()
+	{
+		return Arrays.copyOfRange(buffer, fieldStart, fieldEnd);
+	}
+
+	String getFieldString()
+	{
+		return new String(buffer, fieldStart, fieldEnd - fieldStart, PlinkFileParser.FILE_ENCODING);
+	}
+
+	/**
+	 * @return the first character of the field
+	 */
+	char getFieldChar()
+	{
+		int b = buffer[fieldStart] & 0xFF;
+		return b < 0x80 ? (char) b : getFieldString().charAt(0);
+	}
+
+	/**
+	 * @throws NumberFormatException
+	 */
+	int getFieldInt()
+	{
+		int p = fieldStart;
+		boolean negative = buffer[p] == '-';
+		if (negative || buffer[p] == '+')
+		{
+			++p;
+		}
+		if (p == fieldEnd || fieldEnd - p > 10)
+		{
+			throw new NumberFormatException("For input string: \"" + getFieldString() + "\"");
+		}
+
+		long value = 0;
+		for (; p < fieldEnd; ++p)
+		{
+			int digit = buffer[p] - '0';
+			if (digit < 0 || digit > 9)
+			{
+				throw new NumberFormatException("For input string: \"" + getFieldString() + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		value = negative ? -value : value;
+
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+		{
+			throw new NumberFormatException("For input string: \"" + getFieldString() + "\"");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * @return the current line for error messages
+	 */
+	String getLine()
+	{
+		return new String(buffer, lineStart, lineEnd - lineStart, PlinkFileParser.FILE_ENCODING);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	private boolean isSeparator(byte b)
+	{
+		return separators[b & 0xFF];
+	}
+
+	private int indexOfNewline(int from)
+	{
+		for (int i = from; i < bufferEnd; ++i)
+		{
+			if (buffer[i] == '\n')
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Move the unread bytes to the start of the buffer, grow the buffer if a
+	 * line does not fit, and read more bytes
+	 */
+	private void fill() throws IOException
+	{
+		int remaining = bufferEnd - nextLineStart;
+		if (nextLineStart > 0)
+		{
+			System.arraycopy(buffer, nextLineStart, buffer, 0, remaining);
+		}
+		else if (remaining == buffer.length)
+		{
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		nextLineStart = 0;
+		bufferEnd = remaining;
+
+		int n = in.read(buffer, bufferEnd, buffer.length - bufferEnd);
+		if (n < 0)
+		{
+			eof = true;
+		}
+		else
+		{
+			bufferEnd += n;
+		}
+	}
+}
@@ -2,22 +2,35 @@ package org.molgenis.genotype.plink.readers;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
 import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.plink.datatypes.Biallele;
-import org.molgenis.genotype.plink.datatypes.BimEntry;
 import org.molgenis.genotype.plink.datatypes.FamEntry;
 import org.molgenis.genotype.plink.drivers.BedFileDriver;
 import org.molgenis.genotype.plink.drivers.BimFileDriver;
+import org.molgenis.genotype.plink.drivers.BimStore;
 import org.molgenis.genotype.plink.drivers.FamFileDriver;
+import org.molgenis.genotype.variant.CalledDosageCalculator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
 import org.molgenis.genotype.variant.SampleVariantUniqueIdProvider;
@@ -33,6 +46,12 @@ import org.molgenis.genotype.variant.SampleVariantsProvider;
  */
 public class BedBimFamReader implements SampleVariantsProvider
 {
+	// maximum size of the genotype codes of the SNPs that are read at once
+	// when reading the SNPs in order
+	private static final int SNP_BLOCK_SIZE = 4 * 1024 * 1024;
+	// dosage of the first allele of each genotype code
+	private static final byte[] CODE_DOSAGES = new byte[]
+	{ 2, -1, 1, 0 };
 
 	private BedFileDriver bedfd;
 	private BimFileDriver bimfd;
@@ -43,48 +62,88 @@ public class BedBimFamReader implements SampleVariantsProvider
 	private long nrOfGenotypes;
 	private int paddingPerSnp;
 	private List<String> individualNames;
-	private List<String> snpNames;
-	private List<BimEntry> bimEntries;
 	private List<FamEntry> famEntries;
-	private List<String> sequences; //usually the chromosome numbers, unique within this list
-	private HashMap<String, Biallele> snpCoding;
+	private BimStore bimStore;
 	
 	//helper variables
-	private Map<String, Integer> snpIndexById = new HashMap<String, Integer>();
 	private final int sampleVariantProviderUniqueId;
 	
-	//first lookup is on sequence (usually chromosome, ie. "chr1" ), second on position (basepair, ie. 9345352)
-	private Map<String, Map<Long, Integer>> snpIndexByPosition  = new HashMap<String, Map<Long, Integer>>();
-	
 	//sample phasing
 	private Map<GeneticVariant, List<Boolean>> samplePhasing = new HashMap<GeneticVariant, List<Boolean>>();
 
+	//SNPs read in order are read in blocks, the next block is read in the background
+	private final int snpsPerBlock;
+	private final Object snpBlockLock = new Object();
+	private int lastReadIndex = -1;
+	private SnpBlock currentSnpBlock = null;
+	private Future<SnpBlock> nextSnpBlock = null;
+	//buffer of the previous block that is reused for the next block
+	private SnpBlock spareSnpBlock = null;
+	private ExecutorService readAheadExecutor = null;
+
 	public BedBimFamReader(File bed, File bim, File fam) throws Exception
 	{
+		this(bed, bim, fam, SNP_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param snpBlockSize
+	 *            maximum size of the genotype codes of the SNPs that are read
+	 *            at once
+	 */
+	BedBimFamReader(File bed, File bim, File fam, int snpBlockSize) throws Exception
+	{
+		if (snpBlockSize <= 0) throw new IllegalArgumentException("SnpBlockSize must be bigger then 0");
+
 		bedfd = new BedFileDriver(bed);
 		bimfd = new BimFileDriver(bim);
 		famfd = new FamFileDriver(fam);
 
-		nrOfIndividuals = famfd.getNrOfElements();
-		nrOfSnps = bimfd.getNrOfElements();
+		// the FAM and BIM files are read once, their lines are not counted first
+		loadIndividuals();
+		loadSnps();
+
+		if (bedfd.getMode() == 0)
+		{
+			// transposed once so the SNPs of both modes are read the same way
+			File snpMajorBed = File.createTempFile(bed.getName(), ".snpmajor.bed");
+			snpMajorBed.deleteOnExit();
+			bedfd = bedfd.createSnpMajor((int) nrOfIndividuals, nrOfSnps, snpMajorBed);
+		}
+
 		nrOfGenotypes = nrOfIndividuals * nrOfSnps;
 		paddingPerSnp = (int) ((bedfd.getNrOfElements() - nrOfGenotypes) / nrOfSnps);
+		snpsPerBlock = (int) Math.max(1, Math.min(nrOfSnps, snpBlockSize / Math.max(1, nrOfIndividuals)));
 		
 		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
 	}
 
+	/**
+	 * @deprecated the FAM file is loaded by the constructor, this method does
+	 *             nothing
+	 */
+	@Deprecated
 	public void setIndividuals() throws Exception
 	{
-		List<String> individualNames = new ArrayList<String>();
+	}
+
+	/**
+	 * @deprecated the BIM file is loaded by the constructor, this method does
+	 *             nothing
+	 */
+	@Deprecated
+	public void setSnps() throws Exception
+	{
+	}
+
+	private void loadIndividuals() throws Exception
+	{
 		List<FamEntry> famEntries = famfd.getAllEntries();
-		if (famEntries.size() != nrOfIndividuals)
-		{
-			throw new Exception("Problem with FAM file: scanned number of elements (" + nrOfIndividuals
-					+ ") does not match number of parsed elements (" + famEntries.size() + ")");
-		}
+		List<String> individualNames = new ArrayList<String>(famEntries.size());
+		Set<String> uniqueIndividualNames = new HashSet<String>(famEntries.size() * 2);
 		for (FamEntry fe : famEntries)
 		{
-			if (individualNames.contains(fe.getIndividual()))
+			if (!uniqueIndividualNames.add(fe.getIndividual()))
 			{
 				throw new Exception("Problem with FAM file: Individual '" + fe.getIndividual() + "' is not unique!");
 			}
@@ -92,79 +151,28 @@ public class BedBimFamReader implements SampleVariantsProvider
 		}
 		this.individualNames = individualNames;
 		this.famEntries = famEntries;
+		this.nrOfIndividuals = famEntries.size();
 	}
 
-	public void setSnps() throws Exception
+	private void loadSnps() throws Exception
 	{
-		nrOfSnps = bimfd.getNrOfElements();
-		List<String> snpNames = new ArrayList<String>();
-		List<String> uniqueChromosomes = new ArrayList<String>();
-		List<BimEntry> bimEntries = bimfd.getAllEntries();
-		if (bimEntries.size() != nrOfSnps)
-		{
-			throw new Exception(
-					"Problem with BIM file: scanned number of elements does not match number of parsed elements");
-		}
-		this.bimEntries = bimEntries;
-		snpCoding = new HashMap<String, Biallele>();
-		int index = 0;
-		for (BimEntry be : bimEntries)
-		{
-			if (snpCoding.containsKey(be.getSNP()))
-			{
-				throw new Exception("Problem with BIM file: SNP '" + be.getSNP() + "' is not unique!");
-			}
-			snpCoding.put(be.getSNP(), be.getBiallele());
-			snpNames.add(be.getSNP());
-			if(!uniqueChromosomes.contains(be.getChromosome()))
-			{
-				uniqueChromosomes.add(be.getChromosome());
-			}
-			snpIndexById.put(be.getSNP(), index);
-			
-			//add to sequence -> position map, create one if missing for this sequence (or 'chromosome')
-			if(snpIndexByPosition.get(be.getChromosome()) == null){
-				Map<Long, Integer> mapForThisSequence= new HashMap<Long, Integer>();
-				snpIndexByPosition.put(be.getChromosome(), mapForThisSequence);
-			}
-			snpIndexByPosition.get(be.getChromosome()).put(be.getBpPos(), index);
-			
-			index++;
-		}
-		this.snpNames = snpNames;
-		this.sequences = uniqueChromosomes;
+		this.bimStore = bimfd.getBimStore();
+		this.nrOfSnps = bimStore.getNrOfSnps();
 	}
 	
 	public List<GeneticVariant> loadVariantsForSequence(String seq)
 	{
-		List<GeneticVariant> variants = new ArrayList<GeneticVariant>();
-		
-		int index = 0;
-		for(BimEntry entry : this.bimEntries)
+		int[] indices = bimStore.getSnpIndices(seq);
+		List<GeneticVariant> variants = new ArrayList<GeneticVariant>(indices.length);
+		for (int index : indices)
 		{
-			String sequenceName = entry.getChromosome();
-			
-			if(!sequenceName.equals(seq))
-			{
-				continue;
-			}
-			
-			String id = entry.getSNP();
-			int startPos = (int) entry.getBpPos();
-			Biallele allele = bimEntries.get(index).getBiallele();	
-			GeneticVariant snp = ReadOnlyGeneticVariant.createSnp(id, startPos, sequenceName, this, allele.getAllele1(), allele.getAllele2());
-			variants.add(snp);
-			index++;
+			variants.add(createVariant(index));
 		}
-		
 		return variants;
 	}
 
 	public void extractGenotypes(File writeTo) throws Exception
 	{
-		setIndividuals();
-		setSnps();
-
 		Writer genotypesOut = new OutputStreamWriter(new FileOutputStream(writeTo), "UTF-8");
 
 		// /header: all individual names
@@ -180,11 +188,11 @@ public class BedBimFamReader implements SampleVariantsProvider
 		{
 			System.out.println((int) ((genotypeStart / (double) nrOfGenotypes) * 100) + "% of genotypes done");
 
-			String snpName = snpNames.get(snpCounter);
+			String snpName = bimStore.getSnp(snpCounter);
 			String[] allIndividualsForThisSNP = bedfd.getElements(genotypeStart, genotypeStart + nrOfIndividuals,
-					paddingPerSnp, snpCounter);
-			String a1 = Character.toString(snpCoding.get(snpName).getAllele1());
-			String a2 = Character.toString(snpCoding.get(snpName).getAllele2());
+					(int) nrOfIndividuals);
+			String a1 = Character.toString(bimStore.getAllele1(snpCounter));
+			String a2 = Character.toString(bimStore.getAllele2(snpCounter));
 			String hom1 = a1 + a1;
 			String hom2 = a2 + a2;
 			String hetr = a1 + a2;
@@ -207,19 +215,25 @@ public class BedBimFamReader implements SampleVariantsProvider
 		return famEntries;
 	}
 
-	public List<BimEntry> getBimEntries()
+	public BimStore getBimStore()
 	{
-		return bimEntries;
+		return bimStore;
 	}
 
 	public List<String> getSequences()
 	{
-		return sequences;
+		return bimStore.getChromosomes();
 	}
 	
-	public int getSnpIndexByPosition(String seq, long pos)
+	public List<GeneticVariant> loadVariantsForPosition(String seq, int pos)
 	{
-		return snpIndexByPosition.get(seq).get(pos);
+		int[] indices = bimStore.getSnpIndices(seq, pos);
+		List<GeneticVariant> variants = new ArrayList<GeneticVariant>(indices.length);
+		for (int index : indices)
+		{
+			variants.add(createVariant(index));
+		}
+		return variants;
 	}
 
 	public static void main(String[] args) throws Exception
@@ -241,55 +255,30 @@ public class BedBimFamReader implements SampleVariantsProvider
 			throw new IllegalArgumentException("Not a snp, missing primaryVariantId");
 		}
 
-		Integer index = snpIndexById.get(variant.getPrimaryVariantId());
+		int index = bimStore.getSnpIndex(variant.getPrimaryVariantId());
 
-		if (index == null)
+		if (index == -1)
 		{
 			throw new IllegalArgumentException("Unknown primaryVariantId [" + variant.getPrimaryVariantId() + "]");
 		}
 		
-		List<Biallele> bialleles = new ArrayList<Biallele>();
-		
-		try
-		{
-			String[] allIndividualsForThisSNP = bedfd.getSNPs(index.longValue(), (int)nrOfIndividuals);
-			
-			String a1 = Character.toString(snpCoding.get(snpNames.get(index)).getAllele1());
-			String a2 = Character.toString(snpCoding.get(snpNames.get(index)).getAllele2());
+		byte[] genotypeCodes = getGenotypeCodes(index);
 
-			for(int i = 0; i < this.nrOfIndividuals; i++)
-			{
-				Biallele b;
-				if(allIndividualsForThisSNP[i].equals("00"))
-				{
-					b = new Biallele(a1, a1);
-				}
-				else if(allIndividualsForThisSNP[i].equals("01"))
-				{
-					b = new Biallele(a1, a2);
-				}
-				else if(allIndividualsForThisSNP[i].equals("11"))
-				{
-					b = new Biallele(a2, a2);
-				}
-				else
-				{
-					b = null;
-				}
-				bialleles.add(b);
-			}
-			
-		}
-		catch (Exception e)
-		{
-			throw new GenotypeDataException(e);
-		}
+		char a1 = bimStore.getAllele1(index);
+		char a2 = bimStore.getAllele2(index);
 
-		List<Alleles> sampleVariants = new ArrayList<Alleles>(bialleles.size());
-		for (Biallele biallele : bialleles)
+		// the alleles of each genotype code, only created once per SNP
+		//weird: first allele 2 then allele 1 ?
+		Alleles[] codeAlleles = new Alleles[4];
+		codeAlleles[BedFileDriver.HOMOZYGOTE_FIRST] = Alleles.createBasedOnChars(a1, a1);
+		codeAlleles[BedFileDriver.MISSING] = Alleles.createBasedOnChars('0', '0');
+		codeAlleles[BedFileDriver.HETEROZYGOTE] = Alleles.createBasedOnChars(a2, a1);
+		codeAlleles[BedFileDriver.HOMOZYGOTE_SECOND] = Alleles.createBasedOnChars(a2, a2);
+
+		List<Alleles> sampleVariants = new ArrayList<Alleles>(genotypeCodes.length);
+		for (byte genotypeCode : genotypeCodes)
 		{
-			//weird: first allele 2 then allele 1 ?
-			sampleVariants.add(Alleles.createBasedOnChars(biallele.getAllele2(), biallele.getAllele1()));
+			sampleVariants.add(codeAlleles[genotypeCode]);
 		}
 		return sampleVariants;
 	}
@@ -301,6 +290,29 @@ public class BedBimFamReader implements SampleVariantsProvider
 		return 0;
 	}
 
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		int index = variant.getPrimaryVariantId() == null ? -1 : bimStore.getSnpIndex(variant.getPrimaryVariantId());
+
+		// the dosage is the count of the first allele if there is no reference,
+		// '0' alleles of monomorphic SNPs are missing for the calculator
+		if (index != -1 && variant.getRefAllele() == null && bimStore.getAllele1(index) != '0'
+				&& bimStore.getAllele2(index) != '0'
+				&& variant.getVariantAlleles().get(0) == Allele.create(bimStore.getAllele1(index)))
+		{
+			byte[] dosages = getGenotypeCodes(index);
+			for (int i = 0; i < dosages.length; ++i)
+			{
+				dosages[i] = CODE_DOSAGES[dosages[i]];
+			}
+			return dosages;
+		}
+
+		return CalledDosageCalculator.calculateCalledDosage(variant.getVariantAlleles(), variant.getRefAllele(),
+				getSampleVariants(variant));
+	}
+
 	@Override
 	public int getSampleVariantProviderUniqueId()
 	{
@@ -322,11 +334,162 @@ public class BedBimFamReader implements SampleVariantsProvider
 
 	public List<GeneticVariant> loadVariantsForIndex(int index)
 	{
-		BimEntry be = bimEntries.get(index);
 		List<GeneticVariant> variants = new ArrayList<GeneticVariant>();
-		Biallele allele = be.getBiallele();	
-		GeneticVariant snp = ReadOnlyGeneticVariant.createSnp(be.getSNP(), (int) be.getBpPos(), be.getChromosome(), this, allele.getAllele1(), allele.getAllele2());
-		variants.add(snp);
+		variants.add(createVariant(index));
 		return variants;
 	}
+
+	private GeneticVariant createVariant(int index)
+	{
+		return ReadOnlyGeneticVariant.createSnp(bimStore.getSnp(index), bimStore.getBpPos(index),
+				bimStore.getChromosome(index), this, bimStore.getAllele1(index), bimStore.getAllele2(index));
+	}
+
+	/**
+	 * Get the genotype codes of a SNP. SNPs that are read in order, as when
+	 * iterating over all variants, are read in blocks of consecutive SNPs and
+	 * the next block is read in the background.
+	 * 
+	 * @param index
+	 * @return new array with the genotype code per individual
+	 */
+	private byte[] getGenotypeCodes(int index)
+	{
+		try
+		{
+			synchronized (snpBlockLock)
+			{
+				boolean inOrder = index == lastReadIndex + 1
+						|| (currentSnpBlock != null && currentSnpBlock.contains(index));
+				lastReadIndex = index;
+				if (inOrder)
+				{
+					SnpBlock block = getSnpBlock(index);
+					byte[] genotypeCodes = new byte[(int) nrOfIndividuals];
+					System.arraycopy(block.codes, (index - block.firstIndex) * genotypeCodes.length, genotypeCodes,
+							0, genotypeCodes.length);
+					return genotypeCodes;
+				}
+			}
+			return bedfd.getSnpGenotypeCodes(index, (int) nrOfIndividuals);
+		}
+		catch (IOException e)
+		{
+			throw new GenotypeDataException(e);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new GenotypeDataException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new GenotypeDataException(e.getCause());
+		}
+	}
+
+	/**
+	 * Get the block containing this SNP and start reading the next block,
+	 * must be called holding the snpBlockLock
+	 */
+	private SnpBlock getSnpBlock(int index) throws IOException, InterruptedException, ExecutionException
+	{
+		if (currentSnpBlock != null && currentSnpBlock.contains(index))
+		{
+			return currentSnpBlock;
+		}
+
+		SnpBlock block = null;
+		if (nextSnpBlock != null)
+		{
+			Future<SnpBlock> next = nextSnpBlock;
+			nextSnpBlock = null;
+			block = next.get();
+			if (!block.contains(index))
+			{
+				spareSnpBlock = block;
+				block = null;
+			}
+		}
+		if (block == null)
+		{
+			block = readSnpBlock(index, spareSnpBlock);
+		}
+
+		spareSnpBlock = currentSnpBlock;
+		currentSnpBlock = block;
+
+		final int nextIndex = block.firstIndex + block.nrOfSnps;
+		if (nextIndex < nrOfSnps)
+		{
+			final SnpBlock buffer = spareSnpBlock;
+			spareSnpBlock = null;
+			nextSnpBlock = getReadAheadExecutor().submit(new Callable<SnpBlock>()
+			{
+				@Override
+				public SnpBlock call() throws IOException
+				{
+					return readSnpBlock(nextIndex, buffer);
+				}
+			});
+		}
+		return block;
+	}
+
+	/**
+	 * Read the SNPs of a block with a single read of the BED file
+	 * 
+	 * @param firstIndex
+	 * @param buffer
+	 *            block to reuse, or null to create a new block
+	 */
+	private SnpBlock readSnpBlock(int firstIndex, SnpBlock buffer) throws IOException
+	{
+		SnpBlock block = buffer != null ? buffer : new SnpBlock(snpsPerBlock * (int) nrOfIndividuals);
+		int nrOfSnpsInBlock = (int) Math.min(snpsPerBlock, nrOfSnps - firstIndex);
+		bedfd.getSnpBlockGenotypeCodes(firstIndex, nrOfSnpsInBlock, (int) nrOfIndividuals, block.codes);
+		block.firstIndex = firstIndex;
+		block.nrOfSnps = nrOfSnpsInBlock;
+		return block;
+	}
+
+	private ExecutorService getReadAheadExecutor()
+	{
+		if (readAheadExecutor == null)
+		{
+			// the thread stops when there is nothing to read
+			readAheadExecutor = new ThreadPoolExecutor(0, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory()
+					{
+						@Override
+						public Thread newThread(Runnable runnable)
+						{
+							Thread thread = new Thread(runnable, "bed-read-ahead");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return readAheadExecutor;
+	}
+
+	/**
+	 * Genotype codes of consecutive SNPs
+	 */
+	private static class SnpBlock
+	{
+		private int firstIndex;
+		private int nrOfSnps;
+		private final byte[] codes;
+
+		private SnpBlock(int capacity)
+		{
+			this.codes = new byte[capacity];
+		}
+
+		private boolean contains(int index)
+		{
+			return index >= firstIndex && index < firstIndex + nrOfSnps;
+		}
+	}
 }
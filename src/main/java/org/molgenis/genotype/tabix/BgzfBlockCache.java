@@ -0,0 +1,118 @@
+package org.molgenis.genotype.tabix;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used cache of inflated BGZF blocks, keyed by the address of
+ * the block in the compressed file. The size of the cache is bounded by the
+ * total number of inflated bytes.
+ * 
+ * The cache is shared by all readers of one bgzip file so lookups in the same
+ * region do not need to inflate the same block again.
+ */
+public class BgzfBlockCache
+{
+	public static final int DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+	private final long maxSize;
+	private final LinkedHashMap<Long, Block> blocks = new LinkedHashMap<Long, Block>(16, 0.75f, true);
+	private long size = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+
+	/**
+	 * 
+	 * @param maxSize
+	 *            maximum number of inflated bytes to cache, 0 disables caching
+	 */
+	public BgzfBlockCache(long maxSize)
+	{
+		if (maxSize < 0) throw new IllegalArgumentException("MaxSize must not be negative");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the cached block or null if not cached
+	 */
+	synchronized Block get(long blockAddress)
+	{
+		Block block = blocks.get(blockAddress);
+		if (block == null)
+		{
+			++missCount;
+		}
+		else
+		{
+			++hitCount;
+		}
+		return block;
+	}
+
+	synchronized void put(long blockAddress, Block block)
+	{
+		if (block.data.length > maxSize)
+		{
+			return;
+		}
+
+		Block previous = blocks.put(blockAddress, block);
+		if (previous != null)
+		{
+			size -= previous.data.length;
+		}
+		size += block.data.length;
+
+		// iteration order is least recently used first
+		Iterator<Block> eldest = blocks.values().iterator();
+		while (size > maxSize)
+		{
+			size -= eldest.next().data.length;
+			eldest.remove();
+		}
+	}
+
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * @return the number of inflated bytes in the cache
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	public long getMaxSize()
+	{
+		return maxSize;
+	}
+
+	public synchronized void clear()
+	{
+		blocks.clear();
+		size = 0;
+	}
+
+	/**
+	 * An inflated block, must not be modified once cached
+	 */
+	static class Block
+	{
+		final byte[] data;
+		final int compressedSize;
+
+		Block(byte[] data, int compressedSize)
+		{
+			this.data = data;
+			this.compressedSize = compressedSize;
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.molgenis.genotype.tabix.BgzfBlockCache.Block;
+
+/**
+ * Reads lines from a bgzip file using virtual file offsets, the same offsets
+ * that are used by the tabix index and samtools BlockCompressedInputStream.
+ * 
+ * Inflated blocks are looked up in and added to a block cache that can be
+ * shared with other readers of the same file. Sequential scans can inflate the
+ * next blocks in parallel using {@link #startReadAhead(ExecutorService, int)}.
+ * 
+ * Not thread safe, the block cache is.
+ */
+public class BgzfReader implements Closeable
+{
+	private static final int BLOCK_HEADER_LENGTH = 18;
+	private static final int BLOCK_LENGTH_OFFSET = 16;
+	private static final int BLOCK_FOOTER_LENGTH = 8;
+	private static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+	private final File bzipFile;
+	private final RandomAccessFile file;
+	private final long fileLength;
+	private final BgzfBlockCache blockCache;
+	private final Inflater inflater = new Inflater(true);
+	private final byte[] compressedBuffer = new byte[MAX_BLOCK_SIZE];
+	private final ByteLine byteLine = new ByteLine();
+
+	private ExecutorService readAheadExecutor = null;
+	private int readAheadBlocks = 0;
+	private final ArrayDeque<ReadAheadBlock> readAhead = new ArrayDeque<ReadAheadBlock>();
+	// address of the block after the last block read ahead
+	private long readAheadAddress = 0;
+
+	private Block block = null;
+	private long blockAddress = 0;
+	private int blockOffset = 0;
+
+	public BgzfReader(File bzipFile, BgzfBlockCache blockCache) throws IOException
+	{
+		if (bzipFile == null) throw new IllegalArgumentException("BzipFile is null");
+		if (blockCache == null) throw new IllegalArgumentException("BlockCache is null");
+
+		this.bzipFile = bzipFile;
+		this.file = new RandomAccessFile(bzipFile, "r");
+		this.fileLength = file.length();
+		this.blockCache = blockCache;
+	}
+
+	/**
+	 * Go to a virtual file offset, the block address is in the upper 48 bits
+	 * and the offset in the inflated block in the lower 16 bits
+	 * 
+	 * @param virtualOffset
+	 * @throws IOException
+	 */
+	public void seek(long virtualOffset) throws IOException
+	{
+		long address = virtualOffset >>> 16;
+		int offset = (int) (virtualOffset & 0xFFFF);
+
+		block = readBlock(address);
+		blockAddress = address;
+		if (offset > (block == null ? 0 : block.data.length))
+		{
+			throw new IOException("Invalid virtual offset " + virtualOffset + " in " + bzipFile.getName());
+		}
+		blockOffset = offset;
+	}
+
+	/**
+	 * Get the virtual file offset of the next byte. If the current block is
+	 * read completely this is the start of the next block.
+	 */
+	public long getFilePointer()
+	{
+		if (block != null && blockOffset == block.data.length)
+		{
+			return (blockAddress + block.compressedSize) << 16;
+		}
+		return blockAddress << 16 | blockOffset;
+	}
+
+	/**
+	 * Read the next line, '\n' and '\r\n' are line endings
+	 * 
+	 * @return the line without line ending or null if at the end of the file
+	 * @throws IOException
+	 */
+	public String readLine() throws IOException
+	{
+		return readLine(byteLine) ? byteLine.toString() : null;
+	}
+
+	/**
+	 * Read the next line without decoding it. A line within one block is a
+	 * view on the inflated block, only lines that span blocks are copied.
+	 * 
+	 * @param line
+	 *            filled with the line without line ending, only valid until
+	 *            the next read
+	 * @return false if at the end of the file
+	 * @throws IOException
+	 */
+	public boolean readLine(ByteLine line) throws IOException
+	{
+		boolean copy = false;
+		while (nextBlockAvailable())
+		{
+			byte[] data = block.data;
+			int start = blockOffset;
+			int end = start;
+			while (end < data.length && data[end] != '\n')
+			{
+				++end;
+			}
+			if (!copy && end < data.length)
+			{
+				line.set(data, start, end - start);
+				blockOffset = end + 1;
+				line.trimCarriageReturn();
+				return true;
+			}
+			if (!copy)
+			{
+				line.clear();
+				copy = true;
+			}
+			line.append(data, start, end - start);
+			if (end < data.length)
+			{
+				blockOffset = end + 1;
+				line.trimCarriageReturn();
+				return true;
+			}
+			blockOffset = end;
+		}
+		if (copy)
+		{
+			line.trimCarriageReturn();
+		}
+		return copy;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		stopReadAhead();
+		inflater.end();
+		file.close();
+	}
+
+	/**
+	 * Move to the next non empty block if the current block is read
+	 * completely
+	 * 
+	 * @return false if at the end of the file
+	 */
+	private boolean nextBlockAvailable() throws IOException
+	{
+		while (block == null || blockOffset == block.data.length)
+		{
+			long nextAddress = block == null ? blockAddress : blockAddress + block.compressedSize;
+			Block nextBlock = readAheadExecutor == null ? readBlock(nextAddress) : readAheadBlock(nextAddress);
+			if (nextBlock == null)
+			{
+				return false;
+			}
+			block = nextBlock;
+			blockAddress = nextAddress;
+			blockOffset = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Use a thread pool to inflate the blocks following the current block
+	 * while the current block is read. Only sequential reads benefit, a seek
+	 * to a block that is not the next block discards the blocks read ahead.
+	 * Blocks read ahead are not added to the block cache. If the executor is
+	 * shut down the reader falls back to inflating on the reading thread.
+	 * 
+	 * @param executor
+	 *            the pool inflating the blocks
+	 * @param readAheadBlocks
+	 *            maximum number of blocks read ahead
+	 */
+	public void startReadAhead(ExecutorService executor, int readAheadBlocks)
+	{
+		if (executor == null) throw new IllegalArgumentException("Executor is null");
+		if (readAheadBlocks <= 0) throw new IllegalArgumentException("ReadAheadBlocks must be bigger then 0");
+
+		stopReadAhead();
+		this.readAheadExecutor = executor;
+		this.readAheadBlocks = readAheadBlocks;
+	}
+
+	/**
+	 * Stop reading ahead and discard the blocks that are read ahead
+	 */
+	public void stopReadAhead()
+	{
+		clearReadAhead();
+		readAheadExecutor = null;
+	}
+
+	private void clearReadAhead()
+	{
+		for (ReadAheadBlock readAheadBlock : readAhead)
+		{
+			readAheadBlock.block.cancel(false);
+		}
+		readAhead.clear();
+	}
+
+	/**
+	 * Get the next block from the blocks read ahead and read further ahead
+	 * 
+	 * @return the inflated block or null if the address is at the end of the
+	 *         file
+	 */
+	private Block readAheadBlock(long address) throws IOException
+	{
+		if (readAhead.isEmpty() || readAhead.peekFirst().address != address)
+		{
+			clearReadAhead();
+			readAheadAddress = address;
+		}
+
+		while (readAhead.size() < readAheadBlocks && readAheadAddress < fileLength)
+		{
+			final long blockAddress = readAheadAddress;
+			final int compressedSize = readCompressedBlock(blockAddress);
+			final byte[] compressed = Arrays.copyOf(compressedBuffer, compressedSize);
+			Future<Block> block;
+			try
+			{
+				block = readAheadExecutor.submit(new Callable<Block>()
+				{
+					@Override
+					public Block call() throws IOException
+					{
+						Inflater blockInflater = new Inflater(true);
+						try
+						{
+							return inflateBlock(compressed, compressedSize, blockInflater, blockAddress);
+						}
+						finally
+						{
+							blockInflater.end();
+						}
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				// the executor is shut down, use the blocks that are already
+				// submitted and inflate the following blocks on this thread
+				readAheadBlocks = 0;
+				break;
+			}
+			readAhead.addLast(new ReadAheadBlock(blockAddress, block));
+			readAheadAddress += compressedSize;
+		}
+
+		ReadAheadBlock readAheadBlock = readAhead.pollFirst();
+		if (readAheadBlock == null)
+		{
+			if (readAheadBlocks == 0)
+			{
+				readAheadExecutor = null;
+				return readBlock(address);
+			}
+			return null;
+		}
+
+		try
+		{
+			return readAheadBlock.block.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while inflating block at " + address + " in " + bzipFile.getName(), e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error inflating block at " + address + " in " + bzipFile.getName(), e.getCause());
+		}
+	}
+
+	/**
+	 * @return the inflated block or null if the address is at the end of the
+	 *         file
+	 */
+	private Block readBlock(long address) throws IOException
+	{
+		if (address >= fileLength)
+		{
+			return null;
+		}
+
+		Block cachedBlock = blockCache.get(address);
+		if (cachedBlock != null)
+		{
+			return cachedBlock;
+		}
+
+		int compressedSize = readCompressedBlock(address);
+		Block block = inflateBlock(compressedBuffer, compressedSize, inflater, address);
+		blockCache.put(address, block);
+		return block;
+	}
+
+	/**
+	 * Read the compressed block at this address in the compressed buffer
+	 * 
+	 * @return the size of the compressed block
+	 */
+	private int readCompressedBlock(long address) throws IOException
+	{
+		file.seek(address);
+		file.readFully(compressedBuffer, 0, BLOCK_HEADER_LENGTH);
+		if (compressedBuffer[0] != 31 || (compressedBuffer[1] & 0xFF) != 139 || compressedBuffer[12] != 'B'
+				|| compressedBuffer[13] != 'C')
+		{
+			throw new IOException("Invalid BGZF block header at " + address + " in " + bzipFile.getName());
+		}
+		int compressedSize = unpackInt16(compressedBuffer, BLOCK_LENGTH_OFFSET) + 1;
+		if (compressedSize < BLOCK_HEADER_LENGTH + BLOCK_FOOTER_LENGTH || compressedSize > MAX_BLOCK_SIZE)
+		{
+			throw new IOException("Invalid BGZF block size at " + address + " in " + bzipFile.getName());
+		}
+		file.readFully(compressedBuffer, BLOCK_HEADER_LENGTH, compressedSize - BLOCK_HEADER_LENGTH);
+		return compressedSize;
+	}
+
+	private Block inflateBlock(byte[] compressed, int compressedSize, Inflater inflater, long address)
+			throws IOException
+	{
+		int inflatedSize = unpackInt32(compressed, compressedSize - 4);
+		byte[] data = new byte[inflatedSize];
+		inflater.reset();
+		inflater.setInput(compressed, BLOCK_HEADER_LENGTH, compressedSize - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH);
+		try
+		{
+			int inflated = 0;
+			while (inflated < inflatedSize && !inflater.finished())
+			{
+				int count = inflater.inflate(data, inflated, inflatedSize - inflated);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				inflated += count;
+			}
+			if (inflated != inflatedSize)
+			{
+				throw new IOException("Truncated BGZF block at " + address + " in " + bzipFile.getName());
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException("Corrupt BGZF block at " + address + " in " + bzipFile.getName(), e);
+		}
+
+		return new Block(data, compressedSize);
+	}
+
+	private static int unpackInt16(byte[] buffer, int offset)
+	{
+		return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+	}
+
+	private static int unpackInt32(byte[] buffer, int offset)
+	{
+		return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8) | ((buffer[offset + 2] & 0xFF) << 16)
+				| ((buffer[offset + 3] & 0xFF) << 24);
+	}
+
+	private static class ReadAheadBlock
+	{
+		final long address;
+		final Future<Block> block;
+
+		ReadAheadBlock(long address, Future<Block> block)
+		{
+			this.address = address;
+			this.block = block;
+		}
+	}
+}
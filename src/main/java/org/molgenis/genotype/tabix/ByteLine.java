@@ -0,0 +1,143 @@
+package org.molgenis.genotype.tabix;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A line of a data file as a view on bytes, without the line ending. The
+ * bytes are only decoded to a String when {@link #toString()} is called.
+ * 
+ * A line is reused by the reader that fills it, it is only valid until the
+ * next line is read. The characters returned by {@link #charAt(int)} are the
+ * bytes as ISO-8859-1, parsers of ASCII columns can use them directly.
+ */
+public class ByteLine implements CharSequence
+{
+	private static final Charset CHARSET_LATIN1 = Charset.forName("ISO-8859-1");
+	private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+	private byte[] copyBuffer = new byte[256];
+	private byte[] bytes = copyBuffer;
+	private int offset = 0;
+	private int length = 0;
+
+	/**
+	 * @return the bytes of the line start at {@link #getOffset()}, the array
+	 *         must not be modified
+	 */
+	public byte[] getBytes()
+	{
+		return bytes;
+	}
+
+	public int getOffset()
+	{
+		return offset;
+	}
+
+	@Override
+	public int length()
+	{
+		return length;
+	}
+
+	public byte byteAt(int index)
+	{
+		if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+		return bytes[offset + index];
+	}
+
+	@Override
+	public char charAt(int index)
+	{
+		return (char) (byteAt(index) & 0xFF);
+	}
+
+	/**
+	 * @return the index of the first occurrence of the character from index
+	 *         start or -1 if not found
+	 */
+	public int indexOf(char c, int start)
+	{
+		for (int i = offset + Math.max(start, 0), end = offset + length; i < end; ++i)
+		{
+			if (bytes[i] == c)
+			{
+				return i - offset;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end)
+	{
+		return toString(start, end);
+	}
+
+	/**
+	 * Decode part of the line to a String, ASCII only data is decoded as
+	 * ISO-8859-1 without the overhead of the UTF-8 decoder
+	 */
+	public String toString(int start, int end)
+	{
+		if (start < 0 || end > length || start > end) throw new IndexOutOfBoundsException("Start: " + start
+				+ ", end: " + end + ", length: " + length);
+		for (int i = offset + start; i < offset + end; ++i)
+		{
+			if (bytes[i] < 0)
+			{
+				return new String(bytes, offset + start, end - start, CHARSET_UTF8);
+			}
+		}
+		return new String(bytes, offset + start, end - start, CHARSET_LATIN1);
+	}
+
+	@Override
+	public String toString()
+	{
+		return toString(0, length);
+	}
+
+	/**
+	 * View on bytes that are not owned by this line
+	 */
+	void set(byte[] bytes, int offset, int length)
+	{
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Start a line that is appended to the own buffer of this line
+	 */
+	void clear()
+	{
+		bytes = copyBuffer;
+		offset = 0;
+		length = 0;
+	}
+
+	/**
+	 * Append to a line started with {@link #clear()}
+	 */
+	void append(byte[] source, int sourceOffset, int sourceLength)
+	{
+		if (length + sourceLength > copyBuffer.length)
+		{
+			copyBuffer = Arrays.copyOf(copyBuffer, Math.max(length + sourceLength, copyBuffer.length * 2));
+			bytes = copyBuffer;
+		}
+		System.arraycopy(source, sourceOffset, copyBuffer, length, sourceLength);
+		length += sourceLength;
+	}
+
+	void trimCarriageReturn()
+	{
+		if (length > 0 && bytes[offset + length - 1] == '\r')
+		{
+			--length;
+		}
+	}
+}
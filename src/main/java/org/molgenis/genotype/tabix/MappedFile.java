@@ -0,0 +1,110 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only memory mapping of a file that can be larger than 2GB. The file is
+ * mapped in segments, like the BED file of a plink dataset. The segments
+ * overlap by 8 bytes so an int or a long is always read from one segment.
+ *
+ * Reads use absolute positions and are thread safe. Use
+ * {@link #checkRange(long, long)} to validate positions read from the file.
+ */
+class MappedFile
+{
+	static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+	// bytes of the next segment that are also mapped at the end of a segment
+	private static final int OVERLAP = 8;
+
+	private final File file;
+	private final long length;
+	private final long segmentSize;
+	private final MappedByteBuffer[] segments;
+
+	MappedFile(File file) throws IOException
+	{
+		this(file, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param file
+	 * @param segmentSize
+	 *            size of the mapped parts of the file without the overlap
+	 * @throws IOException
+	 */
+	MappedFile(File file, long segmentSize) throws IOException
+	{
+		if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE - OVERLAP) throw new IllegalArgumentException(
+				"SegmentSize must be bigger then 0 and fit in an int");
+		this.file = file;
+		this.segmentSize = segmentSize;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			length = raf.length();
+
+			// the mapping stays valid after closing the file
+			FileChannel channel = raf.getChannel();
+			segments = new MappedByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+			for (int i = 0; i < segments.length; ++i)
+			{
+				long start = i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(segmentSize + OVERLAP, length - start));
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	long length()
+	{
+		return length;
+	}
+
+	byte get(long position)
+	{
+		return segment(position).get(offset(position));
+	}
+
+	int getInt(long position)
+	{
+		return segment(position).getInt(offset(position));
+	}
+
+	long getLong(long position)
+	{
+		return segment(position).getLong(offset(position));
+	}
+
+	/**
+	 * Check that the file has a part of size bytes at position
+	 * 
+	 * @throws IOException
+	 *             if the part is beyond the end of the file
+	 */
+	void checkRange(long position, long size) throws IOException
+	{
+		if (position < 0 || size < 0 || position + size > length)
+		{
+			throw new IOException("Reading beyond the end of " + file.getName());
+		}
+	}
+
+	private MappedByteBuffer segment(long position)
+	{
+		return segments[(int) (position / segmentSize)];
+	}
+
+	private int offset(long position)
+	{
+		return (int) (position % segmentSize);
+	}
+}
@@ -6,18 +6,25 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import net.sf.samtools.util.BlockCompressedInputStream;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.molgenis.genotype.GenotypeDataIndex;
-import org.molgenis.genotype.RawLineQuery;
+import org.molgenis.genotype.Region;
 import org.molgenis.genotype.VariantQuery;
+import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.VariantLineMapper;
 
 /**
@@ -36,7 +43,9 @@ public class TabixIndex implements GenotypeDataIndex
 {
 	private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
 	private static int MAX_BIN = 37450;
-	private static int TAD_LIDX_SHIFT = 14;
+	static final int TAD_LIDX_SHIFT = 14;
+	// maximum number of idle readers kept open for reuse
+	private static final int MAX_POOLED_READERS = 8;
 
 	private String[] seqNames;// distinct #CHROM column
 
@@ -50,6 +59,12 @@ public class TabixIndex implements GenotypeDataIndex
 
 	private File bzipFile;
 	private VariantLineMapper variantLineMapper;
+	private final BgzfBlockCache blockCache = new BgzfBlockCache(BgzfBlockCache.DEFAULT_MAX_SIZE);
+	private final ArrayDeque<BgzfReader> readerPool = new ArrayDeque<BgzfReader>();
+	private boolean closed = false;
+	private ExecutorService scanExecutor = null;
+	private volatile TabixPositionIndex positionIndex = null;
+	private int scanReadAheadBlocks = 0;
 
 	public TabixIndex(File tabixIndexFile, File bzipFile, VariantLineMapper variantLineMapper) throws IOException
 	{
@@ -73,13 +88,217 @@ public class TabixIndex implements GenotypeDataIndex
 	@Override
 	public VariantQuery createQuery()
 	{
-		return new TabixQuery(bzipFile, this, variantLineMapper);
+		return new TabixQuery(this, variantLineMapper);
+	}
+
+	/**
+	 * Create a query that maps the lines using a different mapper, for example
+	 * one that filters lines
+	 * 
+	 * @param variantLineMapper
+	 * @return
+	 */
+	public VariantQuery createQuery(VariantLineMapper variantLineMapper)
+	{
+		return new TabixQuery(this, variantLineMapper);
 	}
 
 	@Override
-	public RawLineQuery createRawLineQuery()
+	public TabixRawLineQuery createRawLineQuery()
+	{
+		return new TabixRawLineQuery(this);
+	}
+
+	/**
+	 * Get the cache of inflated blocks that is shared by the queries on this
+	 * index
+	 */
+	public BgzfBlockCache getBlockCache()
+	{
+		return blockCache;
+	}
+
+	/**
+	 * Map the lines that start at virtual file offsets. The offsets are read
+	 * in ascending order so each block is read once.
+	 * 
+	 * @param filePointers
+	 *            virtual file offsets of the start of lines
+	 * @return the variants in the order of the file, lines skipped by the
+	 *         mapper are left out
+	 * @throws IOException
+	 */
+	public List<GeneticVariant> readVariants(long[] filePointers) throws IOException
+	{
+		long[] sortedFilePointers = filePointers.clone();
+		Arrays.sort(sortedFilePointers);
+
+		List<GeneticVariant> variants = new ArrayList<GeneticVariant>(sortedFilePointers.length);
+		ByteLine line = new ByteLine();
+		BgzfReader reader = acquireReader();
+		try
+		{
+			for (int i = 0; i < sortedFilePointers.length; ++i)
+			{
+				if (i > 0 && sortedFilePointers[i] == sortedFilePointers[i - 1]) continue;
+				reader.seek(sortedFilePointers[i]);
+				if (reader.readLine(line))
+				{
+					GeneticVariant variant = variantLineMapper.mapLine(line.toString());
+					if (variant != null)
+					{
+						variants.add(variant);
+					}
+				}
+			}
+		}
+		finally
+		{
+			releaseReader(reader);
+		}
+
+		return variants;
+	}
+
+	/**
+	 * Use a position index for point lookups. Queries on a single position
+	 * that is in the position index seek directly to the first line that can
+	 * overlap the position instead of using the linear index.
+	 * 
+	 * @param positionIndex
+	 *            null to only use the tabix index
+	 */
+	public void setPositionIndex(TabixPositionIndex positionIndex)
+	{
+		if (positionIndex != null && positionIndex.getSequenceCount() != seqNames.length)
+		{
+			throw new IllegalArgumentException("Position index has " + positionIndex.getSequenceCount()
+					+ " sequences, tabix index has " + seqNames.length);
+		}
+		this.positionIndex = positionIndex;
+	}
+
+	public TabixPositionIndex getPositionIndex()
+	{
+		return positionIndex;
+	}
+
+	protected File getBzipFile()
+	{
+		return bzipFile;
+	}
+
+	/**
+	 * Inflate the blocks of queries on a complete sequence using a pool of
+	 * threads. The blocks are inflated in parallel and read in order, so the
+	 * variants are returned in the same order as a serial scan. Scans that are
+	 * running when the threads are changed inflate their remaining blocks on
+	 * the reading thread.
+	 * 
+	 * @param threads
+	 *            number of threads, 0 to inflate the blocks on the reading
+	 *            thread
+	 */
+	public synchronized void setScanThreads(int threads)
+	{
+		if (threads < 0) throw new IllegalArgumentException("Threads must not be negative");
+
+		if (scanExecutor != null)
+		{
+			scanExecutor.shutdown();
+			scanExecutor = null;
+		}
+
+		if (threads > 0)
+		{
+			scanExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "tabix-scan-" + bzipFile.getName());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			// enough blocks to keep all threads busy while the blocks are read
+			scanReadAheadBlocks = threads * 4;
+		}
+	}
+
+	/**
+	 * Prepare a reader to scan a complete sequence, uses the scan threads if
+	 * set
+	 */
+	protected synchronized void startScan(BgzfReader reader)
+	{
+		if (scanExecutor != null)
+		{
+			reader.startReadAhead(scanExecutor, scanReadAheadBlocks);
+		}
+	}
+
+	/**
+	 * Get an open reader on the bzip file. Readers returned by
+	 * {@link #releaseReader(BgzfReader)} are reused so a query does not need to
+	 * open the file again. A reader is only used by one query at a time.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	protected BgzfReader acquireReader() throws IOException
+	{
+		synchronized (readerPool)
+		{
+			BgzfReader reader = readerPool.pollFirst();
+			if (reader != null)
+			{
+				return reader;
+			}
+		}
+		return new BgzfReader(bzipFile, blockCache);
+	}
+
+	/**
+	 * Return a reader acquired using {@link #acquireReader()}. The reader is
+	 * closed if the pool is full or the index is closed.
+	 * 
+	 * @param reader
+	 * @throws IOException
+	 */
+	protected void releaseReader(BgzfReader reader) throws IOException
 	{
-		return new TabixRawLineQuery(bzipFile, this);
+		reader.stopReadAhead();
+		synchronized (readerPool)
+		{
+			if (!closed && readerPool.size() < MAX_POOLED_READERS)
+			{
+				readerPool.addFirst(reader);
+				return;
+			}
+		}
+		reader.close();
+	}
+
+	/**
+	 * Close the idle readers on the bzip file and stop the scan threads.
+	 * Readers of queries that are still open are closed when the query result
+	 * is closed.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		setScanThreads(0);
+		synchronized (readerPool)
+		{
+			closed = true;
+			for (BgzfReader reader : readerPool)
+			{
+				reader.close();
+			}
+			readerPool.clear();
+		}
 	}
 
 	private int chr2tid(final String chr)
@@ -124,27 +343,7 @@ public class TabixIndex implements GenotypeDataIndex
 			mIndex = new TIndex[seqNames.length];
 			for (i = 0; i < seqNames.length; ++i)
 			{
-				// the binning index
-				int n_bin = readInt(bciStream);
-				mIndex[i] = new TIndex();
-				mIndex[i].b = new HashMap<Integer, TPair64[]>();
-				for (j = 0; j < n_bin; ++j)
-				{
-					int bin = readInt(bciStream);
-					TPair64[] chunks = new TPair64[readInt(bciStream)];
-					for (k = 0; k < chunks.length; ++k)
-					{
-						long u = readLong(bciStream);
-						long v = readLong(bciStream);
-						chunks[k] = new TPair64(u, v); // in C, this is
-														// inefficient
-					}
-					mIndex[i].b.put(bin, chunks);
-				}
-				// the linear index
-				mIndex[i].l = new long[readInt(bciStream)];
-				for (k = 0; k < mIndex[i].l.length; ++k)
-					mIndex[i].l[k] = readLong(bciStream);
+				mIndex[i] = readTIndex(bciStream);
 			}
 		}
 		finally
@@ -153,10 +352,78 @@ public class TabixIndex implements GenotypeDataIndex
 		}
 	}
 
+	/**
+	 * Read the binning and linear index of one sequence. The bins are stored
+	 * sorted with the chunks of all bins in two parallel arrays
+	 */
+	private TIndex readTIndex(InputStream in) throws IOException
+	{
+		int nBins = readInt(in);
+		int[] bins = new int[nBins];
+		long[][] binChunks = new long[nBins][];
+		int nChunks = 0;
+		for (int j = 0; j < nBins; ++j)
+		{
+			bins[j] = readInt(in);
+			long[] chunks = new long[readInt(in) * 2];
+			for (int k = 0; k < chunks.length; ++k)
+			{
+				chunks[k] = readLong(in);
+			}
+			binChunks[j] = chunks;
+			nChunks += chunks.length / 2;
+		}
+
+		// bins are normally already sorted in the index file
+		Integer[] order = new Integer[nBins];
+		for (int j = 0; j < nBins; ++j)
+		{
+			order[j] = j;
+		}
+		final int[] unsortedBins = bins;
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer o1, Integer o2)
+			{
+				int b1 = unsortedBins[o1], b2 = unsortedBins[o2];
+				return b1 < b2 ? -1 : (b1 == b2 ? 0 : 1);
+			}
+		});
+
+		TIndex index = new TIndex();
+		index.bins = new int[nBins];
+		index.binOffsets = new int[nBins + 1];
+		index.chunkBegins = new long[nChunks];
+		index.chunkEnds = new long[nChunks];
+		int chunk = 0;
+		for (int j = 0; j < nBins; ++j)
+		{
+			long[] chunks = binChunks[order[j]];
+			index.bins[j] = bins[order[j]];
+			index.binOffsets[j] = chunk;
+			for (int k = 0; k < chunks.length; k += 2, ++chunk)
+			{
+				index.chunkBegins[chunk] = chunks[k];
+				index.chunkEnds[chunk] = chunks[k + 1];
+			}
+		}
+		index.binOffsets[nBins] = chunk;
+
+		// the linear index
+		index.l = new long[readInt(in)];
+		for (int k = 0; k < index.l.length; ++k)
+		{
+			index.l[k] = readLong(in);
+		}
+
+		return index;
+	}
+
 	private int readInt(InputStream in) throws IOException
 	{
 		byte[] buf = new byte[4];
-		in.read(buf);
+		IOUtils.readFully(in, buf);
 
 		return ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN).getInt();
 	}
@@ -164,63 +431,85 @@ public class TabixIndex implements GenotypeDataIndex
 	private long readLong(InputStream in) throws IOException
 	{
 		byte[] buf = new byte[8];
-		in.read(buf);
+		IOUtils.readFully(in, buf);
 
 		return ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN).getLong();
 	}
 
-	private static class TPair64 implements Comparable<TPair64>
-	{
-		long u, v;
+	private static boolean less64(final long u, final long v)
+	{ // unsigned 64-bit comparison
+		return (u < v) ^ (u < 0) ^ (v < 0);
+	}
 
-		public TPair64(final long _u, final long _v)
-		{
-			u = _u;
-			v = _v;
-		}
+	private static class TIndex
+	{
+		// binning index, the chunks of bins[i] are chunkBegins and chunkEnds
+		// from binOffsets[i] to binOffsets[i + 1]
+		int[] bins;
+		int[] binOffsets;
+		long[] chunkBegins;
+		long[] chunkEnds;
+		long[] l; // linear index
 
-		public TPair64(final TPair64 p)
+		/**
+		 * @return the index of the bin or -1 if not present
+		 */
+		int findBin(int bin)
 		{
-			u = p.u;
-			v = p.v;
+			int i = Arrays.binarySearch(bins, bin);
+			return i < 0 ? -1 : i;
 		}
+	}
 
-		@Override
-		public int compareTo(final TPair64 p)
-		{
-			return u == p.u ? 0 : ((u < p.u) ^ (u < 0) ^ (p.u < 0)) ? -1 : 1; // unsigned
-																				// 64-bit
-																				// comparison
-		}
+	/**
+	 * Buffers reused by the queries of a thread
+	 */
+	private static class QueryBuffers
+	{
+		final int[] bins = new int[MAX_BIN];
+		long[] chunkBegins = new long[64];
+		long[] chunkEnds = new long[64];
 
-		@Override
-		public boolean equals(Object obj)
+		void ensureChunkCapacity(int capacity)
 		{
-			if (!(obj instanceof TPair64))
+			if (chunkBegins.length < capacity)
 			{
-				return false;
+				int newCapacity = Math.max(capacity, chunkBegins.length * 2);
+				chunkBegins = Arrays.copyOf(chunkBegins, newCapacity);
+				chunkEnds = Arrays.copyOf(chunkEnds, newCapacity);
 			}
-
-			return compareTo((TPair64) obj) == 0;
 		}
+	}
 
+	private static final ThreadLocal<QueryBuffers> QUERY_BUFFERS = new ThreadLocal<QueryBuffers>()
+	{
 		@Override
-		public int hashCode()
+		protected QueryBuffers initialValue()
 		{
-			return new HashCodeBuilder(3, 17).append(u).append(v).toHashCode();
+			return new QueryBuffers();
 		}
-
 	};
 
-	private static boolean less64(final long u, final long v)
-	{ // unsigned 64-bit comparison
-		return (u < v) ^ (u < 0) ^ (v < 0);
-	}
-
-	private static class TIndex
+	/**
+	 * Sort the chunks on begin (unsigned), shell sort on the two parallel arrays
+	 */
+	private static void sortChunks(long[] begins, long[] ends, int n)
 	{
-		HashMap<Integer, TPair64[]> b; // binning index
-		long[] l; // linear index
+		for (int gap = n / 2; gap > 0; gap /= 2)
+		{
+			for (int i = gap; i < n; ++i)
+			{
+				long begin = begins[i], end = ends[i];
+				int j = i;
+				for (; j >= gap && less64(begin, begins[j - gap]); j -= gap)
+				{
+					begins[j] = begins[j - gap];
+					ends[j] = ends[j - gap];
+				}
+				begins[j] = begin;
+				ends[j] = end;
+			}
+		}
 	}
 
 	private int reg2bins(final int beg, final int _end, final int[] list)
@@ -243,11 +532,9 @@ public class TabixIndex implements GenotypeDataIndex
 		return i;
 	}
 
-	protected TabixIterator queryTabixIndex(String sequence, final int beg, final int end,
-			BlockCompressedInputStream bzipInputStream) throws IOException
+	protected TabixIterator queryTabixIndex(String sequence, final int beg, final int end, BgzfReader reader)
+			throws IOException
 	{
-		TPair64[] off, chunks;
-		long min_off;
 		int tid = chr2tid(sequence);
 
 		if (tid == -1)
@@ -255,107 +542,267 @@ public class TabixIndex implements GenotypeDataIndex
 			return null;
 		}
 
+		TabixPositionIndex positionIndex = this.positionIndex;
+		if (positionIndex != null && end == beg + 1)
+		{
+			// point lookup, start at the first line that can overlap
+			long filePointer = positionIndex.getFilePointer(tid, beg);
+			if (filePointer != -1)
+			{
+				return new TabixIterator(tid, new int[]
+				{ beg }, new int[]
+				{ end }, new long[]
+				{ filePointer }, new long[]
+				{ -1L }, reader);
+			}
+		}
+
+		return queryTabixIndex(tid, new int[]
+		{ beg }, new int[]
+		{ end }, 1, reader);
+	}
+
+	/**
+	 * Query multiple regions using one iterator per sequence. The regions are
+	 * sorted and overlapping regions merged, the chunks of all regions of a
+	 * sequence are merged so each block is read at most once. Regions on
+	 * sequences that are not in the index are ignored.
+	 * 
+	 * @return the iterators in the order of the sequences in the index,
+	 *         sequences without data are left out
+	 */
+	protected List<TabixIterator> queryTabixIndex(Collection<Region> regions, BgzfReader reader) throws IOException
+	{
+		List<Region> sortedRegions = new ArrayList<Region>(regions.size());
+		for (Region region : regions)
+		{
+			if (chr2tid(region.getSequenceName()) != -1)
+			{
+				sortedRegions.add(region);
+			}
+		}
+		Collections.sort(sortedRegions, new Comparator<Region>()
+		{
+			@Override
+			public int compare(Region o1, Region o2)
+			{
+				int tid1 = chr2tid(o1.getSequenceName()), tid2 = chr2tid(o2.getSequenceName());
+				if (tid1 != tid2) return tid1 < tid2 ? -1 : 1;
+				if (o1.getStartPos() != o2.getStartPos()) return o1.getStartPos() < o2.getStartPos() ? -1 : 1;
+				return 0;
+			}
+		});
+
+		List<TabixIterator> iterators = new ArrayList<TabixIterator>();
+		int[] begs = new int[sortedRegions.size()];
+		int[] ends = new int[sortedRegions.size()];
+		int tid = -1, nRegions = 0;
+		for (Region region : sortedRegions)
+		{
+			int regionTid = chr2tid(region.getSequenceName());
+			if (regionTid != tid)
+			{
+				addTabixIterator(iterators, tid, begs, ends, nRegions, reader);
+				tid = regionTid;
+				nRegions = 0;
+			}
+
+			if (nRegions > 0 && region.getStartPos() <= ends[nRegions - 1])
+			{
+				// overlaps or touches the previous region
+				ends[nRegions - 1] = Math.max(ends[nRegions - 1], region.getStopPos());
+			}
+			else
+			{
+				begs[nRegions] = region.getStartPos();
+				ends[nRegions++] = region.getStopPos();
+			}
+		}
+		addTabixIterator(iterators, tid, begs, ends, nRegions, reader);
+
+		return iterators;
+	}
+
+	private void addTabixIterator(List<TabixIterator> iterators, int tid, int[] begs, int[] ends, int nRegions,
+			BgzfReader reader)
+	{
+		if (nRegions > 0)
+		{
+			TabixIterator iterator = queryTabixIndex(tid, begs, ends, nRegions, reader);
+			if (iterator != null)
+			{
+				iterators.add(iterator);
+			}
+		}
+	}
+
+	/**
+	 * @param begs
+	 *            sorted begin of non overlapping regions
+	 * @param ends
+	 *            end of the regions
+	 * @return the iterator or null if there are no chunks for these regions
+	 */
+	private TabixIterator queryTabixIndex(int tid, int[] begs, int[] ends, int nRegions, BgzfReader reader)
+	{
 		TIndex idx = mIndex[tid];
-		int[] bins = new int[MAX_BIN];
-		int i, l, n_off, n_bins = reg2bins(beg, end, bins);
-		if (idx.l.length > 0) min_off = (beg >> TAD_LIDX_SHIFT >= idx.l.length) ? idx.l[idx.l.length - 1] : idx.l[beg >> TAD_LIDX_SHIFT];
-		else min_off = 0;
-		for (i = n_off = 0; i < n_bins; ++i)
+		QueryBuffers buffers = QUERY_BUFFERS.get();
+		int i, l, n_off = 0;
+		for (int r = 0; r < nRegions; ++r)
 		{
-			if ((chunks = idx.b.get(bins[i])) != null) n_off += chunks.length;
+			n_off = addChunks(idx, begs[r], ends[r], buffers, n_off);
 		}
 		if (n_off == 0) return null;
-		off = new TPair64[n_off];
-		for (i = n_off = 0; i < n_bins; ++i)
-			if ((chunks = idx.b.get(bins[i])) != null) for (int j = 0; j < chunks.length; ++j)
-				if (TabixIndex.less64(min_off, chunks[j].v)) off[n_off++] = new TPair64(chunks[j]);
-		if (n_off == 0) return null;
-		Arrays.sort(off, 0, n_off);
+		long[] offBegins = buffers.chunkBegins;
+		long[] offEnds = buffers.chunkEnds;
+		sortChunks(offBegins, offEnds, n_off);
 		// resolve completely contained adjacent blocks
 		for (i = 1, l = 0; i < n_off; ++i)
 		{
-			if (TabixIndex.less64(off[l].v, off[i].v))
+			if (TabixIndex.less64(offEnds[l], offEnds[i]))
 			{
 				++l;
-				off[l].u = off[i].u;
-				off[l].v = off[i].v;
+				offBegins[l] = offBegins[i];
+				offEnds[l] = offEnds[i];
 			}
 		}
 		n_off = l + 1;
 		// resolve overlaps between adjacent blocks; this may happen due to the
 		// merge in indexing
 		for (i = 1; i < n_off; ++i)
-			if (!TabixIndex.less64(off[i - 1].v, off[i].u)) off[i - 1].v = off[i].u;
+			if (!TabixIndex.less64(offEnds[i - 1], offBegins[i])) offEnds[i - 1] = offBegins[i];
 		// merge adjacent blocks
 		for (i = 1, l = 0; i < n_off; ++i)
 		{
-			if (off[l].v >> 16 == off[i].u >> 16) off[l].v = off[i].v;
+			if (offEnds[l] >> 16 == offBegins[i] >> 16) offEnds[l] = offEnds[i];
 			else
 			{
 				++l;
-				off[l].u = off[i].u;
-				off[l].v = off[i].v;
+				offBegins[l] = offBegins[i];
+				offEnds[l] = offEnds[i];
 			}
 		}
 		n_off = l + 1;
-		// return
-		TPair64[] ret = new TPair64[n_off];
-		for (i = 0; i < n_off; ++i)
-			ret[i] = new TPair64(off[i].u, off[i].v); // in C, this is
-														// inefficient
-		return new TabixIterator(tid, beg, end, ret, bzipInputStream);
+		// return, the buffers are reused so the iterator gets a copy
+		return new TabixIterator(tid, Arrays.copyOf(begs, nRegions), Arrays.copyOf(ends, nRegions), Arrays.copyOf(
+				offBegins, n_off), Arrays.copyOf(offEnds, n_off), reader);
+	}
+
+	/**
+	 * Append the chunks of a region to the chunk buffers
+	 * 
+	 * @return the new number of chunks in the buffers
+	 */
+	private int addChunks(TIndex idx, final int beg, final int end, QueryBuffers buffers, int n_off)
+	{
+		long min_off;
+		int[] bins = buffers.bins;
+		int i, n_new, n_bins = reg2bins(beg, end, bins);
+		if (idx.l.length > 0) min_off = (beg >> TAD_LIDX_SHIFT >= idx.l.length) ? idx.l[idx.l.length - 1] : idx.l[beg >> TAD_LIDX_SHIFT];
+		else min_off = 0;
+		for (i = n_new = 0; i < n_bins; ++i)
+		{
+			int bin = idx.findBin(bins[i]);
+			// store the position of the bin to not search it again
+			bins[i] = bin;
+			if (bin != -1) n_new += idx.binOffsets[bin + 1] - idx.binOffsets[bin];
+		}
+		if (n_new == 0) return n_off;
+		buffers.ensureChunkCapacity(n_off + n_new);
+		long[] offBegins = buffers.chunkBegins;
+		long[] offEnds = buffers.chunkEnds;
+		for (i = 0; i < n_bins; ++i)
+		{
+			if (bins[i] == -1) continue;
+			for (int j = idx.binOffsets[bins[i]]; j < idx.binOffsets[bins[i] + 1]; ++j)
+			{
+				if (TabixIndex.less64(min_off, idx.chunkEnds[j]))
+				{
+					offBegins[n_off] = idx.chunkBegins[j];
+					offEnds[n_off++] = idx.chunkEnds[j];
+				}
+			}
+		}
+		return n_off;
 	}
 
 	protected class TabixIterator
 	{
 		private int i;
-		private int tid, beg, end;
-		private TPair64[] off;
+		private int tid;
+		private int[] begs, ends;
+		private int region;
+		private long[] offBegins;
+		private long[] offEnds;
 		private long curr_off;
 		private boolean iseof;
-		private BlockCompressedInputStream inputStream;
-
-		public TabixIterator(final int _tid, final int _beg, final int _end, final TPair64[] _off,
-				final BlockCompressedInputStream inputStream)
+		private BgzfReader reader;
+		// reused for every line
+		private final ByteLine line = new ByteLine();
+		private final TIntv intv = new TIntv();
+		private long lineFilePointer;
+		// the last column needed to get the interval of a line
+		private final int lastCol;
+
+		public TabixIterator(final int _tid, final int[] _begs, final int[] _ends, final long[] _offBegins,
+				final long[] _offEnds, final BgzfReader reader)
 		{
 			i = -1;
+			region = 0;
 			curr_off = 0;
 			iseof = false;
-			off = _off.clone();
+			offBegins = _offBegins;
+			offEnds = _offEnds;
 			tid = _tid;
-			beg = _beg;
-			end = _end;
-			this.inputStream = inputStream;
+			begs = _begs;
+			ends = _ends;
+			this.reader = reader;
+
+			lastCol = getLastIntvColumn(mPreset, mSc, mBc, mEc);
 		}
 
 		public String next() throws IOException
+		{
+			ByteLine line = nextLine();
+			return line == null ? null : line.toString();
+		}
+
+		/**
+		 * Get the next line without decoding it to a String
+		 * 
+		 * @return the next line, only valid until the next call, or null if
+		 *         there are no more lines
+		 * @throws IOException
+		 */
+		public ByteLine nextLine() throws IOException
 		{
 			if (iseof) return null;
 			for (;;)
 			{
-				if (curr_off == 0 || !less64(curr_off, off[i].v))
+				if (curr_off == 0 || !less64(curr_off, offEnds[i]))
 				{ // then jump to the next chunk
-					if (i == off.length - 1) break; // no more chunks
-					if (i >= 0) assert (curr_off == off[i].v); // otherwise bug
-					if (i < 0 || off[i].v != off[i + 1].u)
+					if (i == offBegins.length - 1) break; // no more chunks
+					if (i >= 0) assert (curr_off == offEnds[i]); // otherwise bug
+					if (i < 0 || offEnds[i] != offBegins[i + 1])
 					{ // not adjacent chunks; then seek
-						inputStream.seek(off[i + 1].u);
-						curr_off = inputStream.getFilePointer();
+						reader.seek(offBegins[i + 1]);
+						curr_off = reader.getFilePointer();
 					}
 					++i;
 				}
-				String s;
-				if ((s = inputStream.readLine()) != null)
+				lineFilePointer = reader.getFilePointer();
+				if (reader.readLine(line))
 				{
-					TIntv intv;
-					char[] str = s.toCharArray();
-					curr_off = inputStream.getFilePointer();
-					if (str.length == 0 || str[0] == mMeta) continue;
-					intv = getIntv(s);
-					if (intv.tid != tid || intv.beg >= end) break; // no need to
-																	// proceed
-					else if (intv.end > beg && intv.beg < end) return s; // overlap;
-																			// return
+					ByteLine s = line;
+					curr_off = reader.getFilePointer();
+					if (s.length() == 0 || s.charAt(0) == mMeta) continue;
+					getIntv(s, intv);
+					if (intv.tid != tid || intv.beg >= ends[ends.length - 1]) break; // no need to
+																						// proceed
+					// lines are sorted, regions before this line are done
+					while (intv.beg >= ends[region])
+						++region;
+					if (intv.end > begs[region]) return s; // overlap; return
 				}
 				else break; // end of file
 			}
@@ -363,84 +810,179 @@ public class TabixIndex implements GenotypeDataIndex
 			return null;
 		}
 
-		private TIntv getIntv(final String s)
+		/**
+		 * @return the virtual file offset of the start of the last line
+		 */
+		public long getLineFilePointer()
 		{
-			TIntv intv = new TIntv();
-			int col = 0, end = 0, beg = 0;
-			while ((end = s.indexOf('\t', beg)) >= 0 || end == -1)
+			return lineFilePointer;
+		}
+
+		/**
+		 * @return the zero based begin of the interval of the last line
+		 */
+		public int getLineBeg()
+		{
+			return intv.beg;
+		}
+
+		/**
+		 * @return the zero based exclusive end of the interval of the last
+		 *         line
+		 */
+		public int getLineEnd()
+		{
+			return intv.end;
+		}
+
+		private void getIntv(final ByteLine s, final TIntv intv)
+		{
+			TabixIndex.getIntv(s, mPreset, mSc, mBc, mEc, lastCol, intv);
+			intv.tid = seqNameToTid(s, intv.seqBeg, intv.seqEnd);
+		}
+
+		/**
+		 * Sequence of a line, only creates a string if the sequence is not
+		 * the sequence of this iterator
+		 */
+		private int seqNameToTid(final ByteLine s, final int beg, final int end)
+		{
+			String seqName = seqNames[tid];
+			if (seqName.length() == end - beg)
 			{
-				++col;
-				if (col == mSc)
-				{
-					intv.tid = chr2tid(s.substring(beg, end));
-				}
-				else if (col == mBc)
-				{
-					intv.beg = intv.end = Integer.parseInt(s.substring(beg, end == -1 ? s.length() : end));
-					if ((mPreset & 0x10000) != 0) ++intv.end;
-					else --intv.beg;
-					if (intv.beg < 0) intv.beg = 0;
-					if (intv.end < 1) intv.end = 1;
+				int i = 0;
+				while (i < seqName.length() && seqName.charAt(i) == s.charAt(beg + i))
+					++i;
+				if (i == seqName.length()) return tid;
+			}
+			return chr2tid(s.toString(beg, end));
+		}
+	};
+
+	/**
+	 * @return the last column that is needed to get the interval of a line
+	 */
+	static int getLastIntvColumn(final int preset, final int sc, final int bc, final int ec)
+	{
+		int col = Math.max(sc, bc);
+		switch (preset & 0xffff)
+		{
+			case 0:
+				col = Math.max(col, ec);
+				break;
+			case 1:
+				col = Math.max(col, 6);
+				break;
+			case 2:
+				col = Math.max(col, 8);
+				break;
+		}
+		return col;
+	}
+
+	/**
+	 * Parse the interval of a line using offsets in the line, columns after
+	 * the last column that is needed are not scanned. Only the offsets of the
+	 * sequence name are set, not the tid.
+	 */
+	static void getIntv(final ByteLine s, final int preset, final int sc, final int bc, final int ec,
+			final int lastCol, final TIntv intv)
+	{
+		intv.tid = intv.seqBeg = intv.seqEnd = intv.beg = intv.end = 0;
+		int col = 0, end, beg = 0, length = s.length();
+		do
+		{
+			end = s.indexOf('\t', beg);
+			if (end == -1) end = length;
+			++col;
+			if (col == sc)
+			{
+				intv.seqBeg = beg;
+				intv.seqEnd = end;
+			}
+			else if (col == bc)
+			{
+				intv.beg = intv.end = parseInt(s, beg, end);
+				if ((preset & 0x10000) != 0) ++intv.end;
+				else --intv.beg;
+				if (intv.beg < 0) intv.beg = 0;
+				if (intv.end < 1) intv.end = 1;
+			}
+			else
+			{ // FIXME: SAM supports are not tested yet
+				if ((preset & 0xffff) == 0)
+				{ // generic
+					if (col == ec) intv.end = parseInt(s, beg, end);
 				}
-				else
-				{ // FIXME: SAM supports are not tested yet
-					if ((mPreset & 0xffff) == 0)
-					{ // generic
-						if (col == mEc) intv.end = Integer.parseInt(s.substring(beg, end));
-					}
-					else if ((mPreset & 0xffff) == 1)
-					{ // SAM
-						if (col == 6)
-						{ // CIGAR
-							int l = 0, i, j;
-							String cigar = s.substring(beg, end);
-							for (i = j = 0; i < cigar.length(); ++i)
+				else if ((preset & 0xffff) == 1)
+				{ // SAM
+					if (col == 6)
+					{ // CIGAR
+						int l = 0, i, j;
+						for (i = j = beg; i < end; ++i)
+						{
+							if (s.charAt(i) > '9')
 							{
-								if (cigar.charAt(i) > '9')
-								{
-									int op = cigar.charAt(i);
-									if (op == 'M' || op == 'D' || op == 'N') l += Integer.parseInt(cigar
-											.substring(j, i));
-								}
+								int op = s.charAt(i);
+								if (op == 'M' || op == 'D' || op == 'N') l += parseInt(s, j, i);
+								j = i + 1;
 							}
-							intv.end = intv.beg + l;
 						}
+						intv.end = intv.beg + l;
 					}
-					else if ((mPreset & 0xffff) == 2)
-					{ // VCF
-						String alt;
-						alt = end >= 0 ? s.substring(beg, end) : s.substring(beg);
-						if (col == 4)
-						{ // REF
-							if (alt.length() > 0) intv.end = intv.beg + alt.length();
-						}
-						else if (col == 8)
-						{ // INFO
-							int e_off = -1, i = alt.indexOf("END=");
-							if (i == 0) e_off = 4;
-							else if (i > 0)
-							{
-								i = alt.indexOf(";END=");
-								if (i >= 0) e_off = i + 5;
-							}
-							if (e_off > 0)
+				}
+				else if ((preset & 0xffff) == 2)
+				{ // VCF
+					if (col == 4)
+					{ // REF
+						if (end > beg) intv.end = intv.beg + end - beg;
+					}
+					else if (col == 8)
+					{ // INFO, use the first END= key
+						for (int i = beg, e; i < end; i = e + 1)
+						{
+							for (e = i; e < end && s.charAt(e) != ';'; ++e)
+								;
+							if (e - i > 4 && s.charAt(i) == 'E' && s.charAt(i + 1) == 'N' && s.charAt(i + 2) == 'D'
+									&& s.charAt(i + 3) == '=')
 							{
-								i = alt.indexOf(";", e_off);
-								intv.end = Integer.parseInt(i > e_off ? alt.substring(e_off, i) : alt.substring(e_off));
+								intv.end = parseInt(s, i + 4, e);
+								break;
 							}
 						}
 					}
 				}
-				if (end == -1) break;
-				beg = end + 1;
 			}
-			return intv;
+			beg = end + 1;
 		}
-	};
+		while (col < lastCol && beg <= length);
+	}
+
+	/**
+	 * Integer.parseInt on a part of a string without creating a substring
+	 */
+	static int parseInt(final CharSequence s, final int beg, final int end)
+	{
+		int i = beg;
+		boolean negative = i < end && s.charAt(i) == '-';
+		if (negative) ++i;
+		if (i == end) throw new NumberFormatException("For input string: \"" + s.subSequence(beg, end) + "\"");
+		int value = 0;
+		for (; i < end; ++i)
+		{
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') throw new NumberFormatException("For input string: \"" + s.subSequence(beg, end)
+					+ "\"");
+			value = value * 10 + (c - '0');
+		}
+		return negative ? -value : value;
+	}
 
-	private static class TIntv
+	static class TIntv
 	{
 		int tid, beg, end;
+		// offsets of the sequence name in the line
+		int seqBeg, seqEnd;
 	}
 
 }
@@ -0,0 +1,441 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.samtools.util.BlockCompressedOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.tabix.TabixIndex.TIntv;
+
+/**
+ * Creates the tabix index (.tbi) of a bgzip file, the same index as created
+ * by <code>tabix</code>. The file is read once, the lines must be sorted on
+ * sequence and start position.
+ */
+public class TabixIndexCreator
+{
+	public static final int PRESET_GENERIC = 0;
+	public static final int PRESET_SAM = 1;
+	public static final int PRESET_VCF = 2;
+	// flag for zero based start positions
+	public static final int PRESET_ZERO_BASED = 0x10000;
+
+	private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+	private static final byte[] MAGIC = new byte[]
+	{ 'T', 'B', 'I', 1 };
+
+	private final int preset;
+	private final int seqColumn;
+	private final int begColumn;
+	private final int endColumn;
+	private final char metaChar;
+	private final int skipLines;
+	private int threads = 0;
+
+	/**
+	 *
+	 * @param preset
+	 *            format of the file, can be combined with
+	 *            {@link #PRESET_ZERO_BASED}
+	 * @param seqColumn
+	 *            one based column of the sequence name
+	 * @param begColumn
+	 *            one based column of the start position
+	 * @param endColumn
+	 *            one based column of the end position, only used by the
+	 *            generic preset
+	 * @param metaChar
+	 *            lines starting with this character are skipped
+	 * @param skipLines
+	 *            number of header lines to skip
+	 */
+	public TabixIndexCreator(int preset, int seqColumn, int begColumn, int endColumn, char metaChar, int skipLines)
+	{
+		if (seqColumn < 1) throw new IllegalArgumentException("SeqColumn must be bigger then 0");
+		if (begColumn < 1) throw new IllegalArgumentException("BegColumn must be bigger then 0");
+		if (skipLines < 0) throw new IllegalArgumentException("SkipLines must not be negative");
+
+		this.preset = preset;
+		this.seqColumn = seqColumn;
+		this.begColumn = begColumn;
+		this.endColumn = endColumn;
+		this.metaChar = metaChar;
+		this.skipLines = skipLines;
+	}
+
+	/**
+	 * Same as <code>tabix -p vcf</code>
+	 */
+	public static TabixIndexCreator createVcfIndexCreator()
+	{
+		return new TabixIndexCreator(PRESET_VCF, 1, 2, 0, '#', 0);
+	}
+
+	/**
+	 * Same as <code>tabix -b 3 -e 3</code> used by <code>index-haps.sh</code>
+	 */
+	public static TabixIndexCreator createHapsIndexCreator()
+	{
+		return new TabixIndexCreator(PRESET_GENERIC, 1, 3, 3, '#', 0);
+	}
+
+	/**
+	 * Inflate the blocks of the bgzip file in parallel
+	 *
+	 * @param threads
+	 *            number of threads, 0 to inflate on the reading thread
+	 */
+	public void setThreads(int threads)
+	{
+		if (threads < 0) throw new IllegalArgumentException("Threads must not be negative");
+		this.threads = threads;
+	}
+
+	/**
+	 * Read the bgzip file and write its tabix index
+	 *
+	 * @param bzipFile
+	 * @param tabixIndexFile
+	 * @throws IOException
+	 */
+	public void createIndex(final File bzipFile, File tabixIndexFile) throws IOException
+	{
+		ExecutorService executor = null;
+		BgzfReader reader = new BgzfReader(bzipFile, new BgzfBlockCache(0));
+		try
+		{
+			if (threads > 0)
+			{
+				executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "tabix-index-" + bzipFile.getName());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				reader.startReadAhead(executor, threads * 4);
+			}
+
+			List<String> seqNames = new ArrayList<String>();
+			List<SequenceIndex> sequenceIndices = new ArrayList<SequenceIndex>();
+			readIndex(reader, bzipFile, seqNames, sequenceIndices);
+			writeIndex(tabixIndexFile, seqNames, sequenceIndices);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(reader);
+			if (executor != null)
+			{
+				executor.shutdown();
+			}
+		}
+	}
+
+	private void readIndex(BgzfReader reader, File bzipFile, List<String> seqNames,
+			List<SequenceIndex> sequenceIndices) throws IOException
+	{
+		Map<String, Integer> seqNameToTid = new HashMap<String, Integer>();
+		int lastCol = TabixIndex.getLastIntvColumn(preset, seqColumn, begColumn, endColumn);
+
+		ByteLine line = new ByteLine();
+		TIntv intv = new TIntv();
+		String seqName = null;
+		SequenceIndex sequenceIndex = null, saveIndex = null;
+		int lastBeg = 0, lastBin = -1, saveBin = -1;
+		long saveOff = 0, lastOff = reader.getFilePointer();
+		for (long lineNumber = 1; reader.readLine(line); ++lineNumber)
+		{
+			if (lineNumber <= skipLines || line.length() == 0 || line.charAt(0) == metaChar)
+			{
+				lastOff = reader.getFilePointer();
+				continue;
+			}
+
+			try
+			{
+				TabixIndex.getIntv(line, preset, seqColumn, begColumn, endColumn, lastCol, intv);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new GenotypeDataException("Invalid position at line " + lineNumber + " of " + bzipFile.getName()
+						+ ": " + e.getMessage());
+			}
+
+			if (seqName == null || !isSeqName(line, intv, seqName)
+					&& !line.toString(intv.seqBeg, intv.seqEnd).equals(seqName))
+			{
+				// lines of a sequence must be together
+				seqName = line.toString(intv.seqBeg, intv.seqEnd);
+				if (seqNameToTid.containsKey(seqName))
+				{
+					throw new GenotypeDataException("Sequence " + seqName + " is not continuous at line " + lineNumber
+							+ " of " + bzipFile.getName());
+				}
+				seqNameToTid.put(seqName, seqNames.size());
+				seqNames.add(seqName);
+				sequenceIndex = new SequenceIndex();
+				sequenceIndices.add(sequenceIndex);
+				lastBin = -1;
+			}
+			else if (intv.beg < lastBeg)
+			{
+				throw new GenotypeDataException("Not sorted on position at line " + lineNumber + " of "
+						+ bzipFile.getName());
+			}
+
+			sequenceIndex.addLinear(intv.beg, intv.end, lastOff);
+
+			// a chunk contains consecutive lines of the same bin
+			int bin = reg2bin(intv.beg, intv.end);
+			if (lastBin != bin)
+			{
+				if (saveIndex != null)
+				{
+					saveIndex.addChunk(saveBin, saveOff, lastOff);
+				}
+				saveOff = lastOff;
+				saveBin = lastBin = bin;
+				saveIndex = sequenceIndex;
+			}
+
+			lastOff = reader.getFilePointer();
+			lastBeg = intv.beg;
+		}
+
+		if (saveIndex != null)
+		{
+			saveIndex.addChunk(saveBin, saveOff, lastOff);
+		}
+	}
+
+	/**
+	 * Compare the sequence name of a line without creating a string, only
+	 * reliable for ASCII names
+	 */
+	private static boolean isSeqName(ByteLine line, TIntv intv, String seqName)
+	{
+		if (intv.seqEnd - intv.seqBeg != seqName.length()) return false;
+		for (int i = 0; i < seqName.length(); ++i)
+		{
+			if (line.charAt(intv.seqBeg + i) != seqName.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Write the index to a temporary file in the same directory that is
+	 * renamed when it is complete, so readers never see a partial index
+	 */
+	private void writeIndex(File tabixIndexFile, List<String> seqNames, List<SequenceIndex> sequenceIndices)
+			throws IOException
+	{
+		File tmpFile = File.createTempFile(tabixIndexFile.getName(), ".tmp", tabixIndexFile.getAbsoluteFile()
+				.getParentFile());
+		try
+		{
+			writeIndex(new BlockCompressedOutputStream(tmpFile), seqNames, sequenceIndices);
+			if (!tmpFile.renameTo(tabixIndexFile))
+			{
+				// renaming to an existing file fails on some platforms
+				if (!tabixIndexFile.delete() || !tmpFile.renameTo(tabixIndexFile))
+				{
+					throw new IOException("Could not rename " + tmpFile.getName() + " to " + tabixIndexFile.getName());
+				}
+			}
+		}
+		finally
+		{
+			if (tmpFile.exists())
+			{
+				tmpFile.delete();
+			}
+		}
+	}
+
+	private void writeIndex(OutputStream out, List<String> seqNames, List<SequenceIndex> sequenceIndices)
+			throws IOException
+	{
+		try
+		{
+			byte[] buf = new byte[8];
+			out.write(MAGIC);
+			writeInt(out, seqNames.size(), buf);
+			writeInt(out, preset, buf);
+			writeInt(out, seqColumn, buf);
+			writeInt(out, begColumn, buf);
+			writeInt(out, endColumn, buf);
+			writeInt(out, metaChar, buf);
+			writeInt(out, skipLines, buf);
+
+			// sequence names separated by 0
+			int length = 0;
+			List<byte[]> names = new ArrayList<byte[]>(seqNames.size());
+			for (String seqName : seqNames)
+			{
+				byte[] name = seqName.getBytes(CHARSET_UTF8);
+				names.add(name);
+				length += name.length + 1;
+			}
+			writeInt(out, length, buf);
+			for (byte[] name : names)
+			{
+				out.write(name);
+				out.write(0);
+			}
+
+			for (SequenceIndex sequenceIndex : sequenceIndices)
+			{
+				writeInt(out, sequenceIndex.bins.size(), buf);
+				for (Map.Entry<Integer, Chunks> bin : sequenceIndex.bins.entrySet())
+				{
+					Chunks chunks = bin.getValue();
+					writeInt(out, bin.getKey(), buf);
+					writeInt(out, chunks.n / 2, buf);
+					for (int i = 0; i < chunks.n; ++i)
+					{
+						writeLong(out, chunks.offsets[i], buf);
+					}
+				}
+
+				// windows without lines get the offset of the previous window
+				long[] linear = sequenceIndex.linear;
+				writeInt(out, sequenceIndex.nLinear, buf);
+				for (int i = 0; i < sequenceIndex.nLinear; ++i)
+				{
+					if (linear[i] == -1) linear[i] = i == 0 ? 0 : linear[i - 1];
+					writeLong(out, linear[i], buf);
+				}
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * The smallest bin containing the interval
+	 */
+	static int reg2bin(int beg, int end)
+	{
+		--end;
+		if (beg >> 14 == end >> 14) return 4681 + (beg >> 14);
+		if (beg >> 17 == end >> 17) return 585 + (beg >> 17);
+		if (beg >> 20 == end >> 20) return 73 + (beg >> 20);
+		if (beg >> 23 == end >> 23) return 9 + (beg >> 23);
+		if (beg >> 26 == end >> 26) return 1 + (beg >> 26);
+		return 0;
+	}
+
+	private static void writeInt(OutputStream out, int value, byte[] buf) throws IOException
+	{
+		for (int i = 0; i < 4; ++i)
+		{
+			buf[i] = (byte) (value >>> (i * 8));
+		}
+		out.write(buf, 0, 4);
+	}
+
+	private static void writeLong(OutputStream out, long value, byte[] buf) throws IOException
+	{
+		for (int i = 0; i < 8; ++i)
+		{
+			buf[i] = (byte) (value >>> (i * 8));
+		}
+		out.write(buf, 0, 8);
+	}
+
+	/**
+	 * Binning and linear index of one sequence
+	 */
+	private static class SequenceIndex
+	{
+		final TreeMap<Integer, Chunks> bins = new TreeMap<Integer, Chunks>();
+		// -1 for windows without lines
+		long[] linear = newLinear(64);
+		int nLinear = 0;
+
+		void addChunk(int bin, long begin, long end)
+		{
+			Chunks chunks = bins.get(bin);
+			if (chunks == null)
+			{
+				chunks = new Chunks();
+				bins.put(bin, chunks);
+			}
+			chunks.add(begin, end);
+		}
+
+		/**
+		 * Set the offset of the 16kb windows overlapping the interval if not
+		 * set by a previous line
+		 */
+		void addLinear(int beg, int end, long offset)
+		{
+			int first = beg >> TabixIndex.TAD_LIDX_SHIFT;
+			int last = (end - 1) >> TabixIndex.TAD_LIDX_SHIFT;
+			if (last >= linear.length)
+			{
+				long[] newLinear = newLinear(Math.max(last + 1, linear.length * 2));
+				System.arraycopy(linear, 0, newLinear, 0, linear.length);
+				linear = newLinear;
+			}
+			for (int i = first; i <= last; ++i)
+			{
+				if (linear[i] == -1) linear[i] = offset;
+			}
+			nLinear = Math.max(nLinear, last + 1);
+		}
+
+		private static long[] newLinear(int length)
+		{
+			long[] linear = new long[length];
+			Arrays.fill(linear, -1);
+			return linear;
+		}
+	}
+
+	/**
+	 * Begin and end offsets of the chunks of a bin
+	 */
+	private static class Chunks
+	{
+		long[] offsets = new long[4];
+		int n = 0;
+
+		/**
+		 * Adds a chunk, merged with the previous chunk if it ends in the same
+		 * block as this chunk starts
+		 */
+		void add(long begin, long end)
+		{
+			if (n > 0 && offsets[n - 1] >>> 16 == begin >>> 16)
+			{
+				offsets[n - 1] = end;
+				return;
+			}
+			if (n == offsets.length)
+			{
+				offsets = Arrays.copyOf(offsets, n * 2);
+			}
+			offsets[n++] = begin;
+			offsets[n++] = end;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.GenotypeDataException;
+
+/**
+ * Sidecar index of a bgzip file with a tabix index that maps the start
+ * positions of the lines to a virtual file offset. For a start position the
+ * offset is the first line that can overlap the position, this can be a line
+ * that starts before the position.
+ * 
+ * The index is created once using {@link #create(TabixIndex, File)} and
+ * memory mapped by {@link #load(File, TabixIndex)} in segments, so the file
+ * can be larger than 2GB. The file has per sequence the number of positions,
+ * the sorted zero based start positions and the virtual file offsets.
+ */
+public class TabixPositionIndex
+{
+	private static final byte[] MAGIC = new byte[]
+	{ 'T', 'P', 'I', 1 };
+
+	private final MappedFile file;
+	// per sequence the number of positions and the file offsets of the
+	// positions and the virtual file offsets
+	private final int[] counts;
+	private final long[] positionsStarts;
+	private final long[] filePointersStarts;
+
+	private TabixPositionIndex(MappedFile file, int[] counts, long[] positionsStarts, long[] filePointersStarts)
+	{
+		this.file = file;
+		this.counts = counts;
+		this.positionsStarts = positionsStarts;
+		this.filePointersStarts = filePointersStarts;
+	}
+
+	/**
+	 * Scan the bgzip file of a tabix index and write the position index
+	 * 
+	 * @param index
+	 * @param positionIndexFile
+	 * @return the created index
+	 * @throws IOException
+	 */
+	public static TabixPositionIndex create(TabixIndex index, File positionIndexFile) throws IOException
+	{
+		List<String> seqNames = index.getSeqNames();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(positionIndexFile)));
+		BgzfReader reader = index.acquireReader();
+		try
+		{
+			out.write(MAGIC);
+			out.writeLong(index.getBzipFile().length());
+			out.writeInt(seqNames.size());
+
+			int[] seqPositions = new int[1024];
+			long[] seqFilePointers = new long[1024];
+			// lines that can still overlap the next line, as circular buffer
+			long[] activeFilePointers = new long[16];
+			int[] activeEnds = new int[16];
+
+			for (String seqName : seqNames)
+			{
+				int n = 0, activeFirst = 0, activeCount = 0;
+				TabixIndex.TabixIterator it = index.queryTabixIndex(seqName, 0, Integer.MAX_VALUE, reader);
+				while (it != null && it.nextLine() != null)
+				{
+					int beg = it.getLineBeg();
+
+					// lines are sorted on begin, lines that end before this
+					// line can not overlap this or later positions
+					while (activeCount > 0 && activeEnds[activeFirst] <= beg)
+					{
+						activeFirst = (activeFirst + 1) % activeEnds.length;
+						--activeCount;
+					}
+					if (activeCount == activeEnds.length)
+					{
+						activeEnds = unwrap(activeEnds, activeFirst, activeCount * 2);
+						activeFilePointers = unwrap(activeFilePointers, activeFirst, activeCount * 2);
+						activeFirst = 0;
+					}
+					int last = (activeFirst + activeCount++) % activeEnds.length;
+					activeEnds[last] = it.getLineEnd();
+					activeFilePointers[last] = it.getLineFilePointer();
+
+					if (n == 0 || seqPositions[n - 1] != beg)
+					{
+						if (n == seqPositions.length)
+						{
+							seqPositions = Arrays.copyOf(seqPositions, n * 2);
+							seqFilePointers = Arrays.copyOf(seqFilePointers, n * 2);
+						}
+						seqPositions[n] = beg;
+						seqFilePointers[n++] = activeFilePointers[activeFirst];
+					}
+				}
+
+				out.writeInt(n);
+				for (int i = 0; i < n; ++i)
+				{
+					out.writeInt(seqPositions[i]);
+				}
+				for (int i = 0; i < n; ++i)
+				{
+					out.writeLong(seqFilePointers[i]);
+				}
+			}
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+			index.releaseReader(reader);
+		}
+
+		return load(positionIndexFile, index);
+	}
+
+	/**
+	 * Memory map a position index
+	 * 
+	 * @param positionIndexFile
+	 * @param index
+	 *            the tabix index of the file the position index is created
+	 *            for
+	 * @return
+	 * @throws IOException
+	 */
+	public static TabixPositionIndex load(File positionIndexFile, TabixIndex index) throws IOException
+	{
+		return load(positionIndexFile, index, MappedFile.DEFAULT_SEGMENT_SIZE);
+	}
+
+	static TabixPositionIndex load(File positionIndexFile, TabixIndex index, long segmentSize) throws IOException
+	{
+		MappedFile file = new MappedFile(positionIndexFile, segmentSize);
+
+		long position = 0;
+		file.checkRange(position, MAGIC.length + 12);
+		for (int i = 0; i < MAGIC.length; ++i)
+		{
+			if (file.get(position++) != MAGIC[i])
+			{
+				throw new GenotypeDataException("Not a position index: " + positionIndexFile.getName());
+			}
+		}
+		if (file.getLong(position) != index.getBzipFile().length())
+		{
+			throw new GenotypeDataException("Position index " + positionIndexFile.getName()
+					+ " is not created for the current version of " + index.getBzipFile().getName());
+		}
+		position += 8;
+		int seqCount = file.getInt(position);
+		position += 4;
+		if (seqCount != index.getSeqNames().size())
+		{
+			throw new GenotypeDataException("Position index " + positionIndexFile.getName() + " has " + seqCount
+					+ " sequences, tabix index has " + index.getSeqNames().size());
+		}
+
+		int[] counts = new int[seqCount];
+		long[] positionsStarts = new long[seqCount];
+		long[] filePointersStarts = new long[seqCount];
+		for (int tid = 0; tid < seqCount; ++tid)
+		{
+			file.checkRange(position, 4);
+			int n = file.getInt(position);
+			position += 4;
+			file.checkRange(position, n * 12L);
+			counts[tid] = n;
+			positionsStarts[tid] = position;
+			position += n * 4L;
+			filePointersStarts[tid] = position;
+			position += n * 8L;
+		}
+
+		return new TabixPositionIndex(file, counts, positionsStarts, filePointersStarts);
+	}
+
+	public int getSequenceCount()
+	{
+		return counts.length;
+	}
+
+	/**
+	 * @param tid
+	 *            index of the sequence in the tabix index
+	 * @param beg
+	 *            zero based start position
+	 * @return virtual file offset of the first line that can overlap this
+	 *         start position or -1 if no line starts at this position
+	 */
+	public long getFilePointer(int tid, int beg)
+	{
+		long seqPositions = positionsStarts[tid];
+		int low = 0, high = counts[tid] - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int position = file.getInt(seqPositions + mid * 4L);
+			if (position < beg) low = mid + 1;
+			else if (position > beg) high = mid - 1;
+			else return file.getLong(filePointersStarts[tid] + mid * 8L);
+		}
+		return -1;
+	}
+
+	private static int[] unwrap(int[] circular, int first, int capacity)
+	{
+		int[] array = new int[capacity];
+		for (int i = 0; i < circular.length; ++i)
+		{
+			array[i] = circular[(first + i) % circular.length];
+		}
+		return array;
+	}
+
+	private static long[] unwrap(long[] circular, int first, int capacity)
+	{
+		long[] array = new long[capacity];
+		for (int i = 0; i < circular.length; ++i)
+		{
+			array[i] = circular[(first + i) % circular.length];
+		}
+		return array;
+	}
+}
@@ -1,12 +1,14 @@
 package org.molgenis.genotype.tabix;
 
-import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
-import net.sf.samtools.util.BlockCompressedInputStream;
-
+import org.apache.commons.io.IOUtils;
 import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.Region;
 import org.molgenis.genotype.VariantQuery;
 import org.molgenis.genotype.VariantQueryResult;
 import org.molgenis.genotype.tabix.TabixIndex.TabixIterator;
@@ -21,32 +23,21 @@ import org.molgenis.genotype.variant.VariantLineMapper;
  */
 public class TabixQuery implements VariantQuery
 {
-	private BlockCompressedInputStream inputStream;
 	private final TabixIndex index;
 	private final VariantLineMapper variantLineMapper;
 
-	public TabixQuery(File bzipFile, TabixIndex index, VariantLineMapper variantLineMapper)
+	public TabixQuery(TabixIndex index, VariantLineMapper variantLineMapper)
 	{
-		if (bzipFile == null) throw new IllegalArgumentException("BzipFile is null");
 		if (index == null) throw new IllegalArgumentException("Index is null");
 		if (variantLineMapper == null) throw new IllegalArgumentException("VariantLineMapper is null");
 
-		try
-		{
-			inputStream = new BlockCompressedInputStream(bzipFile);
-		}
-		catch (IOException e)
-		{
-			throw new GenotypeDataException("IOExcption creating BlockCompressedInputStream for " + bzipFile.getName(),
-					e);
-		}
-
 		this.index = index;
 		this.variantLineMapper = variantLineMapper;
 	}
 
 	/**
-	 * Get a subset of the data, returns the raw data lines from the gziped data file
+	 * Get a subset of the data, returns the raw data lines from the gziped data file. The result must be closed to
+	 * return the reader on the data file to the index.
 	 * 
 	 * @param sequence
 	 * @param startPos
@@ -58,23 +49,37 @@ public class TabixQuery implements VariantQuery
 	 */
 	@Override
 	public VariantQueryResult executeQuery(String sequence, int startPos, int stopPos)
+	{
+		return executeQuery(sequence, startPos, stopPos, false);
+	}
+
+	private VariantQueryResult executeQuery(String sequence, int startPos, int stopPos, boolean scan)
 	{
 		if (startPos < 0) throw new IllegalArgumentException("StartPos must be bigger then 0");
 		if (stopPos <= startPos) throw new IllegalArgumentException("StopPos must be bigger then startPos ");
 
+		BgzfReader reader = null;
 		try
 		{
-			TabixIterator tabixIterator = index.queryTabixIndex(sequence, startPos, stopPos, inputStream);
-			return new TabixQueryResult(inputStream, new TabixQueryIterator(tabixIterator, variantLineMapper));
+			reader = index.acquireReader();
+			if (scan)
+			{
+				index.startScan(reader);
+			}
+			TabixIterator tabixIterator = index.queryTabixIndex(sequence, startPos, stopPos, reader);
+			List<TabixIterator> tabixIterators = tabixIterator == null ? Collections.<TabixIterator> emptyList()
+					: Collections.singletonList(tabixIterator);
+			return new TabixQueryResult(index, reader, new TabixQueryIterator(tabixIterators, variantLineMapper));
 		}
 		catch (IOException e)
 		{
+			IOUtils.closeQuietly(reader);
 			throw new GenotypeDataException(e);
 		}
 	}
 
 	/**
-	 * Gets all variants of a sequence
+	 * Gets all variants of a sequence, uses the scan threads of the index if set
 	 * 
 	 * @param sequence
 	 * @return
@@ -83,7 +88,7 @@ public class TabixQuery implements VariantQuery
 	@Override
 	public VariantQueryResult executeQuery(String sequence)
 	{
-		return executeQuery(sequence, 0, Integer.MAX_VALUE);
+		return executeQuery(sequence, 0, Integer.MAX_VALUE, true);
 	}
 
 	@Override
@@ -92,40 +97,61 @@ public class TabixQuery implements VariantQuery
 		return executeQuery(sequence, startPos - 1, startPos);
 	}
 
+	@Override
+	public VariantQueryResult executeQuery(Collection<Region> regions)
+	{
+		if (regions == null) throw new IllegalArgumentException("Regions is null");
+
+		BgzfReader reader = null;
+		try
+		{
+			reader = index.acquireReader();
+			List<TabixIterator> tabixIterators = index.queryTabixIndex(regions, reader);
+			return new TabixQueryResult(index, reader, new TabixQueryIterator(tabixIterators, variantLineMapper));
+		}
+		catch (IOException e)
+		{
+			IOUtils.closeQuietly(reader);
+			throw new GenotypeDataException(e);
+		}
+	}
+
 	private static class TabixQueryIterator implements Iterator<GeneticVariant>
 	{
-		private final TabixIterator tabixIterator;
+		private final List<TabixIterator> tabixIterators;
 		private final VariantLineMapper variantLineMapper;
-		private String line;
+		private int tabixIteratorIndex = 0;
+		private GeneticVariant variant;
 
-		public TabixQueryIterator(TabixIterator tabixIterator, VariantLineMapper variantLineMapper) throws IOException
+		public TabixQueryIterator(List<TabixIterator> tabixIterators, VariantLineMapper variantLineMapper)
+				throws IOException
 		{
-			this.tabixIterator = tabixIterator;
+			this.tabixIterators = tabixIterators;
 			this.variantLineMapper = variantLineMapper;
-			line = tabixIterator == null ? null : tabixIterator.next();
+			variant = nextVariant();
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			return line != null;
+			return variant != null;
 		}
 
 		@Override
 		public GeneticVariant next()
 		{
-			GeneticVariant variant = variantLineMapper.mapLine(line);
+			GeneticVariant current = variant;
 
 			try
 			{
-				line = tabixIterator.next();
+				variant = nextVariant();
 			}
 			catch (IOException e)
 			{
 				throw new RuntimeException("Exception calling next on TabixIndex.TabixIterator", e);
 			}
 
-			return variant;
+			return current;
 		}
 
 		@Override
@@ -134,6 +160,30 @@ public class TabixQuery implements VariantQuery
 			throw new UnsupportedOperationException();
 		}
 
+		/**
+		 * Map lines until a line is not filtered out by the mapper, continues
+		 * with the next sequence if a sequence is done
+		 * 
+		 * @return the next variant or null if there are no more lines
+		 */
+		private GeneticVariant nextVariant() throws IOException
+		{
+			for (; tabixIteratorIndex < tabixIterators.size(); ++tabixIteratorIndex)
+			{
+				TabixIterator tabixIterator = tabixIterators.get(tabixIteratorIndex);
+				String line;
+				while ((line = tabixIterator.next()) != null)
+				{
+					GeneticVariant nextVariant = variantLineMapper.mapLine(line);
+					if (nextVariant != null)
+					{
+						return nextVariant;
+					}
+				}
+			}
+			return null;
+		}
+
 	}
 
 }
@@ -1,7 +1,6 @@
 package org.molgenis.genotype.tabix;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Iterator;
 
 import org.molgenis.genotype.VariantQueryResult;
@@ -9,20 +8,29 @@ import org.molgenis.genotype.variant.GeneticVariant;
 
 public class TabixQueryResult implements VariantQueryResult
 {
-	private final InputStream inputStream;
+	private final TabixIndex index;
+	private BgzfReader reader;
 	private final Iterator<GeneticVariant> iterator;
 
-	public TabixQueryResult(InputStream inputStream, Iterator<GeneticVariant> iterator)
+	public TabixQueryResult(TabixIndex index, BgzfReader reader, Iterator<GeneticVariant> iterator)
 	{
 		super();
-		this.inputStream = inputStream;
+		this.index = index;
+		this.reader = reader;
 		this.iterator = iterator;
 	}
 
+	/**
+	 * Returns the reader to the index so it can be reused by other queries
+	 */
 	@Override
-	public void close() throws IOException
+	public synchronized void close() throws IOException
 	{
-		inputStream.close();
+		if (reader != null)
+		{
+			index.releaseReader(reader);
+			reader = null;
+		}
 	}
 
 	@Override
@@ -1,34 +1,145 @@
 package org.molgenis.genotype.tabix;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.molgenis.genotype.RawLineQueryResult;
+import org.molgenis.genotype.tabix.TabixIndex.TabixIterator;
 
 public class TabixRawLineQueryResult implements RawLineQueryResult
 {
-	private InputStream inputStream;
+	private final TabixIndex index;
+	private BgzfReader reader;
+	private final TabixIterator tabixIterator;
 	private Iterator<String> iterator;
+	private Iterator<ByteLine> byteLineIterator;
 
-	public TabixRawLineQueryResult(InputStream inputStream, Iterator<String> iterator)
+	/**
+	 * 
+	 * @param index
+	 * @param reader
+	 * @param tabixIterator
+	 *            null if there are no lines
+	 */
+	public TabixRawLineQueryResult(TabixIndex index, BgzfReader reader, TabixIterator tabixIterator)
 	{
 		super();
-		this.inputStream = inputStream;
-		this.iterator = iterator;
+		this.index = index;
+		this.reader = reader;
+		this.tabixIterator = tabixIterator;
 	}
 
+	/**
+	 * Returns the reader to the index so it can be reused by other queries
+	 */
 	@Override
-	public void close() throws IOException
+	public synchronized void close() throws IOException
 	{
-		inputStream.close();
-
+		if (reader != null)
+		{
+			index.releaseReader(reader);
+			reader = null;
+		}
 	}
 
 	@Override
-	public Iterator<String> iterator()
+	public synchronized Iterator<String> iterator()
 	{
+		if (iterator == null)
+		{
+			if (byteLineIterator != null) throw new IllegalStateException("Lines are already iterated as bytes");
+			iterator = new RawLineIterator(new RawByteLineIterator(tabixIterator));
+		}
 		return iterator;
 	}
 
+	/**
+	 * Iterate the lines without decoding them to Strings. The returned line is
+	 * reused, it is only valid until the next call to hasNext() or next(). Copy
+	 * the line, for example using toString(), to keep it. Can not be combined
+	 * with {@link #iterator()}.
+	 */
+	public synchronized Iterator<ByteLine> byteLineIterator()
+	{
+		if (byteLineIterator == null)
+		{
+			if (iterator != null) throw new IllegalStateException("Lines are already iterated as strings");
+			byteLineIterator = new RawByteLineIterator(tabixIterator);
+		}
+		return byteLineIterator;
+	}
+
+	private static class RawByteLineIterator implements Iterator<ByteLine>
+	{
+		private final TabixIterator tabixIterator;
+		private ByteLine line;
+		private boolean lineRead = false;
+
+		private RawByteLineIterator(TabixIterator tabixIterator)
+		{
+			this.tabixIterator = tabixIterator;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			// read on demand, this overwrites the line returned by next()
+			if (!lineRead)
+			{
+				try
+				{
+					line = tabixIterator == null ? null : tabixIterator.nextLine();
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException("Exception calling next on TabixIndex.TabixIterator", e);
+				}
+				lineRead = true;
+			}
+			return line != null;
+		}
+
+		@Override
+		public ByteLine next()
+		{
+			if (!hasNext()) throw new NoSuchElementException();
+			lineRead = false;
+			return line;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class RawLineIterator implements Iterator<String>
+	{
+		private final Iterator<ByteLine> byteLineIterator;
+
+		private RawLineIterator(Iterator<ByteLine> byteLineIterator)
+		{
+			this.byteLineIterator = byteLineIterator;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return byteLineIterator.hasNext();
+		}
+
+		@Override
+		public String next()
+		{
+			return byteLineIterator.next().toString();
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -0,0 +1,366 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.VariantIdIndex;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Sidecar index of a bgzip file with a tabix index to find variants by ID.
+ * 
+ * The IDs are stored as sorted 64 bit hashes with per ID the sequence index,
+ * the start position and the virtual file offset of the line. The index is
+ * created once using {@link #create(TabixIndex, int, File)} and memory mapped
+ * in segments by {@link #load(File, TabixIndex)}, so the file can be larger
+ * than 2GB. Hash collisions are resolved by checking the IDs of the variants
+ * that are read.
+ */
+public class TabixVariantIdIndex implements VariantIdIndex
+{
+	private static final byte[] MAGIC = new byte[]
+	{ 'T', 'V', 'I', 1 };
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	// IDs in the ID column are separated by ';', '.' is a missing ID
+	private static final byte ID_SEPARATOR = ';';
+
+	// size of the header with the magic, the bzip file length and the count
+	private static final int HEADER_SIZE = 16;
+
+	private final TabixIndex index;
+	private final MappedFile file;
+	private final int idCount;
+	// file offsets of the arrays of the entries
+	private final long hashesStart;
+	private final long sequenceIndicesStart;
+	private final long positionsStart;
+	private final long filePointersStart;
+
+	private TabixVariantIdIndex(TabixIndex index, MappedFile file, int idCount)
+	{
+		this.index = index;
+		this.file = file;
+		this.idCount = idCount;
+		this.hashesStart = HEADER_SIZE;
+		this.sequenceIndicesStart = hashesStart + idCount * 8L;
+		this.positionsStart = sequenceIndicesStart + idCount * 4L;
+		this.filePointersStart = positionsStart + idCount * 4L;
+	}
+
+	/**
+	 * Scan the bgzip file of a tabix index and write the ID index
+	 * 
+	 * @param index
+	 * @param idColumn
+	 *            zero based index of the column with the IDs
+	 * @param variantIdIndexFile
+	 * @return the created index
+	 * @throws IOException
+	 */
+	public static TabixVariantIdIndex create(TabixIndex index, int idColumn, File variantIdIndexFile)
+			throws IOException
+	{
+		if (idColumn < 0) throw new IllegalArgumentException("IdColumn must not be negative");
+
+		int n = 0;
+		long[] entryHashes = new long[1024];
+		int[] entrySequenceIndices = new int[1024];
+		int[] entryPositions = new int[1024];
+		long[] entryFilePointers = new long[1024];
+
+		BgzfReader reader = index.acquireReader();
+		try
+		{
+			List<String> seqNames = index.getSeqNames();
+			for (int tid = 0; tid < seqNames.size(); ++tid)
+			{
+				TabixIndex.TabixIterator it = index.queryTabixIndex(seqNames.get(tid), 0, Integer.MAX_VALUE, reader);
+				ByteLine line;
+				while (it != null && (line = it.nextLine()) != null)
+				{
+					int colStart = 0;
+					for (int col = 0; col < idColumn && colStart >= 0; ++col)
+					{
+						colStart = line.indexOf('\t', colStart);
+						colStart = colStart < 0 ? -1 : colStart + 1;
+					}
+					if (colStart < 0)
+					{
+						continue;
+					}
+					int colEnd = line.indexOf('\t', colStart);
+					if (colEnd < 0) colEnd = line.length();
+
+					byte[] bytes = line.getBytes();
+					int offset = line.getOffset();
+					for (int idStart = colStart, idEnd; idStart < colEnd; idStart = idEnd + 1)
+					{
+						for (idEnd = idStart; idEnd < colEnd && bytes[offset + idEnd] != ID_SEPARATOR; ++idEnd)
+							;
+						if (idEnd == idStart || (idEnd == idStart + 1 && bytes[offset + idStart] == '.'))
+						{
+							continue;
+						}
+
+						if (n == entryHashes.length)
+						{
+							entryHashes = Arrays.copyOf(entryHashes, n * 2);
+							entrySequenceIndices = Arrays.copyOf(entrySequenceIndices, n * 2);
+							entryPositions = Arrays.copyOf(entryPositions, n * 2);
+							entryFilePointers = Arrays.copyOf(entryFilePointers, n * 2);
+						}
+						entryHashes[n] = hash(bytes, offset + idStart, offset + idEnd);
+						entrySequenceIndices[n] = tid;
+						entryPositions[n] = it.getLineBeg() + 1;
+						entryFilePointers[n++] = it.getLineFilePointer();
+					}
+				}
+			}
+		}
+		finally
+		{
+			index.releaseReader(reader);
+		}
+
+		int[] order = sortOnHash(entryHashes, n);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(variantIdIndexFile)));
+		try
+		{
+			out.write(MAGIC);
+			out.writeLong(index.getBzipFile().length());
+			out.writeInt(n);
+			for (int i = 0; i < n; ++i)
+			{
+				out.writeLong(entryHashes[order[i]]);
+			}
+			for (int i = 0; i < n; ++i)
+			{
+				out.writeInt(entrySequenceIndices[order[i]]);
+			}
+			for (int i = 0; i < n; ++i)
+			{
+				out.writeInt(entryPositions[order[i]]);
+			}
+			for (int i = 0; i < n; ++i)
+			{
+				out.writeLong(entryFilePointers[order[i]]);
+			}
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+		}
+
+		return load(variantIdIndexFile, index);
+	}
+
+	/**
+	 * Memory map an ID index
+	 * 
+	 * @param variantIdIndexFile
+	 * @param index
+	 *            the tabix index of the file the ID index is created for
+	 * @return
+	 * @throws IOException
+	 */
+	public static TabixVariantIdIndex load(File variantIdIndexFile, TabixIndex index) throws IOException
+	{
+		return load(variantIdIndexFile, index, MappedFile.DEFAULT_SEGMENT_SIZE);
+	}
+
+	static TabixVariantIdIndex load(File variantIdIndexFile, TabixIndex index, long segmentSize) throws IOException
+	{
+		MappedFile file = new MappedFile(variantIdIndexFile, segmentSize);
+
+		file.checkRange(0, HEADER_SIZE);
+		for (int i = 0; i < MAGIC.length; ++i)
+		{
+			if (file.get(i) != MAGIC[i])
+			{
+				throw new GenotypeDataException("Not a variant ID index: " + variantIdIndexFile.getName());
+			}
+		}
+		if (file.getLong(MAGIC.length) != index.getBzipFile().length())
+		{
+			throw new GenotypeDataException("Variant ID index " + variantIdIndexFile.getName()
+					+ " is not created for the current version of " + index.getBzipFile().getName());
+		}
+
+		int n = file.getInt(MAGIC.length + 8);
+		file.checkRange(HEADER_SIZE, n * 24L);
+
+		return new TabixVariantIdIndex(index, file, n);
+	}
+
+	/**
+	 * @return the number of IDs in the index
+	 */
+	public int getIdCount()
+	{
+		return idCount;
+	}
+
+	/**
+	 * Reads the candidate lines of all IDs in the order of the file
+	 */
+	@Override
+	public Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds)
+	{
+		Set<String> remainingIds = new HashSet<String>(variantIds);
+		Map<String, GeneticVariant> variants = new HashMap<String, GeneticVariant>(remainingIds.size() * 2);
+
+		long[] candidates = new long[remainingIds.size()];
+		int nCandidates = 0;
+		for (String variantId : remainingIds)
+		{
+			long hash = hash(variantId);
+			for (int i = findFirst(hash); i < idCount && getHash(i) == hash; ++i)
+			{
+				if (nCandidates == candidates.length)
+				{
+					candidates = Arrays.copyOf(candidates, nCandidates * 2 + 1);
+				}
+				candidates[nCandidates++] = file.getLong(filePointersStart + i * 8L);
+			}
+		}
+
+		List<GeneticVariant> candidateVariants;
+		try
+		{
+			candidateVariants = index.readVariants(Arrays.copyOf(candidates, nCandidates));
+		}
+		catch (IOException e)
+		{
+			throw new GenotypeDataException(e);
+		}
+
+		// candidates are in file order, the first variant of an ID is used
+		for (GeneticVariant variant : candidateVariants)
+		{
+			for (String id : variant.getAllIds())
+			{
+				if (remainingIds.remove(id))
+				{
+					variants.put(id, variant);
+				}
+			}
+		}
+
+		return variants;
+	}
+
+	/**
+	 * Get the location of the first line with an ID without reading the line.
+	 * Can be a line of another ID if the hashes collide.
+	 * 
+	 * @return the index of the sequence in the tabix index and the start
+	 *         position or null if not found
+	 */
+	public int[] getLocation(String variantId)
+	{
+		long hash = hash(variantId);
+		int i = findFirst(hash);
+		if (i == idCount || getHash(i) != hash)
+		{
+			return null;
+		}
+		return new int[]
+		{ file.getInt(sequenceIndicesStart + i * 4L), file.getInt(positionsStart + i * 4L) };
+	}
+
+	/**
+	 * @return the first index with this hash or the index of the first larger
+	 *         hash
+	 */
+	private int findFirst(long hash)
+	{
+		int low = 0, high = idCount;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (getHash(mid) < hash) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private long getHash(int i)
+	{
+		return file.getLong(hashesStart + i * 8L);
+	}
+
+	static long hash(String variantId)
+	{
+		try
+		{
+			byte[] bytes = variantId.getBytes("UTF-8");
+			return hash(bytes, 0, bytes.length);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new GenotypeDataException(e);
+		}
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the UTF-8 bytes of an ID
+	 */
+	static long hash(byte[] bytes, int start, int end)
+	{
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = start; i < end; ++i)
+		{
+			hash ^= bytes[i] & 0xFF;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Merge sort of the entry indices on hash
+	 */
+	private static int[] sortOnHash(long[] hashes, int n)
+	{
+		int[] order = new int[n];
+		for (int i = 0; i < n; ++i)
+		{
+			order[i] = i;
+		}
+		int[] buffer = new int[n];
+		for (int width = 1; width < n; width *= 2)
+		{
+			for (int start = 0; start < n; start += 2 * width)
+			{
+				int mid = Math.min(start + width, n), end = Math.min(start + 2 * width, n);
+				int i = start, j = mid, k = start;
+				while (i < mid && j < end)
+				{
+					buffer[k++] = hashes[order[j]] < hashes[order[i]] ? order[j++] : order[i++];
+				}
+				while (i < mid)
+					buffer[k++] = order[i++];
+				while (j < end)
+					buffer[k++] = order[j++];
+			}
+			int[] swap = order;
+			order = buffer;
+			buffer = swap;
+		}
+		return order;
+	}
+}
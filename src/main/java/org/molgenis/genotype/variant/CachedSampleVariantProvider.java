@@ -1,5 +1,6 @@
 package org.molgenis.genotype.variant;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.molgenis.genotype.Alleles;
@@ -17,6 +18,7 @@ public class CachedSampleVariantProvider implements SampleVariantsProvider
 	private final SampleVariantsProvider sampleVariantProvider;
 	private final Cache<GeneticVariant, List<Alleles>> cache;
 	private final Cache<GeneticVariant, List<Boolean>> phasingCache;
+	private final Cache<GeneticVariant, byte[]> dosageCache;
 	private final int cacheSize;
 	private final int sampleVariantProviderUniqueId;
 
@@ -25,6 +27,7 @@ public class CachedSampleVariantProvider implements SampleVariantsProvider
 		this.sampleVariantProvider = sampleVariantProvider;
 		this.cache = new Cache<GeneticVariant, List<Alleles>>(cacheSize);
 		this.phasingCache = new Cache<GeneticVariant, List<Boolean>>(cacheSize);
+		this.dosageCache = new Cache<GeneticVariant, byte[]>(cacheSize);
 		this.cacheSize = cacheSize;
 		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
 	}
@@ -32,16 +35,14 @@ public class CachedSampleVariantProvider implements SampleVariantsProvider
 	@Override
 	public List<Alleles> getSampleVariants(GeneticVariant variant)
 	{
-		if (cache.containsKey(variant))
+		List<Alleles> variantAlleles = cache.get(variant);
+		if (variantAlleles == null)
 		{
-			return cache.get(variant);
-		}
-		else
-		{
-			List<Alleles> variantAlleles = sampleVariantProvider.getSampleVariants(variant);
+			// Callers must not be able to modify the cached values
+			variantAlleles = Collections.unmodifiableList(sampleVariantProvider.getSampleVariants(variant));
 			cache.put(variant, variantAlleles);
-			return variantAlleles;
 		}
+		return variantAlleles;
 
 	}
 
@@ -54,16 +55,27 @@ public class CachedSampleVariantProvider implements SampleVariantsProvider
 	@Override
 	public List<Boolean> getSamplePhasing(GeneticVariant variant)
 	{
-		if (phasingCache.containsKey(variant))
+		List<Boolean> phasing = phasingCache.get(variant);
+		if (phasing == null)
 		{
-			return phasingCache.get(variant);
+			phasing = sampleVariantProvider.getSamplePhasing(variant);
+			phasingCache.put(variant, phasing);
 		}
-
-		List<Boolean> phasing = sampleVariantProvider.getSamplePhasing(variant);
-		phasingCache.put(variant, phasing);
 		return phasing;
 	}
 
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		byte[] dosage = dosageCache.get(variant);
+		if (dosage == null)
+		{
+			dosage = sampleVariantProvider.getSampleCalledDosage(variant);
+			dosageCache.put(variant, dosage);
+		}
+		return dosage;
+	}
+
 	@Override
 	public int getSampleVariantProviderUniqueId()
 	{
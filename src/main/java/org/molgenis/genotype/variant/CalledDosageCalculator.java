@@ -0,0 +1,47 @@
+package org.molgenis.genotype.variant;
+
+import java.util.List;
+
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+
+public class CalledDosageCalculator
+{
+
+	/**
+	 * Dosage values of 0, 1 or 2. Count of reference allele. -1 for missing
+	 * data. If reference is null the first of the variant alleles is counted.
+	 */
+	public static byte[] calculateCalledDosage(Alleles alleles, Allele reference, List<Alleles> samplesAlleles)
+	{
+		Allele dosageRef = reference == null ? alleles.getAlleles().get(0) : reference;
+
+		byte[] dosages = new byte[samplesAlleles.size()];
+
+		for (int i = 0; i < dosages.length; ++i)
+		{
+			Alleles sampleVariant = samplesAlleles.get(i);
+			boolean missing = sampleVariant == null;
+			byte dosage = 0;
+
+			if (!missing)
+			{
+				for (Allele allele : sampleVariant)
+				{
+					if (allele == null || allele == Allele.ZERO)
+					{
+						missing = true;
+					}
+					else if (allele == dosageRef)
+					{
+						++dosage;
+					}
+				}
+			}
+
+			dosages[i] = missing ? -1 : dosage;
+		}
+
+		return dosages;
+	}
+}
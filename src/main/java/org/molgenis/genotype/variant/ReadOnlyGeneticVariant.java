@@ -286,36 +286,7 @@ public class ReadOnlyGeneticVariant extends AbstractGeneticVariant
 	@Override
 	public byte[] getSampleCalledDosage()
 	{
-
-		Allele dosageRef = refAllele == null ? alleles.getAlleles().get(0) : refAllele;
-
-		List<Alleles> sampleVariants = getSampleVariants();
-
-		byte[] dosages = new byte[getSampleVariants().size()];
-
-		for (int i = 0; i < dosages.length; ++i)
-		{
-			Alleles sampleVariant = sampleVariants.get(i);
-			boolean missing = false;
-			byte dosage = 0;
-
-			for (Allele allele : sampleVariant)
-			{
-				if (allele == null)
-				{
-					missing = true;
-				}
-				else if (allele == dosageRef)
-				{
-					++dosage;
-				}
-			}
-
-			dosages[i] = missing ? -1 : dosage;
-		}
-
-		return dosages;
-
+		return sampleVariantsProvider.getSampleCalledDosage(this);
 	}
 
 	/**
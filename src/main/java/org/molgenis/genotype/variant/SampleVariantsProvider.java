@@ -23,6 +23,14 @@ public interface SampleVariantsProvider
 
 	int cacheSize();
 
+	/**
+	 * Dosage values of 0, 1 or 2. Count of reference allele. -1 for missing
+	 * data. If the variant has no reference allele the first allele is counted.
+	 * 
+	 * @return
+	 */
+	byte[] getSampleCalledDosage(GeneticVariant variant);
+
 	int getSampleVariantProviderUniqueId();
 
 }
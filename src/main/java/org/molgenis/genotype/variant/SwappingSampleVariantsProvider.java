@@ -1,5 +1,6 @@
 package org.molgenis.genotype.variant;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.molgenis.genotype.Alleles;
@@ -18,13 +19,15 @@ public class SwappingSampleVariantsProvider implements SampleVariantsProvider
 	@Override
 	public List<Alleles> getSampleVariants(GeneticVariant variant)
 	{
+		// Do not modify the list of the wrapped provider, it can be cached
 		List<Alleles> alleles = sampleVariantsProvider.getSampleVariants(variant);
-		for (int i = 0; i < alleles.size(); i++)
+		List<Alleles> swapped = new ArrayList<Alleles>(alleles.size());
+		for (Alleles sampleAlleles : alleles)
 		{
-			alleles.set(i, alleles.get(i).getComplement());
+			swapped.add(sampleAlleles.getComplement());
 		}
 
-		return alleles;
+		return swapped;
 	}
 
 	@Override
@@ -39,6 +42,13 @@ public class SwappingSampleVariantsProvider implements SampleVariantsProvider
 		return sampleVariantsProvider.getSamplePhasing(variant);
 	}
 	
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		// Swapping does not change which allele is the reference
+		return sampleVariantsProvider.getSampleCalledDosage(variant);
+	}
+
 	public int getSampleVariantProviderUniqueId()
 	{
 		return sampleVariantProviderUniqueId;
@@ -2,5 +2,11 @@ package org.molgenis.genotype.variant;
 
 public interface VariantLineMapper
 {
+	/**
+	 * Create a variant for a line of a data file
+	 * 
+	 * @param line
+	 * @return the variant or null if the line is filtered out
+	 */
 	GeneticVariant mapLine(String line);
 }
@@ -1,8 +1,10 @@
 package org.molgenis.genotype.variantFilter;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.molgenis.genotype.GenotypeData;
 import org.molgenis.genotype.RandomAccessGenotypeData;
@@ -123,6 +125,18 @@ public class VariantFilterGenotypeData implements RandomAccessGenotypeData
 		return null;
 	}
 
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		throw new UnsupportedOperationException("This class is not fully implemented");
+	}
+
+	@Override
+	public Map<String, GeneticVariant> getVariantsByIds(Collection<String> variantIds)
+	{
+		throw new UnsupportedOperationException("This class is not fully implemented");
+	}
+
 	@Override
 	public List<SampleAnnotation> getSampleAnnotations()
 	{
@@ -3,18 +3,21 @@ package org.molgenis.genotype.vcf;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
-import javax.annotation.Nullable;
+import java.util.WeakHashMap;
 
 import net.sf.samtools.util.BlockCompressedInputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
 import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.GenotypeDataIndex;
@@ -22,27 +25,48 @@ import org.molgenis.genotype.IndexedGenotypeData;
 import org.molgenis.genotype.RawLineQueryResult;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.VariantIdIndex;
+import org.molgenis.genotype.VariantQuery;
 import org.molgenis.genotype.SimpleSequence;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.SampleAnnotation;
 import org.molgenis.genotype.annotation.VcfAnnotation;
 import org.molgenis.genotype.tabix.TabixIndex;
+import org.molgenis.genotype.tabix.TabixIndexCreator;
+import org.molgenis.genotype.tabix.TabixPositionIndex;
+import org.molgenis.genotype.tabix.TabixVariantIdIndex;
 import org.molgenis.genotype.variant.CachedSampleVariantProvider;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.SampleVariantUniqueIdProvider;
 import org.molgenis.genotype.variant.SampleVariantsProvider;
 import org.molgenis.genotype.variant.VariantLineMapper;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Lists;
-
 public class VcfGenotypeData extends IndexedGenotypeData implements SampleVariantsProvider
 {
-	private final GenotypeDataIndex index;
-	private final VcfReader reader;
+	// zero based index of the ID column
+	private static final int VCF_ID_COLUMN = 2;
+	private static final WeakReference<GeneticVariant> EMPTY_REFERENCE = new WeakReference<GeneticVariant>(null);
+	private static final Logger LOG = Logger.getLogger(VcfGenotypeData.class);
+	private final TabixIndex index;
+	private TabixVariantIdIndex variantIdIndex = null;
+	private final SampleVariantsProvider sampleVariantProvider;
+	private final VcfHeader header;
 	private Map<String, Annotation> sampleAnnotationsMap;
 	private Map<String, String> altDescriptions;
 	private final int sampleVariantProviderUniqueId;
+	// decoder per thread, the decoder arrays are reused between records
+	private final ThreadLocal<DecodedGenotypes> decodedGenotypes = new ThreadLocal<DecodedGenotypes>()
+	{
+		@Override
+		protected DecodedGenotypes initialValue()
+		{
+			return new DecodedGenotypes();
+		}
+	};
+	// records of the variants created while iterating, only kept as long as
+	// the variant itself is referenced
+	private final Map<GeneticVariant, VcfRecord> mappedRecords = Collections
+			.synchronizedMap(new WeakHashMap<GeneticVariant, VcfRecord>());
 
 	/**
 	 * VCF genotype reader with default cache of 100
@@ -66,6 +90,7 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	 * 
 	 * @param bzipVcfFile
 	 * @param tabixIndexFile
+	 *            created if it does not exist
 	 * @throws IOException
 	 * @throws FileNotFoundException
 	 */
@@ -88,9 +113,12 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 			throw new IOException("VCF file not found at " + bzipVcfFile.getAbsolutePath());
 		}
 
-		if (!tabixIndexFile.isFile())
+		if (!tabixIndexFile.exists())
 		{
-			throw new FileNotFoundException("VCF index file not found at " + tabixIndexFile.getAbsolutePath());
+			TabixIndexCreator indexCreator = TabixIndexCreator.createVcfIndexCreator();
+			indexCreator.setThreads(Runtime.getRuntime().availableProcessors());
+			indexCreator.createIndex(bzipVcfFile, tabixIndexFile);
+			LOG.info("Created tabix index");
 		}
 
 		if (!tabixIndexFile.canRead())
@@ -100,15 +128,16 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 
 		try
 		{
-			reader = new VcfReader(new BlockCompressedInputStream(bzipVcfFile));
+			VcfReader reader = new VcfReader(new BlockCompressedInputStream(bzipVcfFile));
 
 			try
 			{
-				SampleVariantsProvider sampleVariantProvider = cacheSize <= 0 ? this : new CachedSampleVariantProvider(
-						this, cacheSize);
+				header = reader.getHeader();
+
+				sampleVariantProvider = cacheSize <= 0 ? this : new CachedSampleVariantProvider(this, cacheSize);
 
-				VariantLineMapper variantLineMapper = new VcfVariantLineMapper(reader.getColNames(),
-						getVariantAnnotations(), getAltDescriptions(), sampleVariantProvider);
+				VariantLineMapper variantLineMapper = new VcfVariantLineMapper(header.getColNames(),
+						getVariantAnnotations(), getAltDescriptions(), sampleVariantProvider, this);
 				index = new TabixIndex(tabixIndexFile, bzipVcfFile, variantLineMapper);
 			}
 			finally
@@ -124,28 +153,132 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
 	}
 
-	@Override
-	public List<Alleles> getSampleVariants(final GeneticVariant variant)
+	/**
+	 * Create a query that only creates variants for the records accepted by
+	 * the filter. The filter is evaluated on the raw record, before any
+	 * variant or annotation value is created.
+	 * 
+	 * @param recordFilter
+	 *            can be null to accept all records
+	 * @param infoKeys
+	 *            the INFO annotations to add to the variants, can be null to
+	 *            add all annotations
+	 * @return
+	 */
+	public VariantQuery createQuery(VcfRecordFilter recordFilter, Collection<String> infoKeys)
+	{
+		VariantLineMapper variantLineMapper = new VcfVariantLineMapper(header.getColNames(), getVariantAnnotations(),
+				getAltDescriptions(), sampleVariantProvider, this, recordFilter, infoKeys);
+		return index.createQuery(variantLineMapper);
+	}
 
+	/**
+	 * Inflate the blocks of the VCF file in parallel when iterating all
+	 * variants of a sequence
+	 *
+	 * @param threads
+	 *            number of threads, 0 to inflate on the reading thread
+	 */
+	public void setScanThreads(int threads)
 	{
-		List<VcfSampleGenotype> sampleGenotypes = getSampleGenotypes(variant);
-		return Lists.transform(sampleGenotypes, new Function<VcfSampleGenotype, Alleles>()
+		index.setScanThreads(threads);
+	}
+
+	/**
+	 * Use a position index for lookups of a single position, the index is
+	 * created if the file does not exist
+	 *
+	 * @param positionIndexFile
+	 * @throws IOException
+	 */
+	public void usePositionIndex(File positionIndexFile) throws IOException
+	{
+		if (positionIndexFile.exists())
+		{
+			index.setPositionIndex(TabixPositionIndex.load(positionIndexFile, index));
+		}
+		else
 		{
-			@Override
-			@Nullable
-			public Alleles apply(@Nullable
-			VcfSampleGenotype input)
+			index.setPositionIndex(TabixPositionIndex.create(index, positionIndexFile));
+		}
+	}
+
+	/**
+	 * Use an index on the variant IDs for lookups by ID, the index is created
+	 * if the file does not exist
+	 *
+	 * @param variantIdIndexFile
+	 * @throws IOException
+	 */
+	public void useVariantIdIndex(File variantIdIndexFile) throws IOException
+	{
+		if (variantIdIndexFile.exists())
+		{
+			variantIdIndex = TabixVariantIdIndex.load(variantIdIndexFile, index);
+		}
+		else
+		{
+			variantIdIndex = TabixVariantIdIndex.create(index, VCF_ID_COLUMN, variantIdIndexFile);
+		}
+	}
+
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant)
+	{
+		VcfGenotypeDecoder decoder = decodeGenotypes(variant);
+		if (decoder == null)
+		{
+			return Collections.emptyList();
+		}
+
+		Alleles variantAlleles = variant.getVariantAlleles();
+		int alleleCount = variantAlleles.getAlleleCount();
+		// Most samples share a genotype, only create the diploid ones once
+		Alleles[] diploidAlleles = new Alleles[(alleleCount + 1) * (alleleCount + 1)];
+
+		int sampleCount = decoder.getSampleCount();
+		List<Alleles> sampleVariants = new ArrayList<Alleles>(sampleCount);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int ploidy = decoder.getSampleAlleleCount(i);
+			if (ploidy == 2)
 			{
-				if (input == null)
+				// validates the allele indices before they are used in the key
+				Allele allele1 = toAllele(variantAlleles, decoder, i, 0);
+				Allele allele2 = toAllele(variantAlleles, decoder, i, 1);
+				// missing allele index -1 is stored at 0
+				int key = (decoder.getSampleAlleleIndex(i, 0) + 1) * (alleleCount + 1)
+						+ decoder.getSampleAlleleIndex(i, 1) + 1;
+				if (diploidAlleles[key] == null)
 				{
-					return null;
+					diploidAlleles[key] = Alleles.createAlleles(allele1, allele2);
 				}
-
-				return Alleles.createBasedOnString(input.getSamleVariants(variant.getVariantAlleles()
-						.getAllelesAsString()));
+				sampleVariants.add(diploidAlleles[key]);
 			}
+			else
+			{
+				List<Allele> alleles = new ArrayList<Allele>(ploidy);
+				for (int j = 0; j < ploidy; ++j)
+				{
+					alleles.add(toAllele(variantAlleles, decoder, i, j));
+				}
+				sampleVariants.add(Alleles.createAlleles(alleles));
+			}
+		}
+
+		return sampleVariants;
+	}
 
-		});
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		VcfGenotypeDecoder decoder = decodeGenotypes(variant);
+		if (decoder == null)
+		{
+			return new byte[0];
+		}
+
+		return decoder.getSampleCalledDosage();
 	}
 
 	@Override
@@ -153,7 +286,7 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	{
 		if (sampleAnnotationsMap == null)
 		{
-			List<VcfInfo> infos = reader.getInfos();
+			List<VcfInfo> infos = header.getInfos();
 			sampleAnnotationsMap = new LinkedHashMap<String, Annotation>(infos.size());
 
 			for (VcfInfo info : infos)
@@ -183,15 +316,7 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	@Override
 	public List<Sample> getSamples()
 	{
-		List<String> sampleNames;
-		try
-		{
-			sampleNames = reader.getSampleNames();
-		}
-		catch (IOException e)
-		{
-			throw new GenotypeDataException("IOException getting samplenames from VcfReader", e);
-		}
+		List<String> sampleNames = header.getSampleNames();
 
 		List<Sample> samples = new ArrayList<Sample>(sampleNames.size());
 		for (String sampleName : sampleNames)
@@ -208,7 +333,7 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	 */
 	private Map<String, Integer> getSequenceLengths()
 	{
-		List<VcfContig> contigs = reader.getContigs();
+		List<VcfContig> contigs = header.getContigs();
 		Map<String, Integer> sequenceLengthById = new HashMap<String, Integer>(contigs.size());
 
 		for (VcfContig contig : contigs)
@@ -223,7 +348,7 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	{
 		if (altDescriptions == null)
 		{
-			List<VcfAlt> alts = reader.getAlts();
+			List<VcfAlt> alts = header.getAlts();
 			altDescriptions = new HashMap<String, String>(alts.size());
 
 			for (VcfAlt alt : alts)
@@ -241,6 +366,12 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 		return index;
 	}
 
+	@Override
+	protected VariantIdIndex getVariantIdIndex()
+	{
+		return variantIdIndex;
+	}
+
 	@Override
 	public int cacheSize()
 	{
@@ -250,62 +381,118 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	@Override
 	public List<Boolean> getSamplePhasing(GeneticVariant variant)
 	{
-		List<VcfSampleGenotype> sampleGenotypes = getSampleGenotypes(variant);
-		return Lists.transform(sampleGenotypes, new Function<VcfSampleGenotype, Boolean>()
+		VcfGenotypeDecoder decoder = decodeGenotypes(variant);
+		if (decoder == null)
 		{
-			@Override
-			@Nullable
-			public Boolean apply(@Nullable
-			VcfSampleGenotype input)
-			{
-				if (input == null)
-				{
-					return null;
-				}
+			return Collections.emptyList();
+		}
+
+		int sampleCount = decoder.getSampleCount();
+		List<Boolean> phasing = new ArrayList<Boolean>(sampleCount);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			phasing.add(decoder.isSamplePhased(i));
+		}
+
+		return phasing;
+	}
+
+	/**
+	 * Keep the record a variant was created from. The genotypes of this
+	 * variant are then decoded from the record instead of querying the file
+	 * again, this makes iterating over all variants a single pass.
+	 */
+	void addMappedRecord(GeneticVariant variant, VcfRecord record)
+	{
+		mappedRecords.put(variant, record);
+	}
+
+	/**
+	 * Decode the GT values of the VCF line of this variant. The sample
+	 * variants, phasing and dosage of a variant are normally requested after
+	 * each other so the last decoded variant is not decoded again.
+	 * 
+	 * @return the decoder of this thread or null if the variant is not found
+	 */
+	private VcfGenotypeDecoder decodeGenotypes(GeneticVariant variant)
+	{
+		DecodedGenotypes decoded = decodedGenotypes.get();
+		VcfGenotypeDecoder genotypeDecoder = decoded.decoder;
+		if (variant == decoded.variant.get())
+		{
+			return genotypeDecoder;
+		}
+		decoded.variant = EMPTY_REFERENCE;
 
-				return input.getPhasing().get(0);
+		VcfRecord record = mappedRecords.get(variant);
+		if (record == null)
+		{
+			record = queryRecord(variant);
+			if (record == null)
+			{
+				return null;
 			}
+		}
 
-		});
+		genotypeDecoder.decode(record);
+		for (int i = 0; i < genotypeDecoder.getSampleCount(); ++i)
+		{
+			if (genotypeDecoder.getSampleAlleleCount(i) == 0) throw new GenotypeDataException(
+					"Missing GT format value for sample [" + header.getSampleName(i) + "]");
+		}
+		decoded.variant = new WeakReference<GeneticVariant>(variant);
+
+		return genotypeDecoder;
 	}
 
-	private List<VcfSampleGenotype> getSampleGenotypes(GeneticVariant variant)
+	/**
+	 * Find the record of a variant using the tabix index
+	 * 
+	 * @return the record or null if not found
+	 */
+	private VcfRecord queryRecord(GeneticVariant variant)
 	{
 		RawLineQueryResult queryResult = index.createRawLineQuery().executeQuery(variant.getSequenceName(),
 				variant.getStartPos());
 
-		List<VcfSampleGenotype> genotypes = new ArrayList<VcfSampleGenotype>();
 		try
 		{
+			List<String> alleles = variant.getVariantAlleles().getAllelesAsString();
 			for (String line : queryResult)
 			{
-				List<String> alleles = variant.getVariantAlleles().getAllelesAsString();
-				VcfRecord record = new VcfRecord(line, reader.getColNames());
+				VcfRecord record = new VcfRecord(line, header.getColNames());
 				if (record.getChrom().equalsIgnoreCase(variant.getSequenceName())
 						&& (record.getPos() == variant.getStartPos()) && record.getAlleles().equals(alleles))
 				{
-					List<String> sampleNames = reader.getSampleNames();
-					for (String sampleName : sampleNames)
-					{
-						VcfSampleGenotype geno = record.getSampleGenotype(sampleName);
-						if (geno == null) throw new GenotypeDataException("Missing GT format value for sample ["
-								+ sampleName + "]");
-						genotypes.add(geno);
-					}
-
+					return record;
 				}
 			}
 		}
-		catch (IOException e)
-		{
-			throw new RuntimeException(e);
-		}
 		finally
 		{
 			IOUtils.closeQuietly(queryResult);
 		}
 
-		return genotypes;
+		return null;
+	}
+
+	/**
+	 * Missing alleles are returned as Allele.ZERO
+	 */
+	private static Allele toAllele(Alleles variantAlleles, VcfGenotypeDecoder decoder, int sampleIndex, int allele)
+	{
+		int alleleIndex = decoder.getSampleAlleleIndex(sampleIndex, allele);
+		if (alleleIndex == VcfGenotypeDecoder.MISSING_ALLELE_INDEX)
+		{
+			return Allele.ZERO;
+		}
+		if (alleleIndex >= variantAlleles.getAlleleCount())
+		{
+			throw new GenotypeDataException("Allele index " + alleleIndex + " in GT value of sample " + sampleIndex
+					+ " does not match the alleles " + variantAlleles.getAllelesAsString());
+		}
+
+		return variantAlleles.get(alleleIndex);
 	}
 
 	@Override
@@ -320,4 +507,14 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 		return Collections.emptyMap();
 	}
 
+
+	/**
+	 * Decoder of a thread with the variant it decoded last. The variant is
+	 * weakly referenced because it references this genotype data.
+	 */
+	private static class DecodedGenotypes
+	{
+		private final VcfGenotypeDecoder decoder = new VcfGenotypeDecoder();
+		private WeakReference<GeneticVariant> variant = EMPTY_REFERENCE;
+	}
 }
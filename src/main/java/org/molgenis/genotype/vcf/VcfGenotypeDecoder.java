@@ -0,0 +1,185 @@
+package org.molgenis.genotype.vcf;
+
+import java.util.BitSet;
+
+import org.molgenis.genotype.GenotypeDataException;
+
+/**
+ * Decodes the GT values of all samples of a VcfRecord into primitive arrays.
+ *
+ * The allele indices of all samples are written after each other in a byte
+ * array, MISSING_ALLELE_INDEX is used for '.'. A sample is phased if the first
+ * separator in its GT value is '|'. The arrays are reused between records so a
+ * decoder should not be shared between threads.
+ *
+ * See javadoc in VcfSampleGenotype.java for the GT format
+ */
+public class VcfGenotypeDecoder
+{
+	public static final byte MISSING_ALLELE_INDEX = -1;
+
+	private static final char PHASED_SEPARATOR = '|';
+	private static final char UNPHASED_SEPARATOR = '/';
+	private static final char MISSING_VALUE = '.';
+
+	// allele indices of all samples
+	private byte[] alleleIndices = new byte[64];
+	// start of each sample in alleleIndices, sampleCount + 1 elements are used
+	private int[] sampleOffsets = new int[1];
+	private final BitSet phasing = new BitSet();
+	private int sampleCount = 0;
+
+	/**
+	 * Decode the GT values of all samples in this record. Samples without a GT
+	 * value get zero alleles.
+	 *
+	 * @param record
+	 */
+	public void decode(VcfRecord record)
+	{
+		String line = record.getLine();
+		int[] genotypeOffsets = record.getGenotypeOffsets();
+		int count = record.getSampleCount();
+
+		if (sampleOffsets.length < count + 1)
+		{
+			sampleOffsets = new int[count + 1];
+		}
+		phasing.clear();
+
+		int alleleCount = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			sampleOffsets[i] = alleleCount;
+
+			int start = genotypeOffsets[i * 2];
+			if (start == -1)
+			{
+				continue;
+			}
+			int end = genotypeOffsets[i * 2 + 1];
+
+			// There can never be more alleles than chars
+			ensureCapacity(alleleCount + Math.max(1, end - start));
+
+			int alleleIndex = MISSING_ALLELE_INDEX;
+			boolean firstSeparator = true;
+			for (int j = start; j < end; ++j)
+			{
+				char c = line.charAt(j);
+				switch (c)
+				{
+					case PHASED_SEPARATOR:
+					case UNPHASED_SEPARATOR:
+						alleleIndices[alleleCount++] = (byte) alleleIndex;
+						alleleIndex = MISSING_ALLELE_INDEX;
+						if (firstSeparator && c == PHASED_SEPARATOR)
+						{
+							phasing.set(i);
+						}
+						firstSeparator = false;
+						break;
+					case MISSING_VALUE:
+						break;
+					default:
+						if (c < '0' || c > '9')
+						{
+							throw new GenotypeDataException("Invalid GT value [" + line.substring(start, end) + "]");
+						}
+						alleleIndex = (alleleIndex == MISSING_ALLELE_INDEX ? 0 : alleleIndex * 10) + (c - '0');
+						if (alleleIndex > Byte.MAX_VALUE)
+						{
+							throw new GenotypeDataException("Allele index in GT value [" + line.substring(start, end)
+									+ "] is larger than " + Byte.MAX_VALUE);
+						}
+				}
+			}
+			alleleIndices[alleleCount++] = (byte) alleleIndex;
+		}
+
+		sampleOffsets[count] = alleleCount;
+		sampleCount = count;
+	}
+
+	public int getSampleCount()
+	{
+		return sampleCount;
+	}
+
+	/**
+	 * Get the number of alleles of a sample, 2 for diploid calls and 0 if the
+	 * sample has no GT value
+	 */
+	public int getSampleAlleleCount(int sampleIndex)
+	{
+		checkSampleIndex(sampleIndex);
+		return sampleOffsets[sampleIndex + 1] - sampleOffsets[sampleIndex];
+	}
+
+	/**
+	 * Get an allele index of a sample, MISSING_ALLELE_INDEX if unknown
+	 */
+	public byte getSampleAlleleIndex(int sampleIndex, int allele)
+	{
+		if (allele < 0 || allele >= getSampleAlleleCount(sampleIndex))
+		{
+			throw new IndexOutOfBoundsException("Allele " + allele + " out of range for sample " + sampleIndex);
+		}
+		return alleleIndices[sampleOffsets[sampleIndex] + allele];
+	}
+
+	public boolean isSamplePhased(int sampleIndex)
+	{
+		checkSampleIndex(sampleIndex);
+		return phasing.get(sampleIndex);
+	}
+
+	/**
+	 * Dosage values of 0, 1 or 2. Count of reference allele (index 0). -1 for
+	 * missing data.
+	 *
+	 * @return
+	 */
+	public byte[] getSampleCalledDosage()
+	{
+		byte[] dosages = new byte[sampleCount];
+
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int end = sampleOffsets[i + 1];
+			byte dosage = (byte) (end == sampleOffsets[i] ? -1 : 0);
+			for (int j = sampleOffsets[i]; j < end && dosage != -1; ++j)
+			{
+				if (alleleIndices[j] == MISSING_ALLELE_INDEX)
+				{
+					dosage = -1;
+				}
+				else if (alleleIndices[j] == 0)
+				{
+					++dosage;
+				}
+			}
+			dosages[i] = dosage;
+		}
+
+		return dosages;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (alleleIndices.length < capacity)
+		{
+			byte[] newAlleleIndices = new byte[Math.max(capacity, alleleIndices.length * 2)];
+			System.arraycopy(alleleIndices, 0, newAlleleIndices, 0, alleleIndices.length);
+			alleleIndices = newAlleleIndices;
+		}
+	}
+
+	private void checkSampleIndex(int sampleIndex)
+	{
+		if (sampleIndex < 0 || sampleIndex >= sampleCount)
+		{
+			throw new IndexOutOfBoundsException("Sample index " + sampleIndex + " out of range");
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package org.molgenis.genotype.vcf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The meta information lines and column names of a VCF file
+ *
+ * The meta lines are grouped by type once, each type is only parsed the first
+ * time it is requested. Lookups by ID and by column name are done using maps,
+ * if an ID is used more than once the first line is returned.
+ */
+public class VcfHeader
+{
+	private static final List<String> NORMAL_COL_NAMES = Arrays.asList(new String[]
+	{ "#CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER", "INFO", "FORMAT", "" });
+
+	private final List<String> metaLines;
+	private final List<String> infoLines = new ArrayList<String>();
+	private final List<String> formatLines = new ArrayList<String>();
+	private final List<String> sampleLines = new ArrayList<String>();
+	private final List<String> contigLines = new ArrayList<String>();
+	private final List<String> altLines = new ArrayList<String>();
+
+	private final List<String> colNames;
+	private final Map<String, Integer> colIndices;
+	private final String[] sampleNames;
+	private final List<String> sampleNameList;
+
+	private List<VcfInfo> infos = null;
+	private Map<String, VcfInfo> infosById = null;
+	private List<VcfFormat> formats = null;
+	private Map<String, VcfFormat> formatsById = null;
+	private List<VcfSample> samples = null;
+	private Map<String, VcfSample> samplesById = null;
+	private List<VcfContig> contigs = null;
+	private Map<String, VcfContig> contigsById = null;
+	private List<VcfAlt> alts = null;
+	private Map<String, VcfAlt> altsById = null;
+
+	/**
+	 *
+	 * @param metaLines
+	 *            the lines starting with '##'
+	 * @param colNames
+	 *            the columns of the '#CHROM' line
+	 */
+	public VcfHeader(List<String> metaLines, List<String> colNames)
+	{
+		this.metaLines = Collections.unmodifiableList(new ArrayList<String>(metaLines));
+		for (String line : metaLines)
+		{
+			if (line.startsWith("##INFO"))
+			{
+				infoLines.add(line);
+			}
+			else if (line.startsWith("##FORMAT"))
+			{
+				formatLines.add(line);
+			}
+			else if (line.startsWith("##SAMPLE"))
+			{
+				sampleLines.add(line);
+			}
+			else if (line.startsWith("##contig"))
+			{
+				contigLines.add(line);
+			}
+			else if (line.startsWith("##ALT"))
+			{
+				altLines.add(line);
+			}
+		}
+
+		this.colNames = Collections.unmodifiableList(new ArrayList<String>(colNames));
+		this.colIndices = new HashMap<String, Integer>(colNames.size() * 2);
+		List<String> samples = new ArrayList<String>();
+		for (int i = 0; i < colNames.size(); ++i)
+		{
+			String colName = colNames.get(i);
+			if (!colIndices.containsKey(colName))
+			{
+				colIndices.put(colName, i);
+			}
+			if (!NORMAL_COL_NAMES.contains(colName))
+			{
+				samples.add(colName);
+			}
+		}
+		this.sampleNames = samples.toArray(new String[samples.size()]);
+		this.sampleNameList = Collections.unmodifiableList(Arrays.asList(sampleNames));
+	}
+
+	/**
+	 * Get the lines starting with '##'
+	 */
+	public List<String> getMetaLines()
+	{
+		return metaLines;
+	}
+
+	public List<String> getColNames()
+	{
+		return colNames;
+	}
+
+	/**
+	 * Get the index of a column
+	 *
+	 * @return the index or -1 if there is no column with this name
+	 */
+	public int getColIndex(String colName)
+	{
+		Integer index = colIndices.get(colName);
+		return index == null ? -1 : index;
+	}
+
+	public List<String> getSampleNames()
+	{
+		return sampleNameList;
+	}
+
+	public int getSampleCount()
+	{
+		return sampleNames.length;
+	}
+
+	public String getSampleName(int sampleIndex)
+	{
+		return sampleNames[sampleIndex];
+	}
+
+	public synchronized List<VcfInfo> getInfos()
+	{
+		if (infos == null)
+		{
+			List<VcfInfo> list = new ArrayList<VcfInfo>(infoLines.size());
+			Map<String, VcfInfo> map = new HashMap<String, VcfInfo>(infoLines.size() * 2);
+			for (String line : infoLines)
+			{
+				VcfInfo info = new VcfInfo(new VcfHeaderParser(line).parse());
+				list.add(info);
+				if (!map.containsKey(info.getId()))
+				{
+					map.put(info.getId(), info);
+				}
+			}
+			infos = Collections.unmodifiableList(list);
+			infosById = map;
+		}
+		return infos;
+	}
+
+	/**
+	 * @return the first info with this ID or null if not present
+	 */
+	public synchronized VcfInfo getInfo(String id)
+	{
+		getInfos();
+		return infosById.get(id);
+	}
+
+	public synchronized List<VcfFormat> getFormats()
+	{
+		if (formats == null)
+		{
+			List<VcfFormat> list = new ArrayList<VcfFormat>(formatLines.size());
+			Map<String, VcfFormat> map = new HashMap<String, VcfFormat>(formatLines.size() * 2);
+			for (String line : formatLines)
+			{
+				VcfFormat format = new VcfFormat(new VcfHeaderParser(line).parse());
+				list.add(format);
+				if (!map.containsKey(format.getId()))
+				{
+					map.put(format.getId(), format);
+				}
+			}
+			formats = Collections.unmodifiableList(list);
+			formatsById = map;
+		}
+		return formats;
+	}
+
+	/**
+	 * @return the first format with this ID or null if not present
+	 */
+	public synchronized VcfFormat getFormat(String id)
+	{
+		getFormats();
+		return formatsById.get(id);
+	}
+
+	public synchronized List<VcfSample> getSamples()
+	{
+		if (samples == null)
+		{
+			List<VcfSample> list = new ArrayList<VcfSample>(sampleLines.size());
+			Map<String, VcfSample> map = new HashMap<String, VcfSample>(sampleLines.size() * 2);
+			for (String line : sampleLines)
+			{
+				VcfSample sample = new VcfSample(new VcfHeaderParser(line).parse());
+				list.add(sample);
+				if (!map.containsKey(sample.getId()))
+				{
+					map.put(sample.getId(), sample);
+				}
+			}
+			samples = Collections.unmodifiableList(list);
+			samplesById = map;
+		}
+		return samples;
+	}
+
+	/**
+	 * @return the first sample with this ID or null if not present
+	 */
+	public synchronized VcfSample getSample(String id)
+	{
+		getSamples();
+		return samplesById.get(id);
+	}
+
+	public synchronized List<VcfContig> getContigs()
+	{
+		if (contigs == null)
+		{
+			List<VcfContig> list = new ArrayList<VcfContig>(contigLines.size());
+			Map<String, VcfContig> map = new HashMap<String, VcfContig>(contigLines.size() * 2);
+			for (String line : contigLines)
+			{
+				VcfContig contig = new VcfContig(new VcfHeaderParser(line).parse());
+				list.add(contig);
+				if (!map.containsKey(contig.getId()))
+				{
+					map.put(contig.getId(), contig);
+				}
+			}
+			contigs = Collections.unmodifiableList(list);
+			contigsById = map;
+		}
+		return contigs;
+	}
+
+	/**
+	 * @return the first contig with this ID or null if not present
+	 */
+	public synchronized VcfContig getContig(String id)
+	{
+		getContigs();
+		return contigsById.get(id);
+	}
+
+	public synchronized List<VcfAlt> getAlts()
+	{
+		if (alts == null)
+		{
+			List<VcfAlt> list = new ArrayList<VcfAlt>(altLines.size());
+			Map<String, VcfAlt> map = new HashMap<String, VcfAlt>(altLines.size() * 2);
+			for (String line : altLines)
+			{
+				VcfAlt alt = new VcfAlt(new VcfHeaderParser(line).parse());
+				list.add(alt);
+				if (!map.containsKey(alt.getId()))
+				{
+					map.put(alt.getId(), alt);
+				}
+			}
+			alts = Collections.unmodifiableList(list);
+			altsById = map;
+		}
+		return alts;
+	}
+
+	/**
+	 * @return the first alt with this ID or null if not present
+	 */
+	public synchronized VcfAlt getAlt(String id)
+	{
+		getAlts();
+		return altsById.get(id);
+	}
+}
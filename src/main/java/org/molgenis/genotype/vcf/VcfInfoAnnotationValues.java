@@ -0,0 +1,225 @@
+package org.molgenis.genotype.vcf;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.molgenis.genotype.annotation.Annotation;
+
+/**
+ * Annotation values of a variant backed by the raw INFO column of the VCF
+ * line. A value is only decoded the first time it is requested, scans that
+ * never read the annotations do not parse the INFO column.
+ *
+ * Only contains the annotations that are defined in the header and have a
+ * value in the INFO column.
+ *
+ * The annotation values of the variants of a VCF file are of this type, use
+ * {@link #getInt(String, int)} and {@link #getFloat(String, float)} to read
+ * numeric values without boxing.
+ *
+ * Safe for concurrent reads, variants are shared by the threads reading them
+ * from a cache. A value can be decoded by more than one thread at the same
+ * time, the values are equal.
+ */
+public class VcfInfoAnnotationValues extends AbstractMap<String, Object>
+{
+	// marks an annotation that is decoded but has no value
+	private static final Object NO_VALUE = new Object();
+
+	private final String info;
+	private final Map<String, Annotation> infoAnnotations;
+	private final Map<String, Object> decodedValues = new ConcurrentHashMap<String, Object>();
+	// published when complete, read once per call
+	private volatile Map<String, Object> allValues = null;
+
+	/**
+	 *
+	 * @param info
+	 *            the INFO column, can be null
+	 * @param infoAnnotations
+	 *            the annotations by ID in header order
+	 */
+	public VcfInfoAnnotationValues(String info, Map<String, Annotation> infoAnnotations)
+	{
+		this.info = info;
+		this.infoAnnotations = infoAnnotations;
+	}
+
+	@Override
+	public Object get(Object key)
+	{
+		Map<String, Object> values = allValues;
+		if (values != null)
+		{
+			return values.get(key);
+		}
+
+		Annotation annotation = infoAnnotations.get(key);
+		if (annotation == null)
+		{
+			return null;
+		}
+
+		Object value = decodedValues.get(key);
+		if (value == null)
+		{
+			value = decode(annotation);
+			decodedValues.put(annotation.getId(), value == null ? NO_VALUE : value);
+		}
+
+		return value == NO_VALUE ? null : value;
+	}
+
+	/**
+	 * Get the first value of an INFO annotation as int, the value is parsed
+	 * from the INFO column without boxing
+	 * 
+	 * @param key
+	 * @param missingValue
+	 *            returned if the annotation is not defined in the header, not
+	 *            present or the value is '.'
+	 * @return
+	 */
+	public int getInt(String key, int missingValue)
+	{
+		String value = getFirstValue(key);
+		return value == null ? missingValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * Get the first value of an INFO annotation as float, the value is parsed
+	 * from the INFO column without boxing
+	 * 
+	 * @param key
+	 * @param missingValue
+	 *            returned if the annotation is not defined in the header, not
+	 *            present or the value is '.'
+	 * @return
+	 */
+	public float getFloat(String key, float missingValue)
+	{
+		String value = getFirstValue(key);
+		return value == null ? missingValue : Float.parseFloat(value);
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return get(key) != null;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet()
+	{
+		Map<String, Object> published = allValues;
+		if (published == null)
+		{
+			// a single pass over the INFO column instead of a scan per key
+			Map<String, List<String>> infoValues = info == null ? Collections.<String, List<String>> emptyMap()
+					: VcfRecord.getAllInfoValues(info, 0, info.length());
+
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			for (Annotation annotation : infoAnnotations.values())
+			{
+				List<String> annotationValues = infoValues.get(annotation.getId());
+				Object value = annotationValues == null ? null : decode(annotation, annotationValues);
+				if (value != null)
+				{
+					values.put(annotation.getId(), value);
+				}
+			}
+			published = Collections.unmodifiableMap(values);
+			allValues = published;
+			decodedValues.clear();
+		}
+
+		return published.entrySet();
+	}
+
+	private String getFirstValue(String key)
+	{
+		if (info == null || !infoAnnotations.containsKey(key))
+		{
+			return null;
+		}
+		return VcfRecord.getFirstInfoValue(info, 0, info.length(), key);
+	}
+
+	private Object decode(Annotation annotation)
+	{
+		if (info == null)
+		{
+			return null;
+		}
+
+		return decode(annotation, VcfRecord.getInfoValues(info, 0, info.length(), annotation.getId()));
+	}
+
+	private static Object decode(Annotation annotation, List<String> values)
+	{
+		if (values.isEmpty())
+		{
+			return null;
+		}
+
+		switch (annotation.getType())
+		{
+			case INTEGER:
+				if (annotation.isList())
+				{
+					List<Integer> ints = new ArrayList<Integer>(values.size());
+					for (String value : values)
+					{
+						ints.add(Integer.valueOf(value));
+					}
+					return ints;
+				}
+				return Integer.valueOf(values.get(0));
+			case BOOLEAN:
+				if (annotation.isList())
+				{
+					List<Boolean> bools = new ArrayList<Boolean>(values.size());
+					for (String value : values)
+					{
+						bools.add(Boolean.parseBoolean(value));
+					}
+					return bools;
+				}
+				return Boolean.parseBoolean(values.get(0));
+			case FLOAT:
+				if (annotation.isList())
+				{
+					List<Float> floats = new ArrayList<Float>(values.size());
+					for (String value : values)
+					{
+						floats.add(Float.parseFloat(value));
+					}
+					return floats;
+				}
+				return Float.parseFloat(values.get(0));
+			case CHAR:
+				if (annotation.isList())
+				{
+					List<Character> chars = new ArrayList<Character>(values.size());
+					for (String value : values)
+					{
+						chars.add(value.charAt(0));
+					}
+					return chars;
+				}
+				return Character.valueOf(values.get(0).charAt(0));
+			default:
+				if (annotation.isList())
+				{
+					return values;
+				}
+				return values.get(0);
+		}
+	}
+}
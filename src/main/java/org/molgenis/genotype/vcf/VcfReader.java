@@ -7,164 +7,138 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.io.TupleReader;
-import org.molgenis.io.csv.CsvReader;
 import org.molgenis.io.processor.CellProcessor;
+import org.molgenis.util.tuple.KeyValueTuple;
 import org.molgenis.util.tuple.Tuple;
 
-import com.google.common.collect.Lists;
-
+/**
+ * Reads a VCF file in a single pass. The meta lines and the column names are
+ * read when the reader is created, the stream is then positioned at the first
+ * data line.
+ * 
+ */
 public class VcfReader implements TupleReader
 {
 	private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
-	private static final List<String> NORMAL_COL_NAMES = Arrays.asList(new String[]
-	{ "#CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER", "INFO", "FORMAT", "" });
+	private static final String COLUMN_SEPARATOR = "\t";
 
-	private List<String> headers = new ArrayList<String>();
-	private final CsvReader csvReader;
+	private final BufferedReader reader;
+	private final VcfHeader header;
+	private final List<CellProcessor> cellProcessors = new ArrayList<CellProcessor>();
 
 	public VcfReader(InputStream vcfInputStream) throws IOException
 	{
-		BufferedReader br = new BufferedReader(new InputStreamReader(vcfInputStream, CHARSET_UTF8));
+		reader = new BufferedReader(new InputStreamReader(vcfInputStream, CHARSET_UTF8));
 
-		// First read the headers (starts with '##')
-		br.mark(vcfInputStream.available());
-		headers = readHeaders(br);
-		br.reset();
+		// First read the meta lines (starts with '##') followed by the column
+		// names (starts with '#')
+		List<String> metaLines = new ArrayList<String>();
+		String line = reader.readLine();
+		while ((line != null) && line.startsWith("##"))
+		{
+			metaLines.add(line);
+			line = reader.readLine();
+		}
 
-		// Create CsvReader, skip the headers starting with '##'
-		for (int i = 0; i < headers.size(); i++)
+		if ((line == null) || !line.startsWith("#"))
 		{
-			br.readLine();
+			throw new GenotypeDataException("Missing VCF header line with column names");
 		}
 
-		csvReader = new CsvReader(br, '	', true);
+		header = new VcfHeader(metaLines, Arrays.asList(line.split(COLUMN_SEPARATOR, -1)));
 	}
 
-	public List<String> getSampleNames() throws IOException
+	/**
+	 * Get the parsed meta information and column names
+	 */
+	public VcfHeader getHeader()
 	{
-		List<String> sampleNames = new ArrayList<String>();
-
-		Iterator<String> it = colNamesIterator();
-		while (it.hasNext())
-		{
-			String colName = it.next();
-			if (!NORMAL_COL_NAMES.contains(colName))
-			{
-				sampleNames.add(colName);
-			}
-		}
+		return header;
+	}
 
-		return Collections.unmodifiableList(sampleNames);
+	public List<String> getSampleNames() throws IOException
+	{
+		return header.getSampleNames();
 	}
 
 	public List<String> getColNames() throws IOException
 	{
-		return Collections.unmodifiableList(Lists.newArrayList(colNamesIterator()));
+		return header.getColNames();
 	}
 
 	public List<VcfInfo> getInfos()
 	{
-		List<VcfInfo> infos = new ArrayList<VcfInfo>();
-
-		for (String header : headers)
-		{
-			if (header.startsWith("##INFO"))
-			{
-				Tuple tuple = new VcfHeaderParser(header).parse();
-				VcfInfo info = new VcfInfo(tuple);
-				infos.add(info);
-			}
-		}
-
-		return infos;
+		return header.getInfos();
 	}
 
 	public List<VcfFormat> getFormats()
 	{
-		List<VcfFormat> formats = new ArrayList<VcfFormat>();
-
-		for (String header : headers)
-		{
-			if (header.startsWith("##FORMAT"))
-			{
-				Tuple tuple = new VcfHeaderParser(header).parse();
-				VcfFormat format = new VcfFormat(tuple);
-				formats.add(format);
-			}
-		}
-
-		return formats;
+		return header.getFormats();
 	}
 
 	public List<VcfSample> getSamples()
 	{
-		List<VcfSample> samples = new ArrayList<VcfSample>();
-
-		for (String header : headers)
-		{
-			if (header.startsWith("##SAMPLE"))
-			{
-				Tuple tuple = new VcfHeaderParser(header).parse();
-				samples.add(new VcfSample(tuple));
-			}
-		}
-
-		return samples;
+		return header.getSamples();
 	}
 
 	public List<VcfContig> getContigs()
 	{
-		List<VcfContig> contigs = new ArrayList<VcfContig>();
-
-		for (String header : headers)
-		{
-			if (header.startsWith("##contig"))
-			{
-				Tuple tuple = new VcfHeaderParser(header).parse();
-				VcfContig contig = new VcfContig(tuple);
-				contigs.add(contig);
-			}
-		}
-
-		return contigs;
+		return header.getContigs();
 	}
 
 	public List<VcfAlt> getAlts()
 	{
-		List<VcfAlt> alts = new ArrayList<VcfAlt>();
-
-		for (String header : headers)
-		{
-			if (header.startsWith("##ALT"))
-			{
-				Tuple tuple = new VcfHeaderParser(header).parse();
-				alts.add(new VcfAlt(tuple));
-			}
-		}
-
-		return alts;
+		return header.getAlts();
 	}
 
+	/**
+	 * Iterate over the remaining data lines
+	 */
 	public Iterator<VcfRecord> recordIterator()
 	{
-		return new VcfRecordIterator(iterator());
-	}
-
-	@Override
-	public void close() throws IOException
-	{
-		csvReader.close();
+		return new DataLineIterator<VcfRecord>()
+		{
+			@Override
+			protected VcfRecord create(String line)
+			{
+				return new VcfRecord(line, header.getColNames());
+			}
+		};
 	}
 
+	/**
+	 * Iterate over the remaining data lines as tuples with the column names of
+	 * the header line, the cell processors are applied to the values
+	 */
 	@Override
 	public Iterator<Tuple> iterator()
 	{
-		return csvReader.iterator();
+		return new DataLineIterator<Tuple>()
+		{
+			@Override
+			protected Tuple create(String line)
+			{
+				List<String> colNames = header.getColNames();
+				String[] values = line.split(COLUMN_SEPARATOR, -1);
+				KeyValueTuple tuple = new KeyValueTuple();
+				for (int i = 0; i < colNames.size(); ++i)
+				{
+					String value = i < values.length ? values[i] : null;
+					for (CellProcessor cellProcessor : cellProcessors)
+					{
+						value = cellProcessor.process(value);
+					}
+					tuple.set(colNames.get(i), value);
+				}
+				return tuple;
+			}
+		};
 	}
 
 	@Override
@@ -176,49 +150,49 @@ public class VcfReader implements TupleReader
 	@Override
 	public Iterator<String> colNamesIterator() throws IOException
 	{
-		return csvReader.colNamesIterator();
+		return header.getColNames().iterator();
 	}
 
 	@Override
 	public void addCellProcessor(CellProcessor cellProcessor)
 	{
-		csvReader.addCellProcessor(cellProcessor);
+		cellProcessors.add(cellProcessor);
 	}
 
-	private List<String> readHeaders(BufferedReader br) throws IOException
+	@Override
+	public void close() throws IOException
 	{
-		List<String> headers = new ArrayList<String>();
-
-		String header = br.readLine();
-		while ((header != null) && header.startsWith("##"))
-		{
-			headers.add(header);
-			header = br.readLine();
-		}
-
-		return headers;
+		reader.close();
 	}
 
-	private static class VcfRecordIterator implements Iterator<VcfRecord>
+	private abstract class DataLineIterator<E> implements Iterator<E>
 	{
-		private final Iterator<Tuple> tupleIterator;
+		private String line;
 
-		public VcfRecordIterator(Iterator<Tuple> tupleIterator)
+		public DataLineIterator()
 		{
-			this.tupleIterator = tupleIterator;
+			line = readLine();
 		}
 
+		protected abstract E create(String line);
+
 		@Override
 		public boolean hasNext()
 		{
-			return tupleIterator.hasNext();
+			return line != null;
 		}
 
 		@Override
-		public VcfRecord next()
+		public E next()
 		{
-			Tuple tuple = tupleIterator.next();
-			return new VcfRecord(tuple);
+			if (line == null)
+			{
+				throw new NoSuchElementException();
+			}
+
+			E element = create(line);
+			line = readLine();
+			return element;
 		}
 
 		@Override
@@ -226,6 +200,26 @@ public class VcfReader implements TupleReader
 		{
 			throw new UnsupportedOperationException();
 		}
+
+		/**
+		 * Read the next non empty line
+		 */
+		private String readLine()
+		{
+			try
+			{
+				String nextLine = reader.readLine();
+				while ((nextLine != null) && nextLine.isEmpty())
+				{
+					nextLine = reader.readLine();
+				}
+				return nextLine;
+			}
+			catch (IOException e)
+			{
+				throw new GenotypeDataException("IOException reading VCF line", e);
+			}
+		}
 	}
 
 }
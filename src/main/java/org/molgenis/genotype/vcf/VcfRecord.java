@@ -10,59 +10,96 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.molgenis.util.tuple.KeyValueTuple;
 import org.molgenis.util.tuple.Tuple;
-import org.molgenis.util.tuple.WritableTuple;
+
+import com.google.common.collect.Lists;
 
 /**
  * Class that represents one row in a VCF file
  * 
+ * The line is scanned once to find the start of each column, fields are only
+ * parsed when they are requested. Sample fields are accessed by sample index
+ * so no String is created for columns that are never read.
+ * 
  * @author erwin
  * 
  */
 public class VcfRecord
 {
 	public static final String GENOTYPE_FORMAT = "GT";
-	private final Tuple record;
 
-	// cache for the info map
-	private Map<String, List<String>> infoMap = null;
+	private static final int CHROM_COL = 0;
+	private static final int POS_COL = 1;
+	private static final int ID_COL = 2;
+	private static final int REF_COL = 3;
+	private static final int ALT_COL = 4;
+	private static final int QUAL_COL = 5;
+	private static final int FILTER_COL = 6;
+	private static final int INFO_COL = 7;
+	private static final int FORMAT_COL = 8;
+	private static final int FIRST_SAMPLE_COL = 9;
+
+	private static final char COLUMN_SEPARATOR = '\t';
+	private static final char SAMPLE_FIELD_SEPARATOR = ':';
+	private static final char INFO_FIELD_SEPARATOR = ';';
+	private static final char INFO_KEY_VALUE_SEPARATOR = '=';
+	private static final char INFO_VALUE_SEPARATOR = ',';
+	private static final List<String> INFO_FLAG_VALUE = Collections.singletonList("TRUE");
+
+	private final String line;
+	private final List<String> columnNames;
+	// start offset of each column in the line, the last element is
+	// line.length() + 1 so the end of column i is columnOffsets[i + 1] - 1
+	private final int[] columnOffsets;
+
+	// cache for the start and end offset of the GT value of each sample, -1
+	// if a sample has no GT value
+	private int[] genotypeOffsets = null;
 
 	public VcfRecord(Tuple record)
 	{
-		this.record = record;
+		this(toLine(record), Lists.newArrayList(record.getColNames()));
 	}
 
 	public VcfRecord(String line, List<String> columnNames)
 	{
-		String[] values = line.split("	");
-		if (values.length != columnNames.size())
+		int nrCols = columnNames.size();
+		int[] offsets = new int[nrCols + 1];
+
+		int col = 0;
+		for (int i = line.indexOf(COLUMN_SEPARATOR); i != -1; i = line.indexOf(COLUMN_SEPARATOR, i + 1))
 		{
-			throw new IllegalArgumentException("The number of columns does not match the number of columnnames");
+			if (++col >= nrCols)
+			{
+				break;
+			}
+			offsets[col] = i + 1;
 		}
 
-		record = new KeyValueTuple();
-
-		for (int i = 0; i < values.length; i++)
+		if (col != nrCols - 1)
 		{
-			((WritableTuple) record).set(columnNames.get(i), new String(values[i]));
+			throw new IllegalArgumentException("The number of columns does not match the number of columnnames");
 		}
+		offsets[nrCols] = line.length() + 1;
 
+		this.line = line;
+		this.columnNames = columnNames;
+		this.columnOffsets = offsets;
 	}
 
 	public String getChrom()
 	{
-		return record.getString("#CHROM");
+		return getColumn(CHROM_COL);
 	}
 
 	public Integer getPos()
 	{
-		return record.getInt("POS");
+		return parseInt(columnOffsets[POS_COL], getColumnEnd(POS_COL));
 	}
 
 	public List<String> getId()
 	{
-		String id = checkNullValue(record.getString("ID"));
+		String id = checkNullValue(getColumn(ID_COL));
 		if (id == null)
 		{
 			return Collections.emptyList();
@@ -73,12 +110,12 @@ public class VcfRecord
 
 	public String getRef()
 	{
-		return record.getString("REF");
+		return getColumn(REF_COL);
 	}
 
 	public List<String> getAlt()
 	{
-		String alt = checkNullValue(record.getString("ALT"));
+		String alt = checkNullValue(getColumn(ALT_COL));
 		if (alt == null)
 		{
 			return Collections.emptyList();
@@ -103,18 +140,18 @@ public class VcfRecord
 
 	public Double getQual()
 	{
-		String qual = checkNullValue(record.getString("QUAL"));
+		String qual = checkNullValue(getColumn(QUAL_COL));
 		if (qual == null)
 		{
 			return null;
 		}
 
-		return record.getDouble("QUAL");
+		return Double.valueOf(qual);
 	}
 
 	public List<String> getFilter()
 	{
-		String filter = checkNullValue(record.getString("FILTER"));
+		String filter = checkNullValue(getColumn(FILTER_COL));
 		if (filter == null)
 		{
 			return null;
@@ -125,12 +162,17 @@ public class VcfRecord
 
 	public String getInfo()
 	{
-		return checkNullValue(record.getString("INFO"));
+		return checkNullValue(getColumn(INFO_COL));
 	}
 
 	public List<String> getFormat()
 	{
-		String format = checkNullValue(record.getString("FORMAT"));
+		if (columnOffsets.length <= FORMAT_COL + 1)
+		{
+			return Collections.emptyList();
+		}
+
+		String format = checkNullValue(getColumn(FORMAT_COL));
 		if (format == null)
 		{
 			return Collections.emptyList();
@@ -139,27 +181,73 @@ public class VcfRecord
 		return Collections.unmodifiableList(Arrays.asList(format.split(":")));
 	}
 
+	/**
+	 * Get the position of a key in the FORMAT column without splitting it
+	 * 
+	 * @param key
+	 * @return the index of the key or -1 if not present
+	 */
+	public int getFormatIndex(String key)
+	{
+		if (columnOffsets.length <= FORMAT_COL + 1)
+		{
+			return -1;
+		}
+
+		int end = getColumnEnd(FORMAT_COL);
+		int index = 0;
+		for (int start = columnOffsets[FORMAT_COL]; start <= end; ++index)
+		{
+			int fieldEnd = indexOf(line, SAMPLE_FIELD_SEPARATOR, start, end);
+			if (fieldEnd - start == key.length() && line.regionMatches(start, key, 0, key.length()))
+			{
+				return index;
+			}
+			start = fieldEnd + 1;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Get the number of sample columns in this record
+	 * 
+	 * @return
+	 */
+	public int getSampleCount()
+	{
+		return Math.max(0, columnNames.size() - FIRST_SAMPLE_COL);
+	}
+
 	public String getSampleValue(String sampleName, String key)
+	{
+		int col = columnNames.indexOf(sampleName);
+		if (col < FIRST_SAMPLE_COL)
+		{
+			return null;
+		}
+
+		return getSampleValue(col - FIRST_SAMPLE_COL, key);
+	}
+
+	public String getSampleValue(int sampleIndex, String key)
 	{
 		// first get the position from the key
-		int index = getFormat().indexOf(key);
+		int index = getFormatIndex(key);
 
 		if (index == -1)
 		{
 			return null;
 		}
 
-		// then get the sample from the tuple
-		String sampleRecord = record.getString(sampleName);
-
 		// and parse out the value
-		if (sampleRecord != null)
+		int start = getSampleFieldStart(sampleIndex, index);
+		if (start == -1)
 		{
-			String[] values = sampleRecord.split(":");
-			if (index < values.length) return values[index];
+			return null;
 		}
 
-		return null;
+		return line.substring(start, getSampleFieldEnd(sampleIndex, start));
 	}
 
 	/**
@@ -170,46 +258,205 @@ public class VcfRecord
 	 */
 	public VcfSampleGenotype getSampleGenotype(String sampleName)
 	{
-		String value = getSampleValue(sampleName, GENOTYPE_FORMAT);
-		if (value == null)
+		int col = columnNames.indexOf(sampleName);
+		if (col < FIRST_SAMPLE_COL)
 		{
 			return null;
 		}
 
-		return new VcfSampleGenotypeParser(value).parse();
+		return getSampleGenotype(col - FIRST_SAMPLE_COL);
 	}
 
+	/**
+	 * Get the genotype of a sample by its index in the sample columns. The GT
+	 * value is parsed directly from the line.
+	 * 
+	 * @param sampleIndex
+	 * @return the genotype or null if there is no GT value for this sample
+	 */
+	public VcfSampleGenotype getSampleGenotype(int sampleIndex)
+	{
+		if (sampleIndex < 0 || sampleIndex >= getSampleCount())
+		{
+			throw new IndexOutOfBoundsException("Sample index " + sampleIndex + " out of range");
+		}
+
+		int[] offsets = getGenotypeOffsets();
+		int start = offsets[sampleIndex * 2];
+		if (start == -1)
+		{
+			return null;
+		}
+
+		return new VcfSampleGenotypeParser(line, start, offsets[sampleIndex * 2 + 1]).parse();
+	}
+
+	/**
+	 * Get the genotypes of all samples in sample column order. Can contain
+	 * null for samples without a GT value.
+	 * 
+	 * @return
+	 */
+	public List<VcfSampleGenotype> getSampleGenotypes()
+	{
+		int[] offsets = getGenotypeOffsets();
+		int sampleCount = getSampleCount();
+
+		List<VcfSampleGenotype> genotypes = new ArrayList<VcfSampleGenotype>(sampleCount);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int start = offsets[i * 2];
+			genotypes.add(start == -1 ? null : new VcfSampleGenotypeParser(line, start, offsets[i * 2 + 1]).parse());
+		}
+
+		return genotypes;
+	}
+
+	/**
+	 * Get the values of an INFO key. The INFO column is searched for the key,
+	 * it is not split into a map.
+	 * 
+	 * @param key
+	 * @return the values, TRUE for a flag or an empty list if not present
+	 */
 	public List<String> getInfo(String key)
 	{
-		if (infoMap == null)
+		return getInfoValues(line, columnOffsets[INFO_COL], getColumnEnd(INFO_COL), key);
+	}
+
+	/**
+	 * Get the first value of an INFO key as int
+	 * 
+	 * @param key
+	 * @param missingValue
+	 *            returned if the key is not present or the value is '.'
+	 * @return
+	 */
+	public int getInfoInt(String key, int missingValue)
+	{
+		String value = getFirstInfoValue(key);
+		return value == null ? missingValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * Get the first value of an INFO key as float
+	 * 
+	 * @param key
+	 * @param missingValue
+	 *            returned if the key is not present or the value is '.'
+	 * @return
+	 */
+	public float getInfoFloat(String key, float missingValue)
+	{
+		String value = getFirstInfoValue(key);
+		return value == null ? missingValue : Float.parseFloat(value);
+	}
+
+	/**
+	 * Get the values of an INFO key in the range start to end of info
+	 */
+	static List<String> getInfoValues(String info, int start, int end, String key)
+	{
+		int valueStart = getInfoValueStart(info, start, end, key);
+		if (valueStart == -1)
+		{
+			return Collections.emptyList();
+		}
+
+		return toInfoValues(info, valueStart, indexOf(info, INFO_FIELD_SEPARATOR, valueStart, end));
+	}
+
+	/**
+	 * Get the values of all INFO keys in the range start to end of info in a
+	 * single pass. For a key that is present more than once the first values
+	 * are used, like {@link #getInfoValues(String, int, int, String)} does.
+	 * 
+	 * @return the values by key in the order of the INFO column
+	 */
+	static Map<String, List<String>> getAllInfoValues(String info, int start, int end)
+	{
+		Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+		while (start < end)
 		{
-			infoMap = new LinkedHashMap<String, List<String>>();
+			int fieldEnd = indexOf(info, INFO_FIELD_SEPARATOR, start, end);
+			int keyEnd = indexOf(info, INFO_KEY_VALUE_SEPARATOR, start, fieldEnd);
+			String key = info.substring(start, keyEnd);
+			if (!values.containsKey(key))
+			{
+				int valueStart = keyEnd == fieldEnd ? fieldEnd : keyEnd + 1;
+				values.put(key, toInfoValues(info, valueStart, fieldEnd));
+			}
+			start = fieldEnd + 1;
+		}
+		return values;
+	}
 
-			String[] keyvalues = getInfo().split(";");
-			for (String keyvalue : keyvalues)
+	private static List<String> toInfoValues(String info, int valueStart, int valueEnd)
+	{
+		if (valueStart == valueEnd)
+		{
+			return INFO_FLAG_VALUE;
+		}
+
+		String value = checkNullValue(info.substring(valueStart, valueEnd));
+		if (value == null)
+		{
+			return Collections.emptyList();
+		}
+
+		return Collections.unmodifiableList(Arrays.asList(value.split(",")));
+	}
+
+	/**
+	 * Find the start of the value of an INFO key
+	 * 
+	 * @return the start of the value, the end of the key if it has no value or
+	 *         -1 if the key is not present
+	 */
+	private static int getInfoValueStart(String info, int start, int end, String key)
+	{
+		int keyLength = key.length();
+		while (start < end)
+		{
+			int fieldEnd = indexOf(info, INFO_FIELD_SEPARATOR, start, end);
+			int keyEnd = start + keyLength;
+			if (keyEnd <= fieldEnd && info.regionMatches(start, key, 0, keyLength))
 			{
-				String[] kv = keyvalue.split("=");
-				if (kv.length == 1)
+				if (keyEnd == fieldEnd)
 				{
-					infoMap.put(kv[0], Arrays.asList(new String[]
-					{ "TRUE" }));
+					return keyEnd;
 				}
-				else
+				if (info.charAt(keyEnd) == INFO_KEY_VALUE_SEPARATOR)
 				{
-					if (VcfUtils.checkNullValue(kv[1]) != null)
-					{
-						infoMap.put(kv[0], Arrays.asList(kv[1].split(",")));
-					}
+					return keyEnd + 1;
 				}
 			}
+			start = fieldEnd + 1;
 		}
+		return -1;
+	}
 
-		if (!infoMap.keySet().contains(key))
+	private String getFirstInfoValue(String key)
+	{
+		return getFirstInfoValue(line, columnOffsets[INFO_COL], getColumnEnd(INFO_COL), key);
+	}
+
+	/**
+	 * Get the first value of an INFO key in the range start to end of info
+	 * 
+	 * @return the value or null if the key is not present or the value is '.'
+	 */
+	static String getFirstInfoValue(String info, int start, int end, String key)
+	{
+		int valueStart = getInfoValueStart(info, start, end, key);
+		if (valueStart == -1)
 		{
-			return Collections.emptyList();
+			return null;
 		}
 
-		return Collections.unmodifiableList(infoMap.get(key));
+		int valueEnd = indexOf(info, INFO_VALUE_SEPARATOR, valueStart, indexOf(info, INFO_FIELD_SEPARATOR,
+				valueStart, end));
+		return checkNullValue(info.substring(valueStart, valueEnd));
 	}
 
 	@Override
@@ -218,4 +465,130 @@ public class VcfRecord
 		return ToStringBuilder.reflectionToString(this);
 	}
 
+	String getLine()
+	{
+		return line;
+	}
+
+	/**
+	 * Locate the GT value of every sample. The GT position in the FORMAT
+	 * column is only looked up once, after that the sample columns are walked
+	 * by offset.
+	 */
+	int[] getGenotypeOffsets()
+	{
+		if (genotypeOffsets == null)
+		{
+			int sampleCount = getSampleCount();
+			int[] offsets = new int[sampleCount * 2];
+
+			int index = getFormatIndex(GENOTYPE_FORMAT);
+			for (int i = 0; i < sampleCount; ++i)
+			{
+				int start = index == -1 ? -1 : getSampleFieldStart(i, index);
+				offsets[i * 2] = start;
+				offsets[i * 2 + 1] = start == -1 ? -1 : getSampleFieldEnd(i, start);
+			}
+
+			genotypeOffsets = offsets;
+		}
+
+		return genotypeOffsets;
+	}
+
+	private String getColumn(int col)
+	{
+		return line.substring(columnOffsets[col], getColumnEnd(col));
+	}
+
+	private int getColumnEnd(int col)
+	{
+		return columnOffsets[col + 1] - 1;
+	}
+
+	/**
+	 * Get the start of the value at formatIndex in a sample column
+	 * 
+	 * @return start offset in the line or -1 if the sample has less values
+	 */
+	private int getSampleFieldStart(int sampleIndex, int formatIndex)
+	{
+		int col = FIRST_SAMPLE_COL + sampleIndex;
+		if (sampleIndex < 0 || col >= columnNames.size())
+		{
+			throw new IndexOutOfBoundsException("Sample index " + sampleIndex + " out of range");
+		}
+
+		int start = columnOffsets[col];
+		int end = getColumnEnd(col);
+		for (int i = 0; i < formatIndex; ++i)
+		{
+			start = indexOf(line, SAMPLE_FIELD_SEPARATOR, start, end) + 1;
+			if (start > end)
+			{
+				return -1;
+			}
+		}
+
+		return start;
+	}
+
+	private int getSampleFieldEnd(int sampleIndex, int start)
+	{
+		return indexOf(line, SAMPLE_FIELD_SEPARATOR, start, getColumnEnd(FIRST_SAMPLE_COL + sampleIndex));
+	}
+
+	/**
+	 * Find a char in the line between start (inclusive) and end (exclusive)
+	 * 
+	 * @return the index of the char or end if not found
+	 */
+	private static int indexOf(String s, char c, int start, int end)
+	{
+		for (int i = start; i < end; ++i)
+		{
+			if (s.charAt(i) == c)
+			{
+				return i;
+			}
+		}
+		return end;
+	}
+
+	private static String toLine(Tuple record)
+	{
+		StringBuilder lineBuilder = new StringBuilder();
+		boolean first = true;
+		for (String colName : record.getColNames())
+		{
+			if (!first)
+			{
+				lineBuilder.append(COLUMN_SEPARATOR);
+			}
+			lineBuilder.append(record.getString(colName));
+			first = false;
+		}
+		return lineBuilder.toString();
+	}
+
+	private Integer parseInt(int start, int end)
+	{
+		if (start == end)
+		{
+			throw new NumberFormatException("Empty value in column " + columnNames.get(POS_COL));
+		}
+
+		long value = 0;
+		for (int i = start; i < end; ++i)
+		{
+			int digit = line.charAt(i) - '0';
+			value = value * 10 + digit;
+			if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE)
+			{
+				throw new NumberFormatException("For input string: \"" + line.substring(start, end) + "\"");
+			}
+		}
+		return (int) value;
+	}
+
 }
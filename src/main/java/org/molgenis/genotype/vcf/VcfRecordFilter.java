@@ -0,0 +1,15 @@
+package org.molgenis.genotype.vcf;
+
+/**
+ * Filter on the records of a VCF file. Is evaluated on the raw record before
+ * a variant is created, rejected records do not create variants or annotation
+ * values.
+ */
+public interface VcfRecordFilter
+{
+	/**
+	 * @param record
+	 * @return true if a variant should be created for this record
+	 */
+	boolean accept(VcfRecord record);
+}
@@ -27,12 +27,25 @@ public class VcfSampleGenotypeParser
 {
 	private static final char PHASED_SEPARATOR = '|';
 	private static final char UNPHASED_SEPARATOR = '/';
-	private String genotype;
+	private final CharSequence genotype;
+	private final int start;
+	private final int end;
 
 	public VcfSampleGenotypeParser(String genotype)
 	{
-		if (genotype == null) throw new IllegalArgumentException("Genotype is null");
-		this.genotype = genotype;
+		this(genotype, 0, genotype != null ? genotype.length() : 0);
+	}
+
+	/**
+	 * Parse the genotype found between start (inclusive) and end (exclusive)
+	 * in a larger char sequence, for example a complete VCF line
+	 */
+	public VcfSampleGenotypeParser(CharSequence chars, int start, int end)
+	{
+		if (chars == null) throw new IllegalArgumentException("Genotype is null");
+		this.genotype = chars;
+		this.start = start;
+		this.end = end;
 	}
 
 	public VcfSampleGenotype parse()
@@ -42,8 +55,9 @@ public class VcfSampleGenotypeParser
 		
 		List<Boolean> phasing = new ArrayList<Boolean>();
 
-		for (char c : genotype.toCharArray())
+		for (int i = start; i < end; ++i)
 		{
+			char c = genotype.charAt(i);
 			switch (c)
 			{
 				case PHASED_SEPARATOR:
@@ -1,7 +1,8 @@
 package org.molgenis.genotype.vcf;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,23 +15,78 @@ import org.molgenis.genotype.variant.VariantLineMapper;
 public class VcfVariantLineMapper implements VariantLineMapper
 {
 	private final List<String> colNames;
-	private final List<Annotation> infoAnnotations;
+	private final Map<String, Annotation> infoAnnotationsById;
 	private final Map<String, String> altDescriptions;
 	private final SampleVariantsProvider sampleVariantsProvider;
+	private final VcfGenotypeData genotypeData;
+	private final VcfRecordFilter recordFilter;
 
 	public VcfVariantLineMapper(List<String> colNames, List<Annotation> infoAnnotations,
 			Map<String, String> altDescriptions, SampleVariantsProvider sampleVariantsProvider)
+	{
+		this(colNames, infoAnnotations, altDescriptions, sampleVariantsProvider, null);
+	}
+
+	/**
+	 * 
+	 * @param colNames
+	 * @param infoAnnotations
+	 * @param altDescriptions
+	 * @param sampleVariantsProvider
+	 * @param genotypeData
+	 *            the mapped records are passed to this genotype data so the
+	 *            genotypes of the variants can be decoded without reading the
+	 *            line again. Can be null
+	 */
+	public VcfVariantLineMapper(List<String> colNames, List<Annotation> infoAnnotations,
+			Map<String, String> altDescriptions, SampleVariantsProvider sampleVariantsProvider,
+			VcfGenotypeData genotypeData)
+	{
+		this(colNames, infoAnnotations, altDescriptions, sampleVariantsProvider, genotypeData, null, null);
+	}
+
+	/**
+	 * 
+	 * @param colNames
+	 * @param infoAnnotations
+	 * @param altDescriptions
+	 * @param sampleVariantsProvider
+	 * @param genotypeData
+	 *            can be null
+	 * @param recordFilter
+	 *            lines of records that are not accepted are mapped to null.
+	 *            Can be null
+	 * @param infoKeys
+	 *            only these INFO annotations are added to the variants. Can
+	 *            be null to add all annotations
+	 */
+	public VcfVariantLineMapper(List<String> colNames, List<Annotation> infoAnnotations,
+			Map<String, String> altDescriptions, SampleVariantsProvider sampleVariantsProvider,
+			VcfGenotypeData genotypeData, VcfRecordFilter recordFilter, Collection<String> infoKeys)
 	{
 		this.colNames = colNames;
-		this.infoAnnotations = infoAnnotations;
+		this.infoAnnotationsById = new LinkedHashMap<String, Annotation>(infoAnnotations.size() * 2);
+		for (Annotation annotation : infoAnnotations)
+		{
+			if (infoKeys == null || infoKeys.contains(annotation.getId()))
+			{
+				infoAnnotationsById.put(annotation.getId(), annotation);
+			}
+		}
 		this.altDescriptions = altDescriptions;
 		this.sampleVariantsProvider = sampleVariantsProvider;
+		this.genotypeData = genotypeData;
+		this.recordFilter = recordFilter;
 	}
 
 	@Override
 	public GeneticVariant mapLine(String line)
 	{
 		VcfRecord record = new VcfRecord(line, colNames);
+		if (recordFilter != null && !recordFilter.accept(record))
+		{
+			return null;
+		}
 
 		List<String> ids = record.getId();
 		String sequenceName = record.getChrom();
@@ -38,7 +94,8 @@ public class VcfVariantLineMapper implements VariantLineMapper
 		List<String> alleles = record.getAlleles();
 		String refAllele = record.getRef();
 
-		Map<String, Object> annotationValues = getAnnotationValues(record, infoAnnotations);
+		// INFO values are only decoded when requested
+		Map<String, Object> annotationValues = new VcfInfoAnnotationValues(record.getInfo(), infoAnnotationsById);
 
 		// Check if the alt alleles contain references to alt annotations
 		List<String> altTypes = new ArrayList<String>();
@@ -66,103 +123,12 @@ public class VcfVariantLineMapper implements VariantLineMapper
 		GeneticVariant variant = ReadOnlyGeneticVariant.createVariant(ids, startPos, sequenceName, annotationValues,
 				sampleVariantsProvider, alleles, refAllele);
 
-		return variant;
-	}
-
-	private Map<String, Object> getAnnotationValues(VcfRecord record, List<Annotation> annotations)
-	{
-		Map<String, Object> annotationValues = new HashMap<String, Object>();
-
-		for (Annotation annotation : annotations)
+		if (genotypeData != null)
 		{
-			String annoId = annotation.getId();
-			Object annoValue = null;
-
-			List<String> values = record.getInfo(annotation.getId());
-			if ((values != null) && !values.isEmpty())
-			{
-				switch (annotation.getType())
-				{
-					case INTEGER:
-						if (annotation.isList())
-						{
-							List<Integer> ints = new ArrayList<Integer>();
-							for (String value : values)
-							{
-
-								ints.add(Integer.valueOf(value));
-							}
-							annoValue = ints;
-						}
-						else
-						{
-							annoValue = Integer.valueOf(values.get(0));
-						}
-						break;
-					case BOOLEAN:
-						if (annotation.isList())
-						{
-							List<Boolean> bools = new ArrayList<Boolean>();
-							for (String value : values)
-							{
-								bools.add(Boolean.parseBoolean(value));
-							}
-							annoValue = bools;
-						}
-						else
-						{
-							annoValue = Boolean.parseBoolean(values.get(0));
-						}
-						break;
-					case FLOAT:
-						if (annotation.isList())
-						{
-							List<Float> floats = new ArrayList<Float>();
-							for (String value : values)
-							{
-								floats.add(Float.parseFloat(value));
-							}
-							annoValue = floats;
-						}
-						else
-						{
-							annoValue = Float.parseFloat(values.get(0));
-						}
-						break;
-					case CHAR:
-						if (annotation.isList())
-						{
-							List<Character> chars = new ArrayList<Character>();
-							for (String value : values)
-							{
-								chars.add(value.charAt(0));
-							}
-							annoValue = chars;
-						}
-						else
-						{
-							annoValue = Character.valueOf(values.get(0).charAt(0));
-						}
-						break;
-					default:
-						if (annotation.isList())
-						{
-							annoValue = values;
-						}
-						else
-						{
-							annoValue = values.get(0);
-						}
-				}
-
-				if (annoValue != null)
-				{
-					annotationValues.put(annoId, annoValue);
-				}
-			}
+			genotypeData.addMappedRecord(variant, record);
 		}
 
-		return annotationValues;
+		return variant;
 	}
 
 }
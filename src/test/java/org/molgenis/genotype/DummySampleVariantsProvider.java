@@ -2,6 +2,7 @@ package org.molgenis.genotype;
 
 import java.util.List;
 
+import org.molgenis.genotype.variant.CalledDosageCalculator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.SampleVariantUniqueIdProvider;
 import org.molgenis.genotype.variant.SampleVariantsProvider;
@@ -37,6 +38,13 @@ public class DummySampleVariantsProvider implements SampleVariantsProvider
 		return null;
 	}
 	
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		return CalledDosageCalculator.calculateCalledDosage(variant.getVariantAlleles(), variant.getRefAllele(),
+				getSampleVariants(variant));
+	}
+
 	public int getSampleVariantProviderUniqueId()
 	{
 		return sampleVariantProviderUniqueId;
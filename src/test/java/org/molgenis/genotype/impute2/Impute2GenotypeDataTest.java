@@ -4,6 +4,7 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Arrays;
@@ -121,4 +122,31 @@ public class Impute2GenotypeDataTest extends ResourceTest
 				Arrays.asList(Alleles.createBasedOnChars('A', 'T'), Alleles.createBasedOnChars('T', 'A'),
 						Alleles.createBasedOnChars('T', 'T'), Alleles.createBasedOnChars('T', 'T')));
 	}
+
+	@Test
+	public void getVariantsByIds() throws IOException, URISyntaxException
+	{
+		assertEquals(genotypeData.getVariantById("SNP3").getStartPos(), 789);
+		assertNull(genotypeData.getVariantById("SNP5"));
+
+		File variantIdIndexFile = File.createTempFile("test.haps.tab.gz", ".tvi");
+		variantIdIndexFile.delete();
+		try
+		{
+			Impute2GenotypeData indexedGenotypeData = new Impute2GenotypeData(getTestImpute2Gz(), getTestImpute2GzTbi(),
+					getTestImpute2Sample());
+			indexedGenotypeData.useVariantIdIndex(variantIdIndexFile);
+
+			Map<String, GeneticVariant> variants = indexedGenotypeData.getVariantsByIds(Arrays.asList("SNP4", "SNP1",
+					"SNP5"));
+			assertEquals(variants.size(), 2);
+			assertEquals(variants.get("SNP1").getStartPos(), 123);
+			assertEquals(variants.get("SNP4").getSequenceName(), "8");
+			assertEquals(variants.get("SNP4").getStartPos(), 41000);
+		}
+		finally
+		{
+			variantIdIndexFile.delete();
+		}
+	}
 }
@@ -7,7 +7,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
@@ -15,7 +18,11 @@ import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.RandomAccessGenotypeData;
 import org.molgenis.genotype.ResourceTest;
 import org.molgenis.genotype.plink.PedMapGenotypeData;
+import org.molgenis.genotype.variant.CalledDosageCalculator;
 import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
+import org.molgenis.genotype.variant.SampleVariantUniqueIdProvider;
+import org.molgenis.genotype.variant.SampleVariantsProvider;
 import org.molgenis.genotype.variant.id.GeneticVariantId;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -248,6 +255,53 @@ public class ModifiableGenotypeDataInMemoryTest extends ResourceTest
 
 	}
 
+	@Test
+	public void testCalledDosageMissing()
+	{
+		final List<Alleles> sampleVariants = Arrays.asList(Alleles.createBasedOnChars('A', 'A'),
+				Alleles.createAlleles(Allele.ZERO, Allele.ZERO), Alleles.createBasedOnChars('A', 'G'));
+		SampleVariantsProvider sampleVariantsProvider = new SampleVariantsProvider()
+		{
+			@Override
+			public List<Alleles> getSampleVariants(GeneticVariant variant)
+			{
+				return sampleVariants;
+			}
+
+			@Override
+			public List<Boolean> getSamplePhasing(GeneticVariant variant)
+			{
+				return Collections.nCopies(sampleVariants.size(), false);
+			}
+
+			@Override
+			public int cacheSize()
+			{
+				return 0;
+			}
+
+			@Override
+			public byte[] getSampleCalledDosage(GeneticVariant variant)
+			{
+				return CalledDosageCalculator.calculateCalledDosage(variant.getVariantAlleles(),
+						variant.getRefAllele(), sampleVariants);
+			}
+
+			@Override
+			public int getSampleVariantProviderUniqueId()
+			{
+				return SampleVariantUniqueIdProvider.getNextUniqueId();
+			}
+		};
+
+		ModifiableGeneticVariant modifiableGeneticVariant = new ModifiableGeneticVariant(
+				ReadOnlyGeneticVariant.createSnp("rs1", 1, "1", sampleVariantsProvider, 'A', 'G'),
+				modifiableGenotypeData);
+
+		assertEquals(modifiableGeneticVariant.getSampleCalledDosage(), new byte[]
+		{ 2, -1, 1 });
+	}
+
 	@Test
 	public void testSwap()
 	{
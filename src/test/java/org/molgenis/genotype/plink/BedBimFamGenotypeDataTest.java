@@ -4,16 +4,22 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.molgenis.genotype.Alleles;
 import org.molgenis.genotype.ResourceTest;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.plink.drivers.BedFileDriver;
+import org.molgenis.genotype.plink.drivers.BedFileDriverTest;
 import org.molgenis.genotype.util.Utils;
+import org.molgenis.genotype.variant.CalledDosageCalculator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -120,4 +126,92 @@ public class BedBimFamGenotypeDataTest extends ResourceTest
 		assertEquals(variant.getStartPos(), pos);
 	}
 
+	@Test
+	public void testGetSampleCalledDosage()
+	{
+		// includes monomorphic SNPs with allele1 '0'
+		for (GeneticVariant variant : genotypeData)
+		{
+			assertEquals(variant.getSampleCalledDosage(), CalledDosageCalculator.calculateCalledDosage(
+					variant.getVariantAlleles(), variant.getRefAllele(), variant.getSampleVariants()));
+		}
+	}
+
+	@Test
+	public void testIteratorGenotypes() throws Exception
+	{
+		List<GeneticVariant> variants = Utils.iteratorToList(genotypeData.iterator());
+		assertEquals(variants.size(), 10);
+
+		// read in reverse order from a new reader so the SNPs are read one by one
+		BedBimFamGenotypeData reverseGenotypeData = new BedBimFamGenotypeData(getTestBed(), getTestBim(),
+				getTestFam());
+		List<GeneticVariant> reverseVariants = Utils.iteratorToList(reverseGenotypeData.iterator());
+		List<List<Alleles>> reverseSampleVariants = new ArrayList<List<Alleles>>();
+		for (int i = reverseVariants.size() - 1; i >= 0; --i)
+		{
+			reverseSampleVariants.add(0, reverseVariants.get(i).getSampleVariants());
+		}
+
+		for (int i = 0; i < variants.size(); ++i)
+		{
+			assertEquals(variants.get(i).getSampleVariants(), reverseSampleVariants.get(i));
+			assertEquals(variants.get(i).getSampleCalledDosage(), reverseVariants.get(i).getSampleCalledDosage());
+		}
+	}
+
+	@Test
+	public void testIndividualMajor() throws Exception
+	{
+		File individualMajorBed = File.createTempFile("test", ".bed");
+		try
+		{
+			BedFileDriverTest.writeIndividualMajor(new BedFileDriver(getTestBed()), 9, 10, individualMajorBed);
+			BedBimFamGenotypeData individualMajorGenotypeData = new BedBimFamGenotypeData(individualMajorBed,
+					getTestBim(), getTestFam());
+
+			List<GeneticVariant> variants = Utils.iteratorToList(genotypeData.iterator());
+			List<GeneticVariant> individualMajorVariants = Utils.iteratorToList(individualMajorGenotypeData.iterator());
+			assertEquals(variants.size(), 10);
+			assertEquals(individualMajorVariants.size(), variants.size());
+			for (int i = 0; i < variants.size(); ++i)
+			{
+				assertEquals(individualMajorVariants.get(i).getSampleVariants(), variants.get(i).getSampleVariants());
+			}
+		}
+		finally
+		{
+			individualMajorBed.delete();
+		}
+	}
+
+	@Test
+	public void testGetSampleCalledDosageZeroAllele() throws Exception
+	{
+		File dir = File.createTempFile("test", "");
+		dir.delete();
+		dir.mkdir();
+		File bed = new File(dir, "test.bed");
+		File bim = new File(dir, "test.bim");
+		File fam = new File(dir, "test.fam");
+		try
+		{
+			FileUtils.writeStringToFile(fam, "F1 1 0 0 1 1\nF2 2 0 0 1 1\nF3 3 0 0 1 1\n", "UTF-8");
+			FileUtils.writeStringToFile(bim, "1\trs1\t0\t100\t0\tC\n", "UTF-8");
+			// SNP-major, homozygote first, heterozygote and homozygote second
+			FileUtils.writeByteArrayToFile(bed, new byte[]
+			{ 0x6C, 0x1B, 0x01, 0x38 });
+
+			BedBimFamGenotypeData zeroAlleleData = new BedBimFamGenotypeData(bed, bim, fam);
+			GeneticVariant variant = zeroAlleleData.getSequenceGeneticVariants("1").iterator().next();
+			assertEquals(variant.getSampleCalledDosage(), new byte[]
+			{ -1, -1, 0 });
+			assertEquals(variant.getSampleCalledDosage(), CalledDosageCalculator.calculateCalledDosage(
+					variant.getVariantAlleles(), variant.getRefAllele(), variant.getSampleVariants()));
+		}
+		finally
+		{
+			FileUtils.deleteDirectory(dir);
+		}
+	}
 }
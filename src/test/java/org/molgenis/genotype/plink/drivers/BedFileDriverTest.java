@@ -1,6 +1,14 @@
 package org.molgenis.genotype.plink.drivers;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -120,4 +128,190 @@ public class BedFileDriverTest extends AbstractResourceTest
 		
 		
 	}
+
+	@Test
+	public void BED_getSnpGenotypeCodes() throws Exception
+	{
+		byte[] codes = bedfd.getSnpGenotypeCodes(0, 9);
+		assertEquals(9, codes.length);
+		assertEquals(BedFileDriver.HOMOZYGOTE_SECOND, codes[0]);
+		assertEquals(BedFileDriver.HETEROZYGOTE, codes[1]);
+		assertEquals(BedFileDriver.HOMOZYGOTE_FIRST, codes[2]);
+		assertEquals(BedFileDriver.HETEROZYGOTE, codes[8]);
+
+		String[] snps = bedfd.getSNPs(1, 9);
+		codes = bedfd.getSnpGenotypeCodes(1, 9);
+		for (int i = 0; i < 9; ++i)
+		{
+			assertEquals(snps[i], bedfd.getElement(12 + i));
+		}
+		assertEquals(BedFileDriver.HOMOZYGOTE_SECOND, codes[0]);
+		assertEquals(BedFileDriver.HETEROZYGOTE, codes[1]);
+	}
+
+	@Test
+	public void BED_getSnpDosages() throws Exception
+	{
+		byte[] dosages = bedfd.getSnpDosages(0, 9);
+		byte[] expected = new byte[]
+		{ 0, 1, 2, 0, 0, 0, 0, 1, 1 };
+		for (int i = 0; i < 9; ++i)
+		{
+			assertEquals(expected[i], dosages[i]);
+		}
+	}
+
+	@Test
+	public void BED_getSnpBytes() throws Exception
+	{
+		ByteBuffer bytes = bedfd.getSnpBytes(0, 9);
+		assertEquals(3, bytes.limit());
+		assertEquals((byte) 0xCB, bytes.get(0));
+		assertEquals((byte) 0xBF, bytes.get(1));
+		assertEquals((byte) 0x02, bytes.get(2));
+		assertTrue(bytes.isReadOnly());
+	}
+
+	@Test
+	public void BED_smallSegments() throws Exception
+	{
+		// SNPs span the segments of 4 bytes
+		BedFileDriver segmentedBedfd = new BedFileDriver(getTestResource("/test.bed"), 4);
+		for (int snp = 0; snp < 10; ++snp)
+		{
+			assertEquals(Arrays.toString(bedfd.getSNPs(snp, 9)), Arrays.toString(segmentedBedfd.getSNPs(snp, 9)));
+		}
+		assertEquals(bedfd.getElement(119), segmentedBedfd.getElement(119));
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void BED_getSnpBytesBeyondEnd() throws Exception
+	{
+		bedfd.getSnpBytes(10, 9);
+	}
+
+	@Test
+	public void BED_getSnpBlockGenotypeCodes() throws Exception
+	{
+		byte[] codes = new byte[4 * 9];
+		bedfd.getSnpBlockGenotypeCodes(0, 4, 9, codes);
+		for (int snp = 0; snp < 4; ++snp)
+		{
+			assertEquals(Arrays.toString(bedfd.getSnpGenotypeCodes(snp, 9)),
+					Arrays.toString(Arrays.copyOfRange(codes, snp * 9, snp * 9 + 9)));
+		}
+
+		// the buffer is reused for the last SNPs
+		bedfd.getSnpBlockGenotypeCodes(7, 3, 9, codes);
+		for (int snp = 7; snp < 10; ++snp)
+		{
+			assertEquals(Arrays.toString(bedfd.getSnpGenotypeCodes(snp, 9)),
+					Arrays.toString(Arrays.copyOfRange(codes, (snp - 7) * 9, (snp - 7) * 9 + 9)));
+		}
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void BED_getSnpBlockGenotypeCodesBeyondEnd() throws Exception
+	{
+		bedfd.getSnpBlockGenotypeCodes(8, 3, 9, new byte[3 * 9]);
+	}
+
+	@Test
+	public void BED_getElementsOfSnps() throws Exception
+	{
+		// the last 4 individuals of the first SNP and the first 5 of the second
+		String[] elements = bedfd.getElements(5, 14, 9);
+		String[] snp0 = bedfd.getSNPs(0, 9);
+		String[] snp1 = bedfd.getSNPs(1, 9);
+		assertEquals(9, elements.length);
+		for (int i = 0; i < 4; ++i)
+		{
+			assertEquals(snp0[5 + i], elements[i]);
+		}
+		for (int i = 0; i < 5; ++i)
+		{
+			assertEquals(snp1[i], elements[4 + i]);
+		}
+
+		assertEquals(Arrays.toString(bedfd.getSNPs(9, 9)), Arrays.toString(bedfd.getElements(81, 90, 9)));
+		assertEquals(0, bedfd.getElements(3, 3, 9).length);
+	}
+
+	@Test
+	public void BED_createSnpMajor() throws Exception
+	{
+		File individualMajorFile = File.createTempFile("test", ".bed");
+		File snpMajorFile = File.createTempFile("test", ".bed");
+		try
+		{
+			writeIndividualMajor(bedfd, 9, 10, individualMajorFile);
+			BedFileDriver individualMajorBedfd = new BedFileDriver(individualMajorFile);
+			assertEquals(0, individualMajorBedfd.getMode());
+
+			BedFileDriver snpMajorBedfd = individualMajorBedfd.createSnpMajor(9, 10, snpMajorFile);
+			assertEquals(1, snpMajorBedfd.getMode());
+			assertEquals(snpMajorFile.length(), getTestResource("/test.bed").length());
+			for (int snp = 0; snp < 10; ++snp)
+			{
+				assertEquals(Arrays.toString(bedfd.getSNPs(snp, 9)), Arrays.toString(snpMajorBedfd.getSNPs(snp, 9)));
+			}
+
+			// tiles of 4 SNPs and 4 individuals
+			snpMajorBedfd = individualMajorBedfd.createSnpMajor(9, 10, snpMajorFile, 1, 4);
+			for (int snp = 0; snp < 10; ++snp)
+			{
+				assertEquals(Arrays.toString(bedfd.getSNPs(snp, 9)), Arrays.toString(snpMajorBedfd.getSNPs(snp, 9)));
+			}
+
+			// tiles of 3 individuals read from segments of 2 bytes
+			individualMajorBedfd = new BedFileDriver(individualMajorFile, 2);
+			snpMajorBedfd = individualMajorBedfd.createSnpMajor(9, 10, snpMajorFile, 1, 3);
+			for (int snp = 0; snp < 10; ++snp)
+			{
+				assertEquals(Arrays.toString(bedfd.getSNPs(snp, 9)), Arrays.toString(snpMajorBedfd.getSNPs(snp, 9)));
+			}
+		}
+		finally
+		{
+			individualMajorFile.delete();
+			snpMajorFile.delete();
+		}
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void BED_createSnpMajorFromSnpMajor() throws Exception
+	{
+		bedfd.createSnpMajor(9, 10, new File("test.bed"));
+	}
+
+	/**
+	 * Write the genotypes of a SNP-major file as an individual-major file
+	 */
+	public static void writeIndividualMajor(BedFileDriver bedfd, int nrOfIndividuals, int nrOfSnps,
+			File individualMajorFile) throws IOException
+	{
+		int bytesPerIndividual = (nrOfSnps + 3) / 4;
+		byte[] bytes = new byte[3 + nrOfIndividuals * bytesPerIndividual];
+		bytes[0] = 108;
+		bytes[1] = 27;
+		bytes[2] = 0;
+		for (int snp = 0; snp < nrOfSnps; ++snp)
+		{
+			byte[] codes = bedfd.getSnpGenotypeCodes(snp, nrOfIndividuals);
+			for (int individual = 0; individual < nrOfIndividuals; ++individual)
+			{
+				bytes[3 + individual * bytesPerIndividual + snp / 4] |= codes[individual] << ((snp % 4) * 2);
+			}
+		}
+
+		OutputStream out = new FileOutputStream(individualMajorFile);
+		try
+		{
+			out.write(bytes);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
 }
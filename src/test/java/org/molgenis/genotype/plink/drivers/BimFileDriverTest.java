@@ -1,8 +1,14 @@
 package org.molgenis.genotype.plink.drivers;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
 
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -52,6 +58,88 @@ public class BimFileDriverTest extends AbstractResourceTest
 		assertEquals('C', bimfd.getAllEntries().get(5).getBiallele().getAllele2());
 	}
 
+	@Test
+	public void BIM_getBimStore() throws Exception
+	{
+		BimStore store = bimfd.getBimStore();
+		assertEquals(10, store.getNrOfSnps());
+		assertEquals(Arrays.asList("22", "23"), store.getChromosomes());
+		assertEquals("rs11089130", store.getSnp(0));
+		assertEquals("22", store.getChromosome(1));
+		assertEquals(14432618, store.getBpPos(1));
+		assertEquals('G', store.getAllele1(0));
+		assertEquals('C', store.getAllele2(0));
+		assertEquals('0', store.getAllele1(9));
+		assertEquals("23", store.getChromosome(9));
+
+		assertEquals(1, store.getSnpIndex("rs738829"));
+		assertEquals(9, store.getSnpIndex("rs12159982"));
+		assertEquals(-1, store.getSnpIndex("rs1"));
+
+		assertEquals("[8]", Arrays.toString(store.getSnpIndices("22", 14434719)));
+		assertEquals("[]", Arrays.toString(store.getSnpIndices("22", 14434720)));
+		assertEquals("[]", Arrays.toString(store.getSnpIndices("23", 14434719)));
+		assertEquals("[]", Arrays.toString(store.getSnpIndices("1", 14434719)));
+		assertEquals("[0, 1, 2, 3, 4, 5, 6, 7, 8]", Arrays.toString(store.getSnpIndices("22")));
+		assertEquals("[9]", Arrays.toString(store.getSnpIndices("23")));
+	}
+
+	@Test
+	public void BIM_getBimStoreManySnps() throws Exception
+	{
+		File bimFile = File.createTempFile("test", ".bim");
+		try
+		{
+			// unsorted positions, two SNPs at each position
+			Writer writer = new OutputStreamWriter(new FileOutputStream(bimFile), "UTF-8");
+			for (int i = 0; i < 5000; ++i)
+			{
+				writer.write((i % 2 + 1) + "\trs" + i + "\t0\t" + (10000 - i / 4) + "\tA\tG\n");
+			}
+			writer.close();
+
+			BimStore store = new BimFileDriver(bimFile).getBimStore();
+			assertEquals(5000, store.getNrOfSnps());
+			assertEquals(Arrays.asList("1", "2"), store.getChromosomes());
+			for (int i = 0; i < 5000; ++i)
+			{
+				assertEquals(i, store.getSnpIndex("rs" + i));
+				assertEquals("rs" + i, store.getSnp(i));
+			}
+			assertEquals("[0, 2]", Arrays.toString(store.getSnpIndices("1", 10000)));
+			assertEquals("[4997, 4999]", Arrays.toString(store.getSnpIndices("2", 8751)));
+
+			int[] indices = store.getSnpIndices("1");
+			assertEquals(2500, indices.length);
+			for (int i = 1; i < indices.length; ++i)
+			{
+				assertTrue(store.getBpPos(indices[i - 1]) <= store.getBpPos(indices[i]));
+			}
+		}
+		finally
+		{
+			bimFile.delete();
+		}
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void BIM_getBimStoreDuplicateSnp() throws Exception
+	{
+		File bimFile = File.createTempFile("test", ".bim");
+		try
+		{
+			Writer writer = new OutputStreamWriter(new FileOutputStream(bimFile), "UTF-8");
+			writer.write("1\trs1\t0\t100\tA\tG\n1\trs1\t0\t200\tA\tG\n");
+			writer.close();
+
+			new BimFileDriver(bimFile).getBimStore();
+		}
+		finally
+		{
+			bimFile.delete();
+		}
+	}
+
 	@AfterClass
 	public void close() throws IOException
 	{
@@ -0,0 +1,118 @@
+package org.molgenis.genotype.plink.drivers;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.testng.annotations.Test;
+
+public class FieldScannerTest
+{
+	@Test
+	public void scanLines() throws IOException
+	{
+		StringBuilder longField = new StringBuilder();
+		for (int i = 0; i < 100000; ++i)
+		{
+			longField.append((char) ('a' + i % 26));
+		}
+
+		File file = createFile("a\tb  c\r\n\n  \t\n-12 +7 2147483647\n" + longField + " x\nlast");
+		FieldScanner scanner = new FieldScanner(file, " \t");
+		try
+		{
+			assertTrue(scanner.nextLine());
+			assertTrue(scanner.nextField());
+			assertEquals("a", scanner.getFieldString());
+			assertTrue(scanner.nextField());
+			assertEquals('b', scanner.getFieldChar());
+			assertTrue(scanner.nextField());
+			assertEquals("c", scanner.getFieldString());
+			assertFalse(scanner.nextField());
+
+			// the empty lines are skipped
+			assertTrue(scanner.nextLine());
+			scanner.requireField();
+			assertEquals(-12, scanner.getFieldInt());
+			scanner.requireField();
+			assertEquals(7, scanner.getFieldInt());
+			scanner.requireField();
+			assertEquals(Integer.MAX_VALUE, scanner.getFieldInt());
+
+			// longer than the buffer
+			assertTrue(scanner.nextLine());
+			scanner.requireField();
+			assertEquals(longField.toString(), scanner.getFieldString());
+			scanner.requireField();
+			assertTrue(scanner.fieldEquals(new byte[]
+			{ 'x' }));
+
+			assertTrue(scanner.nextLine());
+			scanner.requireField();
+			assertEquals("last", scanner.getLine());
+			assertFalse(scanner.nextLine());
+		}
+		finally
+		{
+			scanner.close();
+			file.delete();
+		}
+	}
+
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void getFieldIntOverflow() throws IOException
+	{
+		File file = createFile("2147483648\n");
+		FieldScanner scanner = new FieldScanner(file, " \t");
+		try
+		{
+			scanner.nextLine();
+			scanner.requireField();
+			scanner.getFieldInt();
+		}
+		finally
+		{
+			scanner.close();
+			file.delete();
+		}
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void requireField() throws IOException
+	{
+		File file = createFile("a b\n");
+		FieldScanner scanner = new FieldScanner(file, " \t");
+		try
+		{
+			scanner.nextLine();
+			scanner.requireField();
+			scanner.requireField();
+			scanner.requireField();
+		}
+		finally
+		{
+			scanner.close();
+			file.delete();
+		}
+	}
+
+	private static File createFile(String content) throws IOException
+	{
+		File file = File.createTempFile("test", ".txt");
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(content.getBytes("UTF-8"));
+		}
+		finally
+		{
+			out.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,41 @@
+package org.molgenis.genotype.plink.readers;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.testng.annotations.Test;
+
+public class BedBimFamReaderTest extends ResourceTest
+{
+	@Test
+	public void readSnpBlocks() throws Exception
+	{
+		// the SNPs read one by one in reverse order
+		BedBimFamReader reader = new BedBimFamReader(getTestBed(), getTestBim(), getTestFam());
+		List<List<Alleles>> expectedSampleVariants = new ArrayList<List<Alleles>>();
+		List<byte[]> expectedDosages = new ArrayList<byte[]>();
+		for (int index = 9; index >= 0; --index)
+		{
+			GeneticVariant variant = reader.loadVariantsForIndex(index).get(0);
+			expectedSampleVariants.add(0, variant.getSampleVariants());
+			expectedDosages.add(0, variant.getSampleCalledDosage());
+		}
+
+		// 9 individuals in blocks of 2 SNPs, the 10 SNPs are read in 5 blocks
+		BedBimFamReader blockReader = new BedBimFamReader(getTestBed(), getTestBim(), getTestFam(), 18);
+		// in order, back into a read block, ahead into a later block and on
+		int[] order = new int[]
+		{ 0, 1, 2, 3, 4, 5, 6, 2, 3, 4, 8, 9, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		for (int index : order)
+		{
+			GeneticVariant variant = blockReader.loadVariantsForIndex(index).get(0);
+			assertEquals(variant.getSampleVariants(), expectedSampleVariants.get(index));
+			assertEquals(variant.getSampleCalledDosage(), expectedDosages.get(index));
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import org.molgenis.genotype.tabix.BgzfBlockCache.Block;
+import org.testng.annotations.Test;
+
+public class BgzfBlockCacheTest
+{
+	@Test
+	public void evictLeastRecentlyUsed()
+	{
+		BgzfBlockCache cache = new BgzfBlockCache(20);
+		cache.put(0, new Block(new byte[10], 5));
+		cache.put(5, new Block(new byte[10], 5));
+		assertEquals(cache.getSize(), 20);
+
+		// use the first block so the second is evicted
+		assertNotNull(cache.get(0));
+		cache.put(10, new Block(new byte[10], 5));
+		assertEquals(cache.getSize(), 20);
+
+		assertNull(cache.get(5));
+		assertNotNull(cache.get(0));
+		assertNotNull(cache.get(10));
+		assertEquals(cache.getHitCount(), 3);
+		assertEquals(cache.getMissCount(), 1);
+	}
+
+	@Test
+	public void blockLargerThanCache()
+	{
+		BgzfBlockCache cache = new BgzfBlockCache(5);
+		cache.put(0, new Block(new byte[10], 5));
+		assertEquals(cache.getSize(), 0);
+		assertNull(cache.get(0));
+	}
+}
@@ -0,0 +1,116 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+import org.molgenis.genotype.ResourceTest;
+import org.testng.annotations.Test;
+
+public class BgzfReaderTest extends ResourceTest
+{
+	@Test
+	public void readLine() throws IOException, URISyntaxException
+	{
+		List<String> lines = new ArrayList<String>();
+		List<Long> filePointers = new ArrayList<Long>();
+		BlockCompressedInputStream inputStream = new BlockCompressedInputStream(getTestVcfGz());
+		try
+		{
+			String line;
+			while ((line = inputStream.readLine()) != null)
+			{
+				lines.add(line);
+				filePointers.add(inputStream.getFilePointer());
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+
+		BgzfBlockCache blockCache = new BgzfBlockCache(BgzfBlockCache.DEFAULT_MAX_SIZE);
+		BgzfReader reader = new BgzfReader(getTestVcfGz(), blockCache);
+		try
+		{
+			for (int i = 0; i < lines.size(); ++i)
+			{
+				assertEquals(reader.readLine(), lines.get(i));
+				assertEquals(reader.getFilePointer(), filePointers.get(i).longValue());
+			}
+			assertNull(reader.readLine());
+
+			int lineIndex = lines.size() / 2;
+			reader.seek(filePointers.get(lineIndex - 1));
+			assertEquals(reader.readLine(), lines.get(lineIndex));
+			assertTrue(blockCache.getHitCount() > 0);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	@Test
+	public void readAhead() throws IOException, URISyntaxException
+	{
+		List<String> lines = new ArrayList<String>();
+		BgzfReader reader = new BgzfReader(getTestVcfGz(), new BgzfBlockCache(0));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				lines.add(line);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		reader = new BgzfReader(getTestVcfGz(), new BgzfBlockCache(0));
+		try
+		{
+			reader.startReadAhead(executor, 1);
+			for (String expectedLine : lines)
+			{
+				assertEquals(reader.readLine(), expectedLine);
+			}
+			assertNull(reader.readLine());
+
+			// seek back discards the blocks read ahead
+			reader.seek(0);
+			assertEquals(reader.readLine(), lines.get(0));
+		}
+		finally
+		{
+			reader.close();
+			executor.shutdown();
+		}
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void seekInvalidOffset() throws IOException, URISyntaxException
+	{
+		BgzfReader reader = new BgzfReader(getTestVcfGz(), new BgzfBlockCache(0));
+		try
+		{
+			reader.seek(0xFFFF);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+}
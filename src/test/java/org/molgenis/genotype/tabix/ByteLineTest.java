@@ -0,0 +1,51 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class ByteLineTest
+{
+	@Test
+	public void view() throws UnsupportedEncodingException
+	{
+		byte[] bytes = "x1\tabc\r\ny".getBytes("UTF-8");
+		ByteLine line = new ByteLine();
+		line.set(bytes, 1, 6);
+		line.trimCarriageReturn();
+
+		assertEquals(line.length(), 5);
+		assertEquals(line.charAt(0), '1');
+		assertEquals(line.byteAt(2), (byte) 'a');
+		assertEquals(line.indexOf('\t', 0), 1);
+		assertEquals(line.indexOf('x', 0), -1);
+		assertEquals(line.subSequence(2, 5).toString(), "abc");
+		assertEquals(line.toString(), "1\tabc");
+	}
+
+	@Test
+	public void append() throws UnsupportedEncodingException
+	{
+		ByteLine line = new ByteLine();
+		line.clear();
+		byte[] first = new byte[300];
+		Arrays.fill(first, (byte) 'a');
+		line.append(first, 0, first.length);
+		line.append("éb".getBytes("UTF-8"), 0, 3);
+
+		assertEquals(line.length(), 303);
+		assertEquals(line.toString().substring(299), "aéb");
+	}
+
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void charAtOutOfBounds()
+	{
+		ByteLine line = new ByteLine();
+		line.set(new byte[]
+		{ 'a', 'b' }, 0, 1);
+		line.charAt(1);
+	}
+}
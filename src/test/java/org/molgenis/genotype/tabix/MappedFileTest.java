@@ -0,0 +1,77 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+
+public class MappedFileTest
+{
+	@Test
+	public void getAcrossSegments() throws IOException
+	{
+		File file = File.createTempFile("test", ".bin");
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+			try
+			{
+				out.writeByte(7);
+				for (int i = 0; i < 100; ++i)
+				{
+					out.writeInt(i * 1000);
+					out.writeLong(i * 1000000000000L);
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+
+			for (long segmentSize : new long[]
+			{ 1, 3, 5, 16, MappedFile.DEFAULT_SEGMENT_SIZE })
+			{
+				MappedFile mappedFile = new MappedFile(file, segmentSize);
+				assertEquals(mappedFile.length(), 1 + 100 * 12);
+				assertEquals(mappedFile.get(0), 7);
+				for (int i = 0; i < 100; ++i)
+				{
+					assertEquals(mappedFile.getInt(1 + i * 12L), i * 1000);
+					assertEquals(mappedFile.getLong(5 + i * 12L), i * 1000000000000L);
+				}
+				mappedFile.checkRange(1 + 99 * 12, 12);
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void checkRange() throws IOException
+	{
+		File file = File.createTempFile("test", ".bin");
+		try
+		{
+			FileOutputStream out = new FileOutputStream(file);
+			try
+			{
+				out.write(new byte[10]);
+			}
+			finally
+			{
+				out.close();
+			}
+			new MappedFile(file, 4).checkRange(4, 8);
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+import net.sf.samtools.util.BlockCompressedOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.ResourceTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TabixIndexCreatorTest extends ResourceTest
+{
+	private File tabixIndexFile;
+
+	@BeforeMethod
+	public void setUp() throws IOException
+	{
+		tabixIndexFile = File.createTempFile("test", ".tbi");
+		tabixIndexFile.deleteOnExit();
+	}
+
+	@AfterMethod
+	public void tearDown()
+	{
+		tabixIndexFile.delete();
+	}
+
+	@Test
+	public void createHapsIndex() throws IOException, URISyntaxException
+	{
+		TabixIndexCreator.createHapsIndexCreator().createIndex(getTestImpute2Gz(), tabixIndexFile);
+
+		// same index as created by tabix
+		assertEquals(inflate(tabixIndexFile), inflate(getTestImpute2GzTbi()));
+	}
+
+	@Test
+	public void createVcfIndex() throws IOException, URISyntaxException
+	{
+		TabixIndexCreator indexCreator = TabixIndexCreator.createVcfIndexCreator();
+		indexCreator.setThreads(2);
+		indexCreator.createIndex(getTestVcfGz(), tabixIndexFile);
+
+		TabixIndex expectedIndex = new TabixIndex(getTestVcfGzTbi(), getTestVcfGz(), null);
+		TabixIndex index = new TabixIndex(tabixIndexFile, getTestVcfGz(), null);
+		try
+		{
+			assertEquals(index.getSeqNames(), expectedIndex.getSeqNames());
+			assertEquals(rawLines(index, "1", 3172062), rawLines(expectedIndex, "1", 3172062));
+			assertEquals(rawLines(index, "1", 6097450), rawLines(expectedIndex, "1", 6097450));
+			assertEquals(rawLines(index, "2", 7569187), rawLines(expectedIndex, "2", 7569187));
+			assertEquals(rawLines(index, "3", 7569), rawLines(expectedIndex, "3", 7569));
+			assertEquals(rawLines(index, "1", 3172062).size(), 1);
+		}
+		finally
+		{
+			index.close();
+			expectedIndex.close();
+		}
+	}
+
+	@Test
+	public void createIndexReplacesFile() throws IOException, URISyntaxException
+	{
+		File dir = File.createTempFile("test", "");
+		dir.delete();
+		dir.mkdir();
+		File indexFile = new File(dir, "test.tbi");
+		try
+		{
+			OutputStream out = new FileOutputStream(indexFile);
+			try
+			{
+				out.write("partial".getBytes("UTF-8"));
+			}
+			finally
+			{
+				out.close();
+			}
+
+			TabixIndexCreator.createHapsIndexCreator().createIndex(getTestImpute2Gz(), indexFile);
+
+			assertEquals(inflate(indexFile), inflate(getTestImpute2GzTbi()));
+			// the temporary file is renamed
+			assertEquals(dir.list(), new String[]
+			{ "test.tbi" });
+		}
+		finally
+		{
+			indexFile.delete();
+			dir.delete();
+		}
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void createIndexUnsorted() throws IOException
+	{
+		createIndex("1\t20\n1\t10\n");
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void createIndexSequenceNotContinuous() throws IOException
+	{
+		createIndex("1\t10\n2\t10\n1\t20\n");
+	}
+
+	@Test
+	public void reg2bin()
+	{
+		assertEquals(TabixIndexCreator.reg2bin(122, 123), 4681);
+		assertEquals(TabixIndexCreator.reg2bin(40999, 41000), 4683);
+		assertEquals(TabixIndexCreator.reg2bin(16383, 16385), 585);
+		assertEquals(TabixIndexCreator.reg2bin(0, 1 << 29), 0);
+	}
+
+	private void createIndex(String lines) throws IOException
+	{
+		File bzipFile = File.createTempFile("test", ".gz");
+		try
+		{
+			OutputStream out = new BlockCompressedOutputStream(bzipFile);
+			try
+			{
+				out.write(lines.getBytes("UTF-8"));
+			}
+			finally
+			{
+				out.close();
+			}
+			new TabixIndexCreator(TabixIndexCreator.PRESET_GENERIC, 1, 2, 2, '#', 0).createIndex(bzipFile,
+					tabixIndexFile);
+		}
+		finally
+		{
+			bzipFile.delete();
+		}
+	}
+
+	private static byte[] inflate(File file) throws IOException
+	{
+		BlockCompressedInputStream in = new BlockCompressedInputStream(file);
+		try
+		{
+			return IOUtils.toByteArray(in);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static List<String> rawLines(TabixIndex index, String sequence, int pos) throws IOException
+	{
+		TabixRawLineQueryResult result = index.createRawLineQuery().executeQuery(sequence, pos);
+		try
+		{
+			List<String> lines = new ArrayList<String>();
+			for (String line : result)
+			{
+				lines.add(line);
+			}
+			return lines;
+		}
+		finally
+		{
+			result.close();
+		}
+	}
+}
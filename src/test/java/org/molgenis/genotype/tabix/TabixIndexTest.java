@@ -1,13 +1,21 @@
 package org.molgenis.genotype.tabix;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Iterator;
 import java.util.List;
 
+import org.molgenis.genotype.RawLineQueryResult;
 import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.tabix.TabixIndex.TabixIterator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.VariantLineMapper;
 import org.testng.annotations.BeforeClass;
@@ -39,4 +47,108 @@ public class TabixIndexTest extends ResourceTest
 		assertEquals(seqNames.get(1), "2");
 		assertEquals(seqNames.get(2), "3");
 	}
+
+	@Test
+	public void queryTabixIndex() throws IOException, URISyntaxException
+	{
+		BgzfReader reader = new BgzfReader(getTestVcfGz(), new BgzfBlockCache(0));
+		try
+		{
+			assertNull(index.queryTabixIndex("bogus", 0, 1, reader));
+
+			TabixIterator it = index.queryTabixIndex("1", 3171928, 3172273, reader);
+			assertTrue(it.next().startsWith("1\t3171929\t"));
+			assertTrue(it.next().startsWith("1\t3172062\t"));
+			assertTrue(it.next().startsWith("1\t3172273\t"));
+			assertNull(it.next());
+
+			// the buffers of the first query are reused
+			it = index.queryTabixIndex("2", 0, Integer.MAX_VALUE, reader);
+			assertTrue(it.next().startsWith("2\t7569187\t"));
+			assertNull(it.next());
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	@Test
+	public void rawLineQueryByteLines() throws IOException
+	{
+		TabixRawLineQueryResult result = index.createRawLineQuery().executeQuery("1", 3171929);
+		try
+		{
+			Iterator<ByteLine> lines = result.byteLineIterator();
+			assertTrue(lines.hasNext());
+			ByteLine line = lines.next();
+			assertEquals(line.charAt(0), '1');
+			assertEquals(line.indexOf('\t', 0), 1);
+			assertEquals(line.toString(2, 9), "3171929");
+			assertTrue(line.toString().startsWith("1\t3171929\trs4648464\t"));
+			assertFalse(lines.hasNext());
+		}
+		finally
+		{
+			result.close();
+		}
+	}
+
+	@Test
+	public void parseInt()
+	{
+		assertEquals(TabixIndex.parseInt("1\t3171929\trs4648464", 2, 9), 3171929);
+		assertEquals(TabixIndex.parseInt("END=-12;", 4, 7), -12);
+	}
+
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void parseIntInvalid()
+	{
+		TabixIndex.parseInt("1\t31x1929", 2, 9);
+	}
+
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void parseIntEmpty()
+	{
+		TabixIndex.parseInt("1\t\t", 2, 2);
+	}
+
+	@Test
+	public void reuseReader() throws IOException, URISyntaxException
+	{
+		TabixIndex index = new TabixIndex(getTestVcfGzTbi(), getTestVcfGz(), null);
+		try
+		{
+			BgzfReader reader = index.acquireReader();
+			BgzfReader otherReader = index.acquireReader();
+			assertNotSame(otherReader, reader);
+			index.releaseReader(otherReader);
+			index.releaseReader(reader);
+			assertSame(index.acquireReader(), reader);
+
+			// a closed query returns its reader, the next query continues on it
+			RawLineQueryResult result = index.createRawLineQuery().executeQuery("1", 3171929);
+			assertTrue(result.iterator().next().startsWith("1\t3171929\t"));
+			result.close();
+			result.close();
+			assertSame(index.acquireReader(), otherReader);
+			index.releaseReader(otherReader);
+
+			result = index.createRawLineQuery().executeQuery("2", 7569187);
+			assertTrue(result.iterator().next().startsWith("2\t7569187\t"));
+			result.close();
+
+			// the same region again only uses cached blocks
+			long missCount = index.getBlockCache().getMissCount();
+			result = index.createRawLineQuery().executeQuery("2", 7569187);
+			assertTrue(result.iterator().next().startsWith("2\t7569187\t"));
+			result.close();
+			assertEquals(index.getBlockCache().getMissCount(), missCount);
+			assertTrue(index.getBlockCache().getHitCount() > 0);
+		}
+		finally
+		{
+			index.close();
+		}
+	}
 }
@@ -0,0 +1,103 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.VariantLineMapper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TabixPositionIndexTest extends ResourceTest
+{
+	private TabixIndex index;
+	private File positionIndexFile;
+
+	@BeforeClass
+	public void setUp() throws IOException, URISyntaxException
+	{
+		index = new TabixIndex(getTestVcfGzTbi(), getTestVcfGz(), new VariantLineMapper()
+		{
+			public GeneticVariant mapLine(String line)
+			{
+				return null;
+			}
+		});
+		positionIndexFile = File.createTempFile("test.vcf.gz", ".tpi");
+		positionIndexFile.deleteOnExit();
+	}
+
+	@AfterClass
+	public void tearDown() throws IOException
+	{
+		index.close();
+		positionIndexFile.delete();
+	}
+
+	@Test
+	public void createAndQuery() throws IOException
+	{
+		List<String> expected = rawLines("1", 3172062);
+
+		TabixPositionIndex positionIndex = TabixPositionIndex.create(index, positionIndexFile);
+		assertEquals(positionIndex.getSequenceCount(), 3);
+		assertTrue(positionIndex.getFilePointer(0, 3172061) != -1);
+		assertEquals(positionIndex.getFilePointer(0, 3172062), -1);
+		assertTrue(positionIndex.getFilePointer(1, 7569186) != -1);
+
+		// mapped in small segments so values span segment boundaries
+		TabixPositionIndex segmentedIndex = TabixPositionIndex.load(positionIndexFile, index, 5);
+		assertEquals(segmentedIndex.getFilePointer(0, 3172061), positionIndex.getFilePointer(0, 3172061));
+		assertEquals(segmentedIndex.getFilePointer(0, 3172062), -1);
+		assertEquals(segmentedIndex.getFilePointer(1, 7569186), positionIndex.getFilePointer(1, 7569186));
+
+		index.setPositionIndex(TabixPositionIndex.load(positionIndexFile, index));
+		try
+		{
+			assertEquals(rawLines("1", 3172062), expected);
+			assertEquals(rawLines("1", 3172062).size(), 1);
+			assertTrue(rawLines("1", 6097450).get(0).startsWith("1\t6097450\t"));
+			assertTrue(rawLines("2", 7569187).get(0).startsWith("2\t7569187\t"));
+			// not in the position index, falls back on the tabix index
+			assertFalse(rawLines("1", 3172063).iterator().hasNext());
+		}
+		finally
+		{
+			index.setPositionIndex(null);
+		}
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void loadInvalid() throws IOException, URISyntaxException
+	{
+		TabixPositionIndex.load(getTestVcfGzTbi(), index);
+	}
+
+	private List<String> rawLines(String sequence, int pos) throws IOException
+	{
+		TabixRawLineQueryResult result = index.createRawLineQuery().executeQuery(sequence, pos);
+		try
+		{
+			List<String> lines = new ArrayList<String>();
+			for (String line : result)
+			{
+				lines.add(line);
+			}
+			return lines;
+		}
+		finally
+		{
+			result.close();
+		}
+	}
+}
@@ -5,15 +5,21 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 import net.sf.samtools.util.BlockCompressedInputStream;
+import net.sf.samtools.util.BlockCompressedOutputStream;
 
 import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.Region;
 import org.molgenis.genotype.ResourceTest;
 import org.molgenis.genotype.VariantQuery;
 import org.molgenis.genotype.VariantQueryResult;
@@ -122,6 +128,103 @@ public class TabixQueryTest extends ResourceTest implements SampleVariantsProvid
 		assertEquals(i, 1);
 	}
 
+	@Test
+	public void querySeqScanThreads() throws IOException
+	{
+		index.setScanThreads(2);
+		try
+		{
+			result = query.executeQuery("1");
+			List<String> ids = new ArrayList<String>();
+			for (GeneticVariant variant : result)
+			{
+				ids.add(variant.getPrimaryVariantId());
+			}
+			assertEquals(ids, Arrays.asList("rs1578391", "rs35434908", "rs4648464", "rs4648465", "rs2455100",
+					"rs1295089"));
+		}
+		finally
+		{
+			index.setScanThreads(0);
+		}
+	}
+
+	@Test
+	public void querySeqScanThreadsChanged() throws IOException
+	{
+		File bzipFile = File.createTempFile("test", ".vcf.gz");
+		File tabixIndexFile = new File(bzipFile.getPath() + ".tbi");
+		try
+		{
+			// spans many bgzip blocks so blocks are submitted after the change
+			int nrOfVariants = 50000;
+			OutputStream out = new BlockCompressedOutputStream(bzipFile);
+			try
+			{
+				out.write("##fileformat=VCFv4.1\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n".getBytes("UTF-8"));
+				for (int i = 1; i <= nrOfVariants; ++i)
+				{
+					out.write(("1\t" + i + "\trs" + i + "\tA\tG\t.\tPASS\t.\n").getBytes("UTF-8"));
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+			TabixIndexCreator.createVcfIndexCreator().createIndex(bzipFile, tabixIndexFile);
+
+			VcfReader reader = new VcfReader(new BlockCompressedInputStream(bzipFile));
+			VariantLineMapper variantLineMapper;
+			try
+			{
+				variantLineMapper = new VcfVariantLineMapper(reader.getColNames(),
+						Collections.<Annotation> emptyList(), Collections.<String, String> emptyMap(), this);
+			}
+			finally
+			{
+				reader.close();
+			}
+
+			TabixIndex scanIndex = new TabixIndex(tabixIndexFile, bzipFile, variantLineMapper);
+			try
+			{
+				scanIndex.setScanThreads(2);
+				VariantQueryResult scanResult = scanIndex.createQuery().executeQuery("1");
+				try
+				{
+					int pos = 0;
+					for (GeneticVariant variant : scanResult)
+					{
+						assertEquals(variant.getStartPos(), ++pos);
+						if (pos == 100)
+						{
+							// shuts down the executor of the running scan
+							scanIndex.setScanThreads(1);
+						}
+						else if (pos == 20000)
+						{
+							scanIndex.setScanThreads(0);
+						}
+					}
+					assertEquals(pos, nrOfVariants);
+				}
+				finally
+				{
+					scanResult.close();
+				}
+			}
+			finally
+			{
+				scanIndex.close();
+			}
+		}
+		finally
+		{
+			bzipFile.delete();
+			tabixIndexFile.delete();
+		}
+	}
+
 	@Test
 	public void queryStartPos()
 	{
@@ -139,6 +242,28 @@ public class TabixQueryTest extends ResourceTest implements SampleVariantsProvid
 		assertFalse(query.executeQuery("1", 31722730).iterator().hasNext());
 	}
 
+	@Test
+	public void queryRegions()
+	{
+		// unsorted, overlapping and on a sequence not in the data
+		result = query.executeQuery(Arrays.asList(new Region("2", 7569000, 7570000), new Region("1", 3172062,
+				3172273), new Region("x", 1, 2), new Region("1", 565285, 565286), new Region("1", 3172000, 3172062)));
+
+		List<String> ids = new ArrayList<String>();
+		for (GeneticVariant variant : result)
+		{
+			ids.add(variant.getPrimaryVariantId());
+		}
+		assertEquals(ids, Arrays.asList("rs1578391", "rs4648465", "rs2455100", "rs4908464"));
+	}
+
+	@Test
+	public void queryRegionsEmpty()
+	{
+		result = query.executeQuery(Collections.<Region> emptyList());
+		assertFalse(result.iterator().hasNext());
+	}
+
 	@Override
 	public List<Alleles> getSampleVariants(GeneticVariant variant)
 	{
@@ -158,6 +283,12 @@ public class TabixQueryTest extends ResourceTest implements SampleVariantsProvid
 		return null;
 	}
 	
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		return null;
+	}
+
 	public int getSampleVariantProviderUniqueId()
 	{
 		return sampleVariantProviderUniqueId;
@@ -0,0 +1,87 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
+import org.molgenis.genotype.variant.VariantLineMapper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TabixVariantIdIndexTest extends ResourceTest
+{
+	private TabixIndex index;
+	private File variantIdIndexFile;
+
+	@BeforeClass
+	public void setUp() throws IOException, URISyntaxException
+	{
+		index = new TabixIndex(getTestVcfGzTbi(), getTestVcfGz(), new VariantLineMapper()
+		{
+			public GeneticVariant mapLine(String line)
+			{
+				String[] cols = line.split("\t");
+				return ReadOnlyGeneticVariant.createVariant(cols[2], Integer.parseInt(cols[1]), cols[0], null,
+						cols[3], cols[4]);
+			}
+		});
+		variantIdIndexFile = File.createTempFile("test.vcf.gz", ".tvi");
+		variantIdIndexFile.deleteOnExit();
+	}
+
+	@AfterClass
+	public void tearDown() throws IOException
+	{
+		index.close();
+		variantIdIndexFile.delete();
+	}
+
+	@Test
+	public void createAndQuery() throws IOException
+	{
+		TabixVariantIdIndex.create(index, 2, variantIdIndexFile);
+		// also mapped in small segments so values span segment boundaries
+		for (TabixVariantIdIndex variantIdIndex : Arrays.asList(TabixVariantIdIndex.load(variantIdIndexFile, index),
+				TabixVariantIdIndex.load(variantIdIndexFile, index, 5)))
+		{
+			// the variant on sequence 3 has no ID
+			assertEquals(variantIdIndex.getIdCount(), 7);
+			assertEquals(variantIdIndex.getLocation("rs4648465")[0], 0);
+			assertEquals(variantIdIndex.getLocation("rs4648465")[1], 3172062);
+			assertEquals(variantIdIndex.getLocation("rs4908464")[0], 1);
+			assertNull(variantIdIndex.getLocation("rs0"));
+
+			Map<String, GeneticVariant> variants = variantIdIndex.getVariantsByIds(Arrays.asList("rs4908464",
+					"rs1578391", "rs0", "."));
+			assertEquals(variants.size(), 2);
+			assertEquals(variants.get("rs1578391").getStartPos(), 565286);
+			assertEquals(variants.get("rs4908464").getSequenceName(), "2");
+			assertEquals(variants.get("rs4908464").getStartPos(), 7569187);
+		}
+	}
+
+	@Test
+	public void hash()
+	{
+		assertEquals(TabixVariantIdIndex.hash(""), 0xcbf29ce484222325L);
+		assertEquals(TabixVariantIdIndex.hash("a"), 0xaf63dc4c8601ec8cL);
+		byte[] bytes = "\trs1;".getBytes();
+		assertEquals(TabixVariantIdIndex.hash(bytes, 1, 4), TabixVariantIdIndex.hash("rs1"));
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void loadInvalid() throws IOException, URISyntaxException
+	{
+		TabixVariantIdIndex.load(getTestVcfGzTbi(), index);
+	}
+}
@@ -39,4 +39,15 @@ public class SwappingSampleVariantsProviderTest
 		assertEquals(result.get(1).getAllelesAsChars(), new char[]
 		{ 'G', 'C' });
 	}
+
+	@Test
+	public void getSampleVariantsDoesNotModifyProviderList()
+	{
+		List<Alleles> variantAlleles = Arrays.asList(Alleles.createBasedOnChars('A', 'T'));
+		when(mockSampleVariantsProvider.getSampleVariants(mockSnpGeneticVariant)).thenReturn(variantAlleles);
+
+		swappingSampleVariantsProvider.getSampleVariants(mockSnpGeneticVariant);
+		assertEquals(variantAlleles.get(0).getAllelesAsChars(), new char[]
+		{ 'A', 'T' });
+	}
 }
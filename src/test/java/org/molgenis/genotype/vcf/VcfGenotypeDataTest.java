@@ -5,19 +5,28 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.samtools.util.BlockCompressedOutputStream;
 
 import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.ResourceTest;
 import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.VariantQueryResult;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.VcfAnnotation;
 import org.molgenis.genotype.util.Utils;
 import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -180,4 +189,167 @@ public class VcfGenotypeDataTest extends ResourceTest
 		GeneticVariant variant = genotypeData.getVariantsByPos("1", 565286).iterator().next();
 		assertEquals(genotypeData.getSamplePhasing(variant), Arrays.asList(false));
 	}
+
+	@Test
+	public void testGetSampleVariantsWhileIterating() throws IOException
+	{
+		for (GeneticVariant variant : genotypeData.getSequenceGeneticVariants("1"))
+		{
+			// A new variant is not created by iterating so it is queried again
+			GeneticVariant queriedVariant = ReadOnlyGeneticVariant.createVariant(variant.getPrimaryVariantId(),
+					variant.getStartPos(), variant.getSequenceName(), genotypeData, variant.getVariantAlleles()
+							.getAllelesAsString(), variant.getRefAllele().getAlleleAsString());
+
+			assertEquals(variant.getSampleVariants(), queriedVariant.getSampleVariants());
+			assertEquals(variant.getSampleCalledDosage(), queriedVariant.getSampleCalledDosage());
+		}
+	}
+
+	@Test
+	public void testFilteredQuery() throws IOException
+	{
+		VcfRecordFilter depthFilter = new VcfRecordFilter()
+		{
+			@Override
+			public boolean accept(VcfRecord record)
+			{
+				return record.getInfoInt("DP", 0) > 5;
+			}
+		};
+
+		VariantQueryResult result = genotypeData.createQuery(depthFilter, Arrays.asList("DP")).executeQuery("1");
+		try
+		{
+			List<GeneticVariant> variants = Utils.iteratorToList(result.iterator());
+			assertEquals(variants.size(), 3);
+			assertEquals(variants.get(0).getPrimaryVariantId(), "rs35434908");
+			assertEquals(variants.get(1).getPrimaryVariantId(), "rs4648465");
+			assertEquals(variants.get(2).getPrimaryVariantId(), "rs2455100");
+
+			Map<String, ?> annotationValues = variants.get(1).getAnnotationValues();
+			assertEquals(annotationValues.size(), 1);
+			assertEquals(annotationValues.get("DP"), Integer.valueOf(11));
+		}
+		finally
+		{
+			result.close();
+		}
+	}
+
+	@Test
+	public void getVariantsByIds() throws IOException, URISyntaxException
+	{
+		assertEquals(genotypeData.getVariantById("rs4648465").getStartPos(), 3172062);
+		assertNull(genotypeData.getVariantById("rs0"));
+
+		File variantIdIndexFile = File.createTempFile("test.vcf.gz", ".tvi");
+		variantIdIndexFile.delete();
+		VcfGenotypeData indexedGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi());
+		try
+		{
+			indexedGenotypeData.useVariantIdIndex(variantIdIndexFile);
+			assertTrue(variantIdIndexFile.exists());
+
+			Map<String, GeneticVariant> variants = indexedGenotypeData.getVariantsByIds(Arrays.asList("rs4908464",
+					"rs1578391", "rs0"));
+			assertEquals(variants.size(), 2);
+			assertEquals(variants.get("rs1578391").getStartPos(), 565286);
+			assertEquals(variants.get("rs4908464").getSequenceName(), "2");
+			assertEquals(variants.get("rs4908464").getSampleVariants(), genotypeData.getVariantsByPos("2", 7569187)
+					.iterator().next().getSampleVariants());
+			assertNull(indexedGenotypeData.getVariantById("rs0"));
+
+			// an existing index is loaded
+			indexedGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi());
+			indexedGenotypeData.useVariantIdIndex(variantIdIndexFile);
+			assertEquals(indexedGenotypeData.getVariantById("rs2455100").getStartPos(), 3172273);
+		}
+		finally
+		{
+			variantIdIndexFile.delete();
+		}
+	}
+
+	@Test
+	public void createMissingTabixIndex() throws IOException, URISyntaxException
+	{
+		File tabixIndexFile = File.createTempFile("test.vcf.gz", ".tbi");
+		tabixIndexFile.delete();
+		try
+		{
+			VcfGenotypeData genotypeData = new VcfGenotypeData(getTestVcfGz(), tabixIndexFile);
+			assertTrue(tabixIndexFile.isFile());
+			assertEquals(genotypeData.getSeqNames(), Arrays.asList("1", "2", "3"));
+			assertEquals(genotypeData.getVariantsByPos("1", 3172062).iterator().next().getPrimaryVariantId(),
+					"rs4648465");
+		}
+		finally
+		{
+			tabixIndexFile.delete();
+		}
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void alleleIndexOutOfRange() throws IOException
+	{
+		File vcfFile = File.createTempFile("test", ".vcf.gz");
+		File tabixIndexFile = new File(vcfFile.getPath() + ".tbi");
+		try
+		{
+			OutputStream out = new BlockCompressedOutputStream(vcfFile);
+			out.write(("##fileformat=VCFv4.1\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\ts1\ts2\n"
+					+ "1\t100\trs1\tA\tG\t.\tPASS\t.\tGT\t0/1\t1/5\n").getBytes("UTF-8"));
+			out.close();
+
+			VcfGenotypeData badGenotypeData = new VcfGenotypeData(vcfFile, tabixIndexFile);
+			badGenotypeData.getSnpVariantByPos("1", 100).getSampleVariants();
+		}
+		finally
+		{
+			vcfFile.delete();
+			tabixIndexFile.delete();
+		}
+	}
+
+	@Test
+	public void getSampleVariantsConcurrently() throws Exception
+	{
+		// without a cache every call decodes the genotypes
+		final VcfGenotypeData uncachedGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0);
+		final List<GeneticVariant> variants = Utils.iteratorToList(uncachedGenotypeData.iterator());
+		final List<List<Alleles>> expectedSampleVariants = new ArrayList<List<Alleles>>();
+		for (GeneticVariant variant : variants)
+		{
+			expectedSampleVariants.add(variant.getSampleVariants());
+		}
+
+		final AtomicInteger mismatches = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; ++t)
+		{
+			final int offset = t;
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 5000 * variants.size(); ++i)
+					{
+						int v = (i + offset) % variants.size();
+						if (!variants.get(v).getSampleVariants().equals(expectedSampleVariants.get(v)))
+						{
+							mismatches.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(mismatches.get(), 0);
+	}
 }
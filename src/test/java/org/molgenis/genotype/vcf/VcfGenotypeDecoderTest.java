@@ -0,0 +1,83 @@
+package org.molgenis.genotype.vcf;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.molgenis.genotype.GenotypeDataException;
+import org.testng.annotations.Test;
+
+public class VcfGenotypeDecoderTest
+{
+	private static final List<String> COL_NAMES = Arrays.asList("#CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER",
+			"INFO", "FORMAT", "sample1", "sample2", "sample3", "sample4");
+
+	@Test
+	public void decode()
+	{
+		VcfGenotypeDecoder decoder = new VcfGenotypeDecoder();
+		decoder.decode(new VcfRecord("1	565286	rs1578391	C	T,G	.	flt	NS=1	DP:GT	5:1/2	3:0|0	1:./.	2:1",
+				COL_NAMES));
+
+		assertEquals(decoder.getSampleCount(), 4);
+
+		assertEquals(decoder.getSampleAlleleCount(0), 2);
+		assertEquals(decoder.getSampleAlleleIndex(0, 0), 1);
+		assertEquals(decoder.getSampleAlleleIndex(0, 1), 2);
+		assertFalse(decoder.isSamplePhased(0));
+
+		assertEquals(decoder.getSampleAlleleIndex(1, 0), 0);
+		assertEquals(decoder.getSampleAlleleIndex(1, 1), 0);
+		assertTrue(decoder.isSamplePhased(1));
+
+		assertEquals(decoder.getSampleAlleleIndex(2, 0), VcfGenotypeDecoder.MISSING_ALLELE_INDEX);
+		assertEquals(decoder.getSampleAlleleIndex(2, 1), VcfGenotypeDecoder.MISSING_ALLELE_INDEX);
+
+		assertEquals(decoder.getSampleAlleleCount(3), 1);
+		assertEquals(decoder.getSampleAlleleIndex(3, 0), 1);
+		assertFalse(decoder.isSamplePhased(3));
+
+		assertEquals(decoder.getSampleCalledDosage(), new byte[]
+		{ 0, 2, -1, 0 });
+	}
+
+	@Test
+	public void decodeReuse()
+	{
+		VcfGenotypeDecoder decoder = new VcfGenotypeDecoder();
+		decoder.decode(new VcfRecord("1	1	.	C	T	.	.	.	GT	0|1	0|1	0|1	0|1", COL_NAMES));
+		decoder.decode(new VcfRecord("1	2	.	C	T	.	.	.	GT:DP	12/0:1	1/1	0/1	0/0", COL_NAMES));
+
+		assertEquals(decoder.getSampleAlleleIndex(0, 0), 12);
+		assertFalse(decoder.isSamplePhased(0));
+		assertEquals(decoder.getSampleCalledDosage(), new byte[]
+		{ 1, 0, 1, 2 });
+	}
+
+	@Test
+	public void decodeWithoutGt()
+	{
+		VcfGenotypeDecoder decoder = new VcfGenotypeDecoder();
+		decoder.decode(new VcfRecord("1	1	.	C	T	.	.	.	DP	1	2	3	4", COL_NAMES));
+
+		assertEquals(decoder.getSampleCount(), 4);
+		assertEquals(decoder.getSampleAlleleCount(0), 0);
+		assertEquals(decoder.getSampleCalledDosage(), new byte[]
+		{ -1, -1, -1, -1 });
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void decodeInvalid()
+	{
+		new VcfGenotypeDecoder().decode(new VcfRecord("1	1	.	C	T	.	.	.	GT	0/A	0/1	0/1	0/1", COL_NAMES));
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void decodeAlleleIndexTooLarge()
+	{
+		new VcfGenotypeDecoder().decode(new VcfRecord("1	1	.	C	T	.	.	.	GT	0/128	0/1	0/1	0/1", COL_NAMES));
+	}
+}
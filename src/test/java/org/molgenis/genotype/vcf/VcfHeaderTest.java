@@ -0,0 +1,62 @@
+package org.molgenis.genotype.vcf;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class VcfHeaderTest
+{
+	private VcfHeader header;
+
+	@BeforeMethod
+	public void setUp()
+	{
+		List<String> metaLines = Arrays.asList("##fileformat=VCFv4.1",
+				"##INFO=<ID=NS,Number=1,Type=Integer,Description=\"Number of Samples With Data\">",
+				"##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Total Depth\">",
+				"##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">", "##contig=<ID=1,length=249250621>",
+				"##ALT=<ID=DEL,Description=\"Deletion\">");
+		List<String> colNames = Arrays.asList("#CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER", "INFO",
+				"FORMAT", "sample1", "sample2");
+		header = new VcfHeader(metaLines, colNames);
+	}
+
+	@Test
+	public void getSampleNames()
+	{
+		assertEquals(header.getSampleNames(), Arrays.asList("sample1", "sample2"));
+		assertEquals(header.getSampleCount(), 2);
+		assertEquals(header.getSampleName(1), "sample2");
+	}
+
+	@Test
+	public void getColIndex()
+	{
+		assertEquals(header.getColIndex("#CHROM"), 0);
+		assertEquals(header.getColIndex("sample2"), 10);
+		assertEquals(header.getColIndex("bogus"), -1);
+	}
+
+	@Test
+	public void getInfo()
+	{
+		assertEquals(header.getInfos().size(), 2);
+		assertEquals(header.getInfo("DP").getDescription(), "Total Depth");
+		assertNull(header.getInfo("bogus"));
+	}
+
+	@Test
+	public void getOtherMetaLines()
+	{
+		assertEquals(header.getMetaLines().size(), 6);
+		assertEquals(header.getFormat("GT").getDescription(), "Genotype");
+		assertEquals(header.getContig("1").getLength(), Integer.valueOf(249250621));
+		assertEquals(header.getAlt("DEL").getDescription(), "Deletion");
+		assertEquals(header.getSamples().size(), 0);
+	}
+}
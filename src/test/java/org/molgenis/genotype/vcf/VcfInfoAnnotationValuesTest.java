@@ -0,0 +1,152 @@
+package org.molgenis.genotype.vcf;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.molgenis.genotype.annotation.Annotation;
+import org.molgenis.genotype.annotation.VcfAnnotation;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class VcfInfoAnnotationValuesTest
+{
+	private Map<String, Annotation> annotations;
+
+	@BeforeMethod
+	public void setUp()
+	{
+		annotations = new LinkedHashMap<String, Annotation>();
+		annotations.put("NS", new VcfAnnotation("NS", "", Annotation.Type.INTEGER, 1, false, false, false));
+		annotations.put("AF", new VcfAnnotation("AF", "", Annotation.Type.FLOAT, null, false, true, false));
+		annotations.put("DB", new VcfAnnotation("DB", "", Annotation.Type.BOOLEAN, 0, false, false, false));
+		annotations.put("GI", new VcfAnnotation("GI", "", Annotation.Type.STRING, 1, false, false, false));
+	}
+
+	@Test
+	public void get()
+	{
+		Map<String, Object> values = new VcfInfoAnnotationValues("NS=3;AF=0.5,0.25;DB;GI=.", annotations);
+
+		assertEquals(values.get("NS"), Integer.valueOf(3));
+		assertEquals(values.get("AF"), Arrays.asList(0.5f, 0.25f));
+		assertEquals(values.get("DB"), Boolean.TRUE);
+		assertNull(values.get("GI"));
+		assertNull(values.get("bogus"));
+		assertTrue(values.containsKey("NS"));
+		assertFalse(values.containsKey("GI"));
+	}
+
+	@Test
+	public void entrySet()
+	{
+		Map<String, Object> values = new VcfInfoAnnotationValues("DB;NS=3;XX=1", annotations);
+
+		assertEquals(values.size(), 2);
+		assertEquals(values.keySet().iterator().next(), "NS");
+		assertEquals(values.get("DB"), Boolean.TRUE);
+	}
+
+	@Test
+	public void entrySetSinglePass()
+	{
+		Map<String, Object> values = new VcfInfoAnnotationValues("GI=.;AF=0.5,0.25;NSX=1;NS=3;NS=4;DB", annotations);
+
+		Map<String, Object> expected = new LinkedHashMap<String, Object>();
+		expected.put("NS", Integer.valueOf(3));
+		expected.put("AF", Arrays.asList(0.5f, 0.25f));
+		expected.put("DB", Boolean.TRUE);
+		assertEquals(new ArrayList<String>(values.keySet()), new ArrayList<String>(expected.keySet()));
+		assertEquals(values, expected);
+	}
+
+	@Test
+	public void getPrimitive()
+	{
+		VcfInfoAnnotationValues values = new VcfInfoAnnotationValues("NS=3;AF=0.5,0.25;XX=1;GI=.", annotations);
+
+		assertEquals(values.getInt("NS", -1), 3);
+		assertEquals(values.getFloat("AF", -1f), 0.5f);
+		assertEquals(values.getInt("GI", -1), -1);
+		// not defined in the header
+		assertEquals(values.getInt("XX", -1), -1);
+		assertEquals(new VcfInfoAnnotationValues(null, annotations).getFloat("AF", -1f), -1f);
+	}
+
+	@Test
+	public void nullInfo()
+	{
+		Map<String, Object> values = new VcfInfoAnnotationValues(null, annotations);
+
+		assertTrue(values.isEmpty());
+		assertNull(values.get("NS"));
+	}
+
+	@Test
+	public void readConcurrently() throws InterruptedException
+	{
+		// enough keys to resize the map of decoded values while it is read
+		final Map<String, Annotation> manyAnnotations = new LinkedHashMap<String, Annotation>();
+		StringBuilder info = new StringBuilder();
+		final Map<String, Object> expected = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < 100; ++i)
+		{
+			manyAnnotations.put("K" + i, new VcfAnnotation("K" + i, "", Annotation.Type.INTEGER, 1, false, false,
+					false));
+			info.append(i == 0 ? "" : ";").append("K").append(i).append('=').append(i);
+			expected.put("K" + i, Integer.valueOf(i));
+		}
+		final String infoColumn = info.toString();
+
+		final AtomicInteger mismatches = new AtomicInteger();
+		for (int round = 0; round < 500; ++round)
+		{
+			final Map<String, Object> values = new VcfInfoAnnotationValues(infoColumn, manyAnnotations);
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; ++t)
+			{
+				final int offset = t;
+				threads[t] = new Thread()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							for (int i = 0; i < 100; ++i)
+							{
+								String key = "K" + ((i * 7 + offset) % 100);
+								if (!expected.get(key).equals(values.get(key)))
+								{
+									mismatches.incrementAndGet();
+								}
+							}
+							if (offset % 2 == 0 && !values.equals(expected))
+							{
+								mismatches.incrementAndGet();
+							}
+						}
+						catch (RuntimeException e)
+						{
+							mismatches.incrementAndGet();
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread thread : threads)
+			{
+				thread.join();
+			}
+		}
+
+		assertEquals(mismatches.get(), 0);
+	}
+}
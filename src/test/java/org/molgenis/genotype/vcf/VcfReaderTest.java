@@ -6,13 +6,16 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 import org.molgenis.genotype.ResourceTest;
+import org.molgenis.util.tuple.Tuple;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -170,4 +173,71 @@ public class VcfReaderTest extends ResourceTest
 		assertEquals(alt.getId(), "DEL");
 		assertEquals(alt.getDescription(), "Deletion");
 	}
+
+	@Test
+	public void testLargeHeader() throws IOException
+	{
+		StringBuilder vcf = new StringBuilder("##fileformat=VCFv4.1\n");
+		for (int i = 0; i < 10000; ++i)
+		{
+			vcf.append("##contig=<ID=contig").append(i).append(",length=1000>\n");
+		}
+		vcf.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tsample1\n");
+		vcf.append("contig1\t10\t.\tA\tG\t.\tPASS\t.\tGT\t0/1\n");
+
+		VcfReader largeHeaderReader = new VcfReader(new ByteArrayInputStream(vcf.toString().getBytes("UTF-8")));
+		try
+		{
+			assertEquals(largeHeaderReader.getContigs().size(), 10000);
+			assertEquals(largeHeaderReader.getSampleNames(), Arrays.asList("sample1"));
+
+			Iterator<VcfRecord> it = largeHeaderReader.recordIterator();
+			assertTrue(it.hasNext());
+			assertEquals(it.next().getChrom(), "contig1");
+			assertFalse(it.hasNext());
+		}
+		finally
+		{
+			largeHeaderReader.close();
+		}
+	}
+
+	@Test
+	public void testTrailingEmptyColName() throws IOException
+	{
+		String vcf = "##fileformat=VCFv4.1\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tsample1\t\n"
+				+ "1\t10\t.\tA\tG\t.\tPASS\t.\tGT\t0/1\t\n";
+
+		VcfReader trailingReader = new VcfReader(new ByteArrayInputStream(vcf.getBytes("UTF-8")));
+		try
+		{
+			assertEquals(trailingReader.getColNames().size(), 11);
+			assertEquals(trailingReader.getColNames().get(10), "");
+		}
+		finally
+		{
+			trailingReader.close();
+		}
+	}
+
+	@Test
+	public void testTupleIterator() throws IOException
+	{
+		Iterator<String> colNames = reader.colNamesIterator();
+		assertEquals(colNames.next(), "#CHROM");
+		assertTrue(reader.hasColNames());
+
+		int count = 0;
+		for (Tuple tuple : reader)
+		{
+			if (count == 0)
+			{
+				assertEquals(tuple.getString("#CHROM"), "1");
+				assertEquals(tuple.getString("ID"), "rs1578391");
+				assertEquals(tuple.getString("REF"), "C");
+			}
+			count++;
+		}
+		assertEquals(count, 7);
+	}
 }
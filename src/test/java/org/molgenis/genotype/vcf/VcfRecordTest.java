@@ -0,0 +1,145 @@
+package org.molgenis.genotype.vcf;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.molgenis.util.tuple.KeyValueTuple;
+import org.testng.annotations.Test;
+
+public class VcfRecordTest
+{
+	private static final List<String> COL_NAMES = Arrays.asList("#CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER",
+			"INFO", "FORMAT", "sample1", "sample2");
+
+	private static final String LINE = "1	565286	rs1578391	C	T,G	.	flt	NS=1;DP=5	DP:GT:EC	5:1/2:5	3:0|1";
+
+	@Test
+	public void getFixedColumns()
+	{
+		VcfRecord record = new VcfRecord(LINE, COL_NAMES);
+		assertEquals(record.getChrom(), "1");
+		assertEquals(record.getPos(), Integer.valueOf(565286));
+		assertEquals(record.getId(), Arrays.asList("rs1578391"));
+		assertEquals(record.getRef(), "C");
+		assertEquals(record.getAlt(), Arrays.asList("T", "G"));
+		assertEquals(record.getAlleles(), Arrays.asList("C", "T", "G"));
+		assertNull(record.getQual());
+		assertEquals(record.getFilter(), Arrays.asList("flt"));
+		assertEquals(record.getInfo("DP"), Arrays.asList("5"));
+		assertEquals(record.getFormat(), Arrays.asList("DP", "GT", "EC"));
+	}
+
+	@Test
+	public void createFromTuple()
+	{
+		String[] values = LINE.split("\t");
+		KeyValueTuple tuple = new KeyValueTuple();
+		for (int i = 0; i < COL_NAMES.size(); ++i)
+		{
+			tuple.set(COL_NAMES.get(i), values[i]);
+		}
+
+		VcfRecord record = new VcfRecord(tuple);
+		assertEquals(record.getPos(), Integer.valueOf(565286));
+		assertEquals(record.getAlt(), Arrays.asList("T", "G"));
+		assertEquals(record.getInfo("DP"), Arrays.asList("5"));
+		assertEquals(record.getSampleValue("sample2", "DP"), "3");
+	}
+
+	@Test
+	public void getFormatIndex()
+	{
+		VcfRecord record = new VcfRecord(LINE, COL_NAMES);
+		assertEquals(record.getFormatIndex("DP"), 0);
+		assertEquals(record.getFormatIndex("GT"), 1);
+		assertEquals(record.getFormatIndex("EC"), 2);
+		assertEquals(record.getFormatIndex("E"), -1);
+	}
+
+	@Test
+	public void getSampleValue()
+	{
+		VcfRecord record = new VcfRecord(LINE, COL_NAMES);
+		assertEquals(record.getSampleCount(), 2);
+		assertEquals(record.getSampleValue("sample1", "EC"), "5");
+		assertEquals(record.getSampleValue(1, "DP"), "3");
+		assertNull(record.getSampleValue(1, "EC"));
+		assertNull(record.getSampleValue("bogus", "DP"));
+	}
+
+	@Test
+	public void getSampleGenotype()
+	{
+		VcfRecord record = new VcfRecord(LINE, COL_NAMES);
+
+		VcfSampleGenotype geno = record.getSampleGenotype(0);
+		assertEquals(geno.getSamleVariants(record.getAlleles()), Arrays.asList("T", "G"));
+		assertFalse(geno.getPhasing().get(0));
+
+		geno = record.getSampleGenotype("sample2");
+		assertEquals(geno.getSamleVariants(record.getAlleles()), Arrays.asList("C", "T"));
+		assertTrue(geno.getPhasing().get(0));
+	}
+
+	@Test
+	public void getSampleGenotypes()
+	{
+		VcfRecord record = new VcfRecord(LINE, COL_NAMES);
+
+		List<VcfSampleGenotype> genotypes = record.getSampleGenotypes();
+		assertEquals(genotypes.size(), 2);
+		assertEquals(genotypes.get(0).getSamleVariants(record.getAlleles()), Arrays.asList("T", "G"));
+		assertEquals(genotypes.get(1).getSamleVariants(record.getAlleles()), Arrays.asList("C", "T"));
+	}
+
+	@Test
+	public void getSampleGenotypesWithoutGt()
+	{
+		VcfRecord record = new VcfRecord("1	565286	.	C	T	.	flt	NS=1	DP	5	3", COL_NAMES);
+
+		List<VcfSampleGenotype> genotypes = record.getSampleGenotypes();
+		assertEquals(genotypes.size(), 2);
+		assertNull(genotypes.get(0));
+		assertNull(genotypes.get(1));
+	}
+
+	@Test
+	public void getInfo()
+	{
+		VcfRecord record = new VcfRecord("1	565286	.	C	T	.	flt	NS=1;DPX=2;DP=5;AF=0.5,0.25;DB;GI=.	GT	0/1	1/1",
+				COL_NAMES);
+		assertEquals(record.getInfo("AF"), Arrays.asList("0.5", "0.25"));
+		assertEquals(record.getInfo("DB"), Arrays.asList("TRUE"));
+		assertTrue(record.getInfo("GI").isEmpty());
+		assertTrue(record.getInfo("D").isEmpty());
+		assertEquals(record.getInfoInt("DP", -1), 5);
+		assertEquals(record.getInfoInt("XX", -1), -1);
+		assertEquals(record.getInfoFloat("AF", Float.NaN), 0.5f, 0.0001);
+		assertTrue(Float.isNaN(record.getInfoFloat("GI", Float.NaN)));
+	}
+
+	@Test
+	public void getInfoMissing()
+	{
+		VcfRecord record = new VcfRecord("1	565286	.	C	T	.	flt	.	GT	0/1	1/1", COL_NAMES);
+		assertTrue(record.getInfo("DP").isEmpty());
+		assertEquals(record.getInfoInt("DP", -1), -1);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void wrongNumberOfColumns()
+	{
+		new VcfRecord("1	565286	rs1578391", COL_NAMES);
+	}
+
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void posOverflow()
+	{
+		new VcfRecord("1	2147483648	.	C	T	.	flt	.	GT	0/1	1/1", COL_NAMES).getPos();
+	}
+}
@@ -109,6 +109,12 @@ public class VcfVariantLineMapperTest implements SampleVariantsProvider
 		return null;
 	}
 	
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		return null;
+	}
+
 	public int getSampleVariantProviderUniqueId()
 	{
 		return sampleVariantProviderUniqueId;